@@ -0,0 +1,244 @@
+package com.airtribe.library.benchmark;
+
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+public final class LoadTest {
+    private static final Operation[] MIX = {
+            Operation.SEARCH, Operation.SEARCH, Operation.SEARCH, Operation.SEARCH, Operation.SEARCH,
+            Operation.RECOMMEND, Operation.RECOMMEND,
+            Operation.GET_BOOK, Operation.GET_BOOK,
+            Operation.CHECKOUT_RETURN
+    };
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(Map.of(
+                "modes", "platform,virtual",
+                "clients", "64",
+                "warmup", "5",
+                "duration", "20",
+                "books", "10000"));
+        List<String> serverProperties = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                serverProperties.add(arg.substring(2));
+            } else if (arg.contains("=")) {
+                options.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        int clients = Integer.parseInt(options.get("clients"));
+        int warmupSeconds = Integer.parseInt(options.get("warmup"));
+        int durationSeconds = Integer.parseInt(options.get("duration"));
+        int books = Integer.parseInt(options.get("books"));
+
+        System.out.printf("Mixed load: %d clients, %ds warmup, %ds measured, %d books, mix %s%n",
+                clients, warmupSeconds, durationSeconds, books, describeMix());
+        List<String> report = new ArrayList<>();
+        for (String mode : options.get("modes").split(",")) {
+            boolean virtual = mode.trim().equals("virtual");
+            if (virtual && Runtime.version().feature() < 21) {
+                report.add(String.format("%-9s skipped: virtual threads need JDK 21+ (running %s)",
+                        mode.trim(), Runtime.version()));
+                continue;
+            }
+            List<String> properties = new ArrayList<>(serverProperties);
+            properties.add("spring.threads.virtual.enabled=" + virtual);
+            report.addAll(run(mode.trim(), properties, clients, warmupSeconds, durationSeconds, books));
+        }
+        System.out.println();
+        report.forEach(System.out::println);
+    }
+
+    private static List<String> run(String mode, List<String> properties, int clients, int warmupSeconds,
+                                    int durationSeconds, int books) throws Exception {
+        try (ConfigurableApplicationContext context = SyntheticLibrary.startServer(properties.toArray(String[]::new))) {
+            SyntheticLibrary library = SyntheticLibrary.populate(context, books, SyntheticLibrary.DEFAULT_SEED);
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+
+            drive(client, baseUrl, library, clients, warmupSeconds);
+            Recorder[] recorders = drive(client, baseUrl, library, clients, durationSeconds);
+
+            List<String> lines = new ArrayList<>();
+            lines.add(String.format("%-9s %-16s %9s %9s %9s %9s %7s %7s",
+                    "mode", "operation", "requests", "req/s", "p50 ms", "p99 ms", "429s", "errors"));
+            long total = 0;
+            for (Operation operation : Operation.values()) {
+                Recorder merged = Recorder.merge(recorders, operation);
+                total += merged.count;
+                lines.add(String.format("%-9s %-16s %9d %9.0f %9.2f %9.2f %7d %7d",
+                        mode, operation.label, merged.count, merged.count / (double) durationSeconds,
+                        merged.percentile(0.50) / 1e6, merged.percentile(0.99) / 1e6, merged.shed, merged.errors));
+            }
+            Recorder all = Recorder.merge(recorders, null);
+            lines.add(String.format("%-9s %-16s %9d %9.0f %9.2f %9.2f %7d %7d",
+                    mode, "all", total, total / (double) durationSeconds,
+                    all.percentile(0.50) / 1e6, all.percentile(0.99) / 1e6, all.shed, all.errors));
+            return lines;
+        }
+    }
+
+    private static Recorder[] drive(HttpClient client, String baseUrl, SyntheticLibrary library, int clients,
+                                    int seconds) throws InterruptedException {
+        Recorder[] recorders = new Recorder[clients * Operation.values().length];
+        for (int i = 0; i < recorders.length; i++) {
+            recorders[i] = new Recorder(Operation.values()[i % Operation.values().length]);
+        }
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        CountDownLatch finished = new CountDownLatch(clients);
+        for (int c = 0; c < clients; c++) {
+            int clientIndex = c;
+            Thread thread = new Thread(() -> {
+                try {
+                    clientLoop(client, baseUrl, library, clients, clientIndex, recorders, deadline);
+                } finally {
+                    finished.countDown();
+                }
+            }, "load-client-" + c);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        finished.await();
+        return recorders;
+    }
+
+    private static void clientLoop(HttpClient client, String baseUrl, SyntheticLibrary library, int clients,
+                                   int clientIndex, Recorder[] recorders, long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int operations = Operation.values().length;
+        int ownedBooks = Math.max(1, library.bookCount() / clients);
+        while (System.nanoTime() < deadline) {
+            Operation operation = MIX[random.nextInt(MIX.length)];
+            Recorder recorder = recorders[clientIndex * operations + operation.ordinal()];
+            int pick = random.nextInt(1 << 20);
+            switch (operation) {
+                case SEARCH -> send(client, recorder, get(baseUrl + "/api/books/search?type="
+                        + (random.nextBoolean() ? "title&query=" + library.titleQuery(pick)
+                        : "author&query=" + library.authorQuery(pick)) + "&size=20"));
+                case RECOMMEND -> send(client, recorder, get(baseUrl + "/api/recommendations/" + library.patronId(pick)));
+                case GET_BOOK -> send(client, recorder, get(baseUrl + "/api/books/" + library.isbn(pick)));
+                case CHECKOUT_RETURN -> {
+                    String isbn = library.isbn(clientIndex + clients * random.nextInt(ownedBooks));
+                    String patronId = library.patronId(clientIndex);
+                    String body = "{\"isbn\":\"" + isbn + "\",\"patronId\":\"" + patronId + "\"}";
+                    long began = System.nanoTime();
+                    int checkout = status(client, HttpRequest.newBuilder(URI.create(baseUrl + "/api/loans/checkout"))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(body)).build());
+                    int returned = checkout == 201 ? status(client, HttpRequest.newBuilder(
+                            URI.create(baseUrl + "/api/loans/return/" + isbn))
+                            .POST(HttpRequest.BodyPublishers.noBody()).build()) : checkout;
+                    recorder.record(System.nanoTime() - began, returned);
+                }
+            }
+        }
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).GET().build();
+    }
+
+    private static void send(HttpClient client, Recorder recorder, HttpRequest request) {
+        long began = System.nanoTime();
+        int status = status(client, request);
+        recorder.record(System.nanoTime() - began, status);
+    }
+
+    private static int status(HttpClient client, HttpRequest request) {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static String describeMix() {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (Operation operation : MIX) {
+            weights.merge(operation.label, 100 / MIX.length, Integer::sum);
+        }
+        return weights.toString();
+    }
+
+    private enum Operation {
+        SEARCH("search"),
+        RECOMMEND("recommendations"),
+        GET_BOOK("get-book"),
+        CHECKOUT_RETURN("checkout+return");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final class Recorder {
+        private final Operation operation;
+        private long[] latencies = new long[1024];
+        private int count;
+        private long shed;
+        private long errors;
+
+        Recorder(Operation operation) {
+            this.operation = operation;
+        }
+
+        void record(long nanos, int status) {
+            if (status == 429) {
+                shed++;
+                return;
+            }
+            if (status < 200 || status >= 300) {
+                errors++;
+                return;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+
+        double percentile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            return latencies[Math.min(count - 1, (int) Math.ceil(quantile * count) - 1)];
+        }
+
+        static Recorder merge(Recorder[] recorders, Operation operation) {
+            Recorder merged = new Recorder(operation);
+            for (Recorder recorder : recorders) {
+                if (operation != null && recorder.operation != operation) {
+                    continue;
+                }
+                if (merged.count + recorder.count > merged.latencies.length) {
+                    merged.latencies = Arrays.copyOf(merged.latencies, merged.count + recorder.count);
+                }
+                System.arraycopy(recorder.latencies, 0, merged.latencies, merged.count, recorder.count);
+                merged.count += recorder.count;
+                merged.shed += recorder.shed;
+                merged.errors += recorder.errors;
+            }
+            Arrays.sort(merged.latencies, 0, merged.count);
+            return merged;
+        }
+    }
+}
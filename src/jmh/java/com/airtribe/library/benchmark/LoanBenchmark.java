@@ -0,0 +1,63 @@
+package com.airtribe.library.benchmark;
+
+import com.airtribe.library.domain.Loan;
+import com.airtribe.library.service.LoanService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(jvmArgsAppend = "-Xmx4g")
+public class LoanBenchmark {
+    private static final int BATCH_SIZE = 50;
+
+    @Param({"10000", "100000"})
+    private int books;
+
+    @Param({"10000", "1000000", "10000000"})
+    private int loanHistory;
+
+    private ConfigurableApplicationContext context;
+    private SyntheticLibrary library;
+    private LoanService loanService;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = SyntheticLibrary.start();
+        library = SyntheticLibrary.populate(context, books, SyntheticLibrary.DEFAULT_SEED);
+        library.addLoanHistory(context, loanHistory, SyntheticLibrary.DEFAULT_SEED);
+        loanService = context.getBean(LoanService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Loan checkoutAndReturn() {
+        int next = cursor++;
+        String isbn = library.isbn(next * 31);
+        Loan loan = loanService.checkoutBook(isbn, library.patronId(next));
+        loanService.returnBook(isbn);
+        return loan;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public LoanService.BatchResult checkoutAndReturnBatch() {
+        int next = cursor++;
+        List<String> isbns = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            isbns.add(library.isbn((next * BATCH_SIZE + i) * 31));
+        }
+        loanService.checkoutBatch(library.patronId(next), isbns, null);
+        return loanService.returnBatch(null, isbns);
+    }
+}
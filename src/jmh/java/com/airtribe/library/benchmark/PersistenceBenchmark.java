@@ -0,0 +1,53 @@
+package com.airtribe.library.benchmark;
+
+import com.airtribe.library.domain.Book;
+import com.airtribe.library.persistence.EntityType;
+import com.airtribe.library.persistence.WriteAheadLog;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PersistenceBenchmark {
+
+    @Param({"true", "false"})
+    private boolean groupCommit;
+
+    private Path directory;
+    private WriteAheadLog writeAheadLog;
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("wal-benchmark");
+        writeAheadLog = new WriteAheadLog(true, directory.toString(), groupCommit);
+        writeAheadLog.open(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        writeAheadLog.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void appendBookSave() {
+        int next = sequence.incrementAndGet();
+        writeAheadLog.recordSave(EntityType.BOOK,
+                new Book(String.format("978-%010d", next), "Benchmark Title " + next, "Benchmark Author", 2024),
+                () -> { });
+    }
+}
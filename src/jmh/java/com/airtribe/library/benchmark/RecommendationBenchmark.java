@@ -0,0 +1,53 @@
+package com.airtribe.library.benchmark;
+
+import com.airtribe.library.domain.Book;
+import com.airtribe.library.service.LoanService;
+import com.airtribe.library.service.RecommendationService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RecommendationBenchmark {
+
+    @Param({"10000", "100000"})
+    private int books;
+
+    private ConfigurableApplicationContext context;
+    private SyntheticLibrary library;
+    private RecommendationService recommendationService;
+    private LoanService loanService;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = SyntheticLibrary.start();
+        library = SyntheticLibrary.populate(context, books, SyntheticLibrary.DEFAULT_SEED);
+        recommendationService = context.getBean(RecommendationService.class);
+        loanService = context.getBean(LoanService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Book> recommendations() {
+        return recommendationService.getRecommendations(library.patronId(cursor++));
+    }
+
+    @Benchmark
+    public List<Book> recommendationsAfterCheckout() {
+        int next = cursor++;
+        String isbn = library.isbn(next * 31);
+        String patronId = library.patronId(next);
+        loanService.checkoutBook(isbn, patronId);
+        loanService.returnBook(isbn);
+        return recommendationService.getRecommendations(patronId);
+    }
+}
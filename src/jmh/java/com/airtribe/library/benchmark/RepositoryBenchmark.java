@@ -0,0 +1,81 @@
+package com.airtribe.library.benchmark;
+
+import com.airtribe.library.domain.*;
+import com.airtribe.library.repository.*;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RepositoryBenchmark {
+
+    @Param({"10000", "100000"})
+    private int books;
+
+    private ConfigurableApplicationContext context;
+    private SyntheticLibrary library;
+    private BookRepository bookRepository;
+    private PatronRepository patronRepository;
+    private LoanRepository loanRepository;
+    private ReservationRepository reservationRepository;
+    private BranchRepository branchRepository;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = SyntheticLibrary.start();
+        library = SyntheticLibrary.populate(context, books, SyntheticLibrary.DEFAULT_SEED);
+        bookRepository = context.getBean(BookRepository.class);
+        patronRepository = context.getBean(PatronRepository.class);
+        loanRepository = context.getBean(LoanRepository.class);
+        reservationRepository = context.getBean(ReservationRepository.class);
+        branchRepository = context.getBean(BranchRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Book> bookFindAll() {
+        return bookRepository.findAll();
+    }
+
+    @Benchmark
+    public List<Patron> patronFindAll() {
+        return patronRepository.findAll();
+    }
+
+    @Benchmark
+    public List<Loan> loanFindAll() {
+        return loanRepository.findAll();
+    }
+
+    @Benchmark
+    public List<Reservation> reservationFindAll() {
+        return reservationRepository.findAll();
+    }
+
+    @Benchmark
+    public List<Branch> branchFindAll() {
+        return branchRepository.findAll();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public List<Loan> loanFindByPatronId() {
+        return loanRepository.findByPatronId(library.patronId(cursor++));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Optional<Loan> loanFindActiveByIsbn() {
+        return loanRepository.findActiveByIsbn(library.isbn(cursor++));
+    }
+}
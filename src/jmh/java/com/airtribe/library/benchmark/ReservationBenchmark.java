@@ -0,0 +1,49 @@
+package com.airtribe.library.benchmark;
+
+import com.airtribe.library.domain.Reservation;
+import com.airtribe.library.service.LoanService;
+import com.airtribe.library.service.ReservationService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReservationBenchmark {
+    private static final int HOT_TITLES = 64;
+
+    @Param({"10000", "100000"})
+    private int books;
+
+    private ConfigurableApplicationContext context;
+    private SyntheticLibrary library;
+    private ReservationService reservationService;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = SyntheticLibrary.start();
+        library = SyntheticLibrary.populate(context, books, SyntheticLibrary.DEFAULT_SEED);
+        reservationService = context.getBean(ReservationService.class);
+        LoanService loanService = context.getBean(LoanService.class);
+        for (int i = 0; i < HOT_TITLES; i++) {
+            loanService.checkoutBook(library.isbn(i), library.patronId(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Reservation reserveAndNotifyNext() {
+        int next = cursor++;
+        String isbn = library.isbn(next % HOT_TITLES);
+        Reservation reservation = reservationService.reserveBook(isbn, library.patronId(next + HOT_TITLES));
+        reservationService.notifyNextReservation(isbn);
+        return reservation;
+    }
+}
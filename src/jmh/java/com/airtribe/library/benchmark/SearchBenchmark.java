@@ -0,0 +1,57 @@
+package com.airtribe.library.benchmark;
+
+import com.airtribe.library.domain.Book;
+import com.airtribe.library.service.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+
+    @Param({"10000", "100000"})
+    private int books;
+
+    @Param({"indexed", "scan"})
+    private String engine;
+
+    @Param({"0", "65536"})
+    private int cacheMaxResults;
+
+    private ConfigurableApplicationContext context;
+    private SyntheticLibrary library;
+    private BookService bookService;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = SyntheticLibrary.start("library.search.mode=" + engine,
+                "library.search.cache-max-results=" + cacheMaxResults);
+        library = SyntheticLibrary.populate(context, books, SyntheticLibrary.DEFAULT_SEED);
+        bookService = context.getBean(BookService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Book> searchByTitle() {
+        return bookService.searchBooks("title", library.titleQuery(cursor++), 0, 50);
+    }
+
+    @Benchmark
+    public List<Book> searchByAuthor() {
+        return bookService.searchBooks("author", library.authorQuery(cursor++), 0, 50);
+    }
+
+    @Benchmark
+    public List<Book> searchByIsbn() {
+        return bookService.searchBooks("isbn", library.isbn(cursor++ * 7919), 0, 50);
+    }
+}
@@ -0,0 +1,177 @@
+package com.airtribe.library.benchmark;
+
+import com.airtribe.library.LibraryManagementSystemApplication;
+import com.airtribe.library.domain.*;
+import com.airtribe.library.repository.*;
+import com.airtribe.library.service.RecommendationService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.*;
+
+public final class SyntheticLibrary {
+    public static final long DEFAULT_SEED = 42L;
+    private static final int HISTORY_BATCH_SIZE = 10_000;
+
+    private static final String[] WORDS = {
+            "river", "monsoon", "garden", "night", "silence", "empire", "village", "letters", "mirror", "tiger",
+            "city", "shadow", "train", "house", "ocean", "mountain", "festival", "stranger", "secret", "island",
+            "kingdom", "journey", "market", "temple", "memory", "storm", "harvest", "palace", "desert", "lantern",
+            "bridge", "forest", "winter", "summer", "widow", "teacher", "soldier", "merchant", "poet", "daughter"
+    };
+    private static final String[] FIRST_NAMES = {
+            "Arundhati", "Salman", "Vikram", "Aravind", "Khushwant", "Kiran", "Anita", "Amitav", "Jhumpa", "Rohinton",
+            "Ruskin", "Mulk", "Shashi", "Chetan", "Anuradha", "Manu", "Nayantara", "Raja", "Kamala", "Ismat"
+    };
+    private static final String[] LAST_NAMES = {
+            "Roy", "Rushdie", "Seth", "Adiga", "Singh", "Desai", "Ghosh", "Lahiri", "Mistry", "Bond",
+            "Anand", "Tharoor", "Bhagat", "Kapoor", "Joseph", "Sahgal", "Rao", "Markandaya", "Chughtai", "Narayan"
+    };
+
+    private final String[] isbns;
+    private final String[] patronIds;
+    private final String[] titleQueries;
+    private final String[] authorQueries;
+
+    private SyntheticLibrary(String[] isbns, String[] patronIds, String[] titleQueries, String[] authorQueries) {
+        this.isbns = isbns;
+        this.patronIds = patronIds;
+        this.titleQueries = titleQueries;
+        this.authorQueries = authorQueries;
+    }
+
+    public static ConfigurableApplicationContext start(String... properties) {
+        return start(WebApplicationType.NONE, properties);
+    }
+
+    public static ConfigurableApplicationContext startServer(String... properties) {
+        List<String> withPort = new ArrayList<>(List.of("server.port=0"));
+        withPort.addAll(List.of(properties));
+        return start(WebApplicationType.SERVLET, withPort.toArray(String[]::new));
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType webType, String... properties) {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        List<String> args = new ArrayList<>(List.of(
+                "--logging.level.root=WARN",
+                "--logging.level.com.airtribe.library=WARN",
+                "--logging.level.audit=WARN",
+                "--library.persistence.enabled=false",
+                "--library.recommendations.co-borrow-interval-seconds=0"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(LibraryManagementSystemApplication.class)
+                .web(webType)
+                .logStartupInfo(false)
+                .run(args.toArray(String[]::new));
+    }
+
+    public static SyntheticLibrary populate(ConfigurableApplicationContext context, int bookCount, long seed) {
+        Random random = new Random(seed);
+        BookRepository bookRepository = context.getBean(BookRepository.class);
+        PatronRepository patronRepository = context.getBean(PatronRepository.class);
+        LoanRepository loanRepository = context.getBean(LoanRepository.class);
+
+        int authorCount = Math.max(10, bookCount / 20);
+        String[] authors = new String[authorCount];
+        for (int i = 0; i < authorCount; i++) {
+            authors[i] = FIRST_NAMES[i % FIRST_NAMES.length] + " " + LAST_NAMES[(i / FIRST_NAMES.length) % LAST_NAMES.length]
+                    + (i >= FIRST_NAMES.length * LAST_NAMES.length ? " " + (i / (FIRST_NAMES.length * LAST_NAMES.length)) : "");
+        }
+
+        String[] isbns = new String[bookCount];
+        List<Book> books = new ArrayList<>(bookCount);
+        for (int i = 0; i < bookCount; i++) {
+            isbns[i] = String.format("978-%010d", i);
+            String title = capitalize(WORDS[random.nextInt(WORDS.length)]) + " of the "
+                    + WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+            books.add(new Book(isbns[i], title, authors[random.nextInt(authorCount)], 1900 + random.nextInt(125)));
+        }
+        bookRepository.saveAll(books);
+        List<Copy> copies = new ArrayList<>(bookCount);
+        for (int i = 0; i < bookCount; i++) {
+            copies.add(new Copy(String.format("C%014x", i), isbns[i], null));
+        }
+        context.getBean(CopyRepository.class).saveAll(copies);
+        context.getBean(BookSearchIndex.class).indexAll(books);
+
+        int patronCount = Math.max(10, bookCount / 10);
+        String[] patronIds = new String[patronCount];
+        long loanSequence = 0;
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < patronCount; i++) {
+            patronIds[i] = String.format("P%08d", i);
+            Patron patron = new Patron(patronIds[i], "Patron " + i, "patron" + i + "@example.com");
+            int historySize = random.nextInt(21);
+            for (int h = 0; h < historySize; h++) {
+                String isbn = isbns[random.nextInt(bookCount)];
+                patron.addToBorrowingHistory(isbn);
+                LocalDate borrowed = today.minusDays(30 + random.nextInt(700));
+                Loan loan = new Loan(String.format("L%010d", loanSequence++), isbn, patronIds[i], borrowed, borrowed.plusDays(14));
+                loan.setReturnDate(borrowed.plusDays(1 + random.nextInt(14)));
+                loanRepository.save(loan);
+            }
+            patronRepository.save(patron);
+        }
+        context.getBean(RecommendationService.class).refreshCoBorrowModel();
+
+        String[] titleQueries = new String[256];
+        String[] authorQueries = new String[256];
+        for (int i = 0; i < titleQueries.length; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            titleQueries[i] = random.nextBoolean() ? word : word.substring(0, 4);
+            authorQueries[i] = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        }
+        return new SyntheticLibrary(isbns, patronIds, titleQueries, authorQueries);
+    }
+
+    public void addLoanHistory(ConfigurableApplicationContext context, int loanCount, long seed) {
+        Random random = new Random(seed);
+        LoanRepository loanRepository = context.getBean(LoanRepository.class);
+        LocalDate today = LocalDate.now();
+        List<Loan> batch = new ArrayList<>(HISTORY_BATCH_SIZE);
+        for (int i = 0; i < loanCount; i++) {
+            LocalDate borrowed = today.minusDays(30 + random.nextInt(3650));
+            Loan loan = new Loan(String.format("L%014x", i), isbn(random.nextInt(isbns.length)),
+                    patronId(random.nextInt(patronIds.length)), borrowed, borrowed.plusDays(14));
+            loan.setReturnDate(borrowed.plusDays(1 + random.nextInt(14)));
+            batch.add(loan);
+            if (batch.size() == HISTORY_BATCH_SIZE) {
+                loanRepository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        loanRepository.saveAll(batch);
+    }
+
+    public String isbn(int index) {
+        return isbns[Math.floorMod(index, isbns.length)];
+    }
+
+    public String patronId(int index) {
+        return patronIds[Math.floorMod(index, patronIds.length)];
+    }
+
+    public String titleQuery(int index) {
+        return titleQueries[Math.floorMod(index, titleQueries.length)];
+    }
+
+    public String authorQuery(int index) {
+        return authorQueries[Math.floorMod(index, authorQueries.length)];
+    }
+
+    public int bookCount() {
+        return isbns.length;
+    }
+
+    public int patronCount() {
+        return patronIds.length;
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
@@ -0,0 +1,8 @@
+package com.airtribe.library.audit;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AuditEvent(long sequence, String timestamp, AuditEventType event, String isbn, String patronId,
+                         String reference, String detail, Long count) {
+}
@@ -0,0 +1,20 @@
+package com.airtribe.library.audit;
+
+public enum AuditEventType {
+    BOOK_ADDED,
+    BOOK_UPDATED,
+    BOOK_REMOVED,
+    COPIES_ADDED,
+    PATRON_REGISTERED,
+    PATRON_UPDATED,
+    BRANCH_CREATED,
+    BOOK_ASSIGNED,
+    TRANSFER,
+    CHECKOUT,
+    RETURN,
+    RESERVE,
+    RESERVATION_CANCELLED,
+    RESERVATION_FULFILLED,
+    SEARCH,
+    RECOMMENDATIONS
+}
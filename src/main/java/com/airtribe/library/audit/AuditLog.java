@@ -0,0 +1,230 @@
+package com.airtribe.library.audit;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+@Component
+public class AuditLog {
+    private static final Logger logger = LoggerFactory.getLogger(AuditLog.class);
+    private static final Logger auditLogger = LoggerFactory.getLogger("audit");
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SHUTDOWN_MILLIS = 5_000;
+
+    private final ObjectMapper objectMapper;
+    private final Slot[] slots;
+    private final int mask;
+    private final double readSampleRate;
+    private final String file;
+    private final AtomicLong claimed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final List<Consumer<AuditEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private volatile long drained;
+    private volatile long written;
+    private volatile boolean running;
+    private BufferedWriter fileWriter;
+    private Thread writer;
+
+    public AuditLog(ObjectMapper objectMapper,
+                    @Value("${library.audit.buffer-size:8192}") int bufferSize,
+                    @Value("${library.audit.read-sample-rate:0.01}") double readSampleRate,
+                    @Value("${library.audit.file:}") String file) {
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+        this.objectMapper = objectMapper;
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = capacity - 1;
+        this.readSampleRate = readSampleRate;
+        this.file = file;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!file.isBlank()) {
+            try {
+                Path path = Path.of(file);
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+                fileWriter = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open audit log " + file, e);
+            }
+        }
+        running = true;
+        writer = new Thread(this::drain, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        try {
+            writer.join(SHUTDOWN_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (fileWriter != null) {
+            try {
+                fileWriter.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close audit log {}", file, e);
+            }
+        }
+    }
+
+    public void record(AuditEventType type, String isbn, String patronId, String reference) {
+        publish(type, isbn, patronId, reference, null, -1);
+    }
+
+    public void recordRead(AuditEventType type, String patronId, String reference, String detail, long count) {
+        if (readSampleRate <= 0 || (readSampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= readSampleRate)) {
+            return;
+        }
+        publish(type, null, patronId, reference, detail, count);
+    }
+
+    public void subscribe(Consumer<AuditEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Consumer<AuditEvent> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long target = claimed.get();
+        while (written < target) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    public long getPublished() {
+        return claimed.get();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getBacklog() {
+        return claimed.get() - written;
+    }
+
+    private void publish(AuditEventType type, String isbn, String patronId, String reference, String detail,
+                         long count) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - drained >= slots.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.type = type;
+        slot.epochMillis = System.currentTimeMillis();
+        slot.isbn = isbn;
+        slot.patronId = patronId;
+        slot.reference = reference;
+        slot.detail = detail;
+        slot.count = count;
+        slot.sequence = sequence;
+    }
+
+    private void drain() {
+        List<AuditEvent> batch = new ArrayList<>(BATCH_SIZE);
+        while (running || drained < claimed.get()) {
+            long next = drained;
+            Slot slot = slots[(int) (next & mask)];
+            if (slot.sequence != next) {
+                flush(batch);
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            batch.add(slot.toEvent(next));
+            drained = next + 1;
+            if (batch.size() == BATCH_SIZE) {
+                flush(batch);
+            }
+        }
+        flush(batch);
+    }
+
+    private void flush(List<AuditEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        boolean toLogger = fileWriter == null && auditLogger.isInfoEnabled();
+        try {
+            for (AuditEvent event : batch) {
+                if (fileWriter != null) {
+                    fileWriter.write(objectMapper.writeValueAsString(event));
+                    fileWriter.newLine();
+                } else if (toLogger) {
+                    auditLogger.info(objectMapper.writeValueAsString(event));
+                }
+                for (Consumer<AuditEvent> subscriber : subscribers) {
+                    subscriber.accept(event);
+                }
+            }
+            if (fileWriter != null) {
+                fileWriter.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to write {} audit events", batch.size(), e);
+        } finally {
+            written += batch.size();
+            batch.clear();
+        }
+    }
+
+    private static final class Slot {
+        private volatile long sequence = -1;
+        private AuditEventType type;
+        private long epochMillis;
+        private String isbn;
+        private String patronId;
+        private String reference;
+        private String detail;
+        private long count;
+
+        AuditEvent toEvent(long sequence) {
+            return new AuditEvent(sequence, Instant.ofEpochMilli(epochMillis).toString(), type, isbn, patronId,
+                    reference, detail, count < 0 ? null : count);
+        }
+    }
+}
@@ -1,19 +1,41 @@
 package com.airtribe.library.controller;
 
 import com.airtribe.library.domain.Book;
+import com.airtribe.library.domain.Copy;
+import com.airtribe.library.repository.CopyRepository;
+import com.airtribe.library.repository.Page;
+import com.airtribe.library.service.BookImportService;
+import com.airtribe.library.service.BookQueryService;
 import com.airtribe.library.service.BookService;
+import com.airtribe.library.service.ImportResult;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/books")
 public class BookController {
     private final BookService bookService;
+    private final BookImportService bookImportService;
+    private final BookQueryService bookQueryService;
+    private final ObjectMapper objectMapper;
+    private final SerializedResponseCache responseCache;
 
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, BookImportService bookImportService,
+                          BookQueryService bookQueryService, ObjectMapper objectMapper,
+                          SerializedResponseCache responseCache) {
         this.bookService = bookService;
+        this.bookImportService = bookImportService;
+        this.bookQueryService = bookQueryService;
+        this.objectMapper = objectMapper;
+        this.responseCache = responseCache;
     }
 
     @PostMapping
@@ -22,6 +44,16 @@ public class BookController {
         return ResponseEntity.status(HttpStatus.CREATED).body(book);
     }
 
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    public ResponseEntity<ImportResult> importBooks(@RequestHeader("Content-Type") MediaType contentType,
+                                                    @RequestParam(required = false) String branchId,
+                                                    InputStream body) throws IOException {
+        BookImportService.Format format = contentType.isCompatibleWith(MediaType.APPLICATION_NDJSON)
+                ? BookImportService.Format.NDJSON
+                : BookImportService.Format.CSV;
+        return ResponseEntity.ok(bookImportService.importBooks(body, format, branchId));
+    }
+
     @PutMapping("/{isbn}")
     public ResponseEntity<Book> updateBook(@PathVariable String isbn, @RequestBody BookRequest request) {
         Book book = bookService.updateBook(isbn, request.title, request.author, request.publicationYear);
@@ -35,18 +67,63 @@ public class BookController {
     }
 
     @GetMapping("/{isbn}")
-    public ResponseEntity<Book> getBook(@PathVariable String isbn) {
-        return ResponseEntity.ok(bookService.getBook(isbn));
+    public ResponseEntity<byte[]> getBook(@PathVariable String isbn, WebRequest request) {
+        Book book = bookService.getBook(isbn);
+        return responseCache.respond(request, "book", isbn, book, Book::version);
+    }
+
+    @PostMapping("/{isbn}/copies")
+    public ResponseEntity<List<Copy>> addCopies(@PathVariable String isbn, @RequestBody CopiesRequest request) {
+        List<Copy> copies = bookService.addCopies(isbn, request.branchId, request.count);
+        return ResponseEntity.status(HttpStatus.CREATED).body(copies);
+    }
+
+    @GetMapping("/{isbn}/copies")
+    public ResponseEntity<List<Copy>> getCopies(@PathVariable String isbn) {
+        return ResponseEntity.ok(bookService.getCopies(isbn));
+    }
+
+    @GetMapping("/{isbn}/availability")
+    public ResponseEntity<CopyRepository.Availability> getAvailability(@PathVariable String isbn) {
+        return ResponseEntity.ok(bookService.getAvailability(isbn));
     }
 
     @GetMapping
-    public ResponseEntity<List<Book>> getAllBooks() {
-        return ResponseEntity.ok(bookService.getAllBooks());
+    public ResponseEntity<byte[]> getAllBooks(WebRequest request) {
+        return responseCache.respondAll(request, "books", bookService.getCatalogueVersion(),
+                bookService::getAllBooks, Book::version);
+    }
+
+    @GetMapping(params = "limit")
+    public ResponseEntity<Page<Book>> getBookPage(@RequestParam(required = false) String cursor,
+                                                  @RequestParam int limit) {
+        return ResponseEntity.ok(bookService.getBookPage(cursor, limit));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamBooks() {
+        return NdjsonResponses.stream(objectMapper, bookService::streamBooks);
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<Book>> searchBooks(@RequestParam String type, @RequestParam String query) {
-        return ResponseEntity.ok(bookService.searchBooks(type, query));
+    public ResponseEntity<List<Book>> searchBooks(@RequestParam String type, @RequestParam String query,
+                                                  @RequestParam(defaultValue = "0") int page,
+                                                  @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(bookService.searchBooks(type, query, page, size));
+    }
+
+    @GetMapping("/query")
+    public ResponseEntity<BookQueryService.QueryResult> queryBooks(@RequestParam(required = false) String title,
+                                                                  @RequestParam(required = false) String author,
+                                                                  @RequestParam(required = false) String isbn,
+                                                                  @RequestParam(required = false) Integer yearFrom,
+                                                                  @RequestParam(required = false) Integer yearTo,
+                                                                  @RequestParam(required = false) String status,
+                                                                  @RequestParam(required = false) String branchId,
+                                                                  @RequestParam(defaultValue = "isbn") String sort,
+                                                                  @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(bookQueryService.query(new BookQueryService.BookQuery(
+                title, author, isbn, yearFrom, yearTo, status, branchId, sort, limit)));
     }
 
     static class BookRequest {
@@ -55,4 +132,9 @@ public class BookController {
         public String author;
         public int publicationYear;
     }
+
+    static class CopiesRequest {
+        public String branchId;
+        public int count = 1;
+    }
 }
@@ -1,19 +1,29 @@
 package com.airtribe.library.controller;
 
 import com.airtribe.library.domain.Branch;
+import com.airtribe.library.repository.BranchInventory;
+import com.airtribe.library.repository.Page;
 import com.airtribe.library.service.BranchService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.ObjectMapper;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/branches")
 public class BranchController {
     private final BranchService branchService;
+    private final ObjectMapper objectMapper;
+    private final SerializedResponseCache responseCache;
 
-    public BranchController(BranchService branchService) {
+    public BranchController(BranchService branchService, ObjectMapper objectMapper,
+                            SerializedResponseCache responseCache) {
         this.branchService = branchService;
+        this.objectMapper = objectMapper;
+        this.responseCache = responseCache;
     }
 
     @PostMapping
@@ -23,8 +33,9 @@ public class BranchController {
     }
 
     @GetMapping("/{branchId}")
-    public ResponseEntity<Branch> getBranch(@PathVariable String branchId) {
-        return ResponseEntity.ok(branchService.getBranch(branchId));
+    public ResponseEntity<byte[]> getBranch(@PathVariable String branchId, WebRequest request) {
+        Branch branch = branchService.getBranch(branchId);
+        return responseCache.respond(request, "branch", branchId, branch, Branch::version);
     }
 
     @GetMapping
@@ -32,6 +43,34 @@ public class BranchController {
         return ResponseEntity.ok(branchService.getAllBranches());
     }
 
+    @GetMapping(params = "limit")
+    public ResponseEntity<Page<Branch>> getBranchPage(@RequestParam(required = false) String cursor,
+                                                      @RequestParam int limit) {
+        return ResponseEntity.ok(branchService.getBranchPage(cursor, limit));
+    }
+
+    @GetMapping("/{branchId}/books")
+    public ResponseEntity<Page<String>> getBranchBooks(@PathVariable String branchId,
+                                                       @RequestParam(required = false) String cursor,
+                                                       @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(branchService.getBranchBooksPage(branchId, cursor, limit));
+    }
+
+    @GetMapping("/{branchId}/stats")
+    public ResponseEntity<BranchInventory.BranchStats> getBranchStats(@PathVariable String branchId) {
+        return ResponseEntity.ok(branchService.getBranchStats(branchId));
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<BranchService.InventorySummary> getInventorySummary() {
+        return ResponseEntity.ok(branchService.getInventorySummary());
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamBranches() {
+        return NdjsonResponses.stream(objectMapper, branchService::streamBranches);
+    }
+
     @PostMapping("/assign")
     public ResponseEntity<Void> assignBookToBranch(@RequestBody AssignRequest request) {
         branchService.assignBookToBranch(request.isbn, request.branchId);
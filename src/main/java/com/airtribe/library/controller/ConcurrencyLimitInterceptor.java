@@ -0,0 +1,89 @@
+package com.airtribe.library.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConcurrencyLimitInterceptor implements HandlerInterceptor {
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyLimitInterceptor.class);
+
+    private final String endpoint;
+    private final int maxConcurrent;
+    private final long acquireTimeoutMillis;
+    private final Semaphore permits;
+    private final String permitAttribute;
+    private final LongAdder rejected = new LongAdder();
+
+    public ConcurrencyLimitInterceptor(String endpoint, int maxConcurrent, long acquireTimeoutMillis) {
+        this.endpoint = endpoint;
+        this.maxConcurrent = maxConcurrent;
+        this.acquireTimeoutMillis = Math.max(0, acquireTimeoutMillis);
+        this.permits = new Semaphore(Math.max(0, maxConcurrent));
+        this.permitAttribute = ConcurrencyLimitInterceptor.class.getName() + "." + endpoint;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        if (maxConcurrent <= 0 || request.getAttribute(permitAttribute) != null) {
+            return true;
+        }
+        if (acquire()) {
+            request.setAttribute(permitAttribute, Boolean.TRUE);
+            return true;
+        }
+        rejected.increment();
+        logger.debug("Shedding {} request: {} already in flight", endpoint, maxConcurrent);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"message\":\"Too many concurrent " + endpoint + " requests\"}");
+        return false;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (request.getAttribute(permitAttribute) != null) {
+            request.removeAttribute(permitAttribute);
+            permits.release();
+        }
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getInFlight() {
+        return maxConcurrent <= 0 ? 0 : maxConcurrent - permits.availablePermits();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    private boolean acquire() {
+        if (acquireTimeoutMillis == 0) {
+            return permits.tryAcquire();
+        }
+        try {
+            return permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.airtribe.library.controller;
 
 import com.airtribe.library.domain.Loan;
 import com.airtribe.library.service.LoanService;
+import com.airtribe.library.service.OverdueService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -11,30 +12,70 @@ import java.util.List;
 @RequestMapping("/api/loans")
 public class LoanController {
     private final LoanService loanService;
+    private final OverdueService overdueService;
 
-    public LoanController(LoanService loanService) {
+    public LoanController(LoanService loanService, OverdueService overdueService) {
         this.loanService = loanService;
+        this.overdueService = overdueService;
     }
 
     @PostMapping("/checkout")
     public ResponseEntity<Loan> checkoutBook(@RequestBody CheckoutRequest request) {
-        Loan loan = loanService.checkoutBook(request.isbn, request.patronId);
+        Loan loan = loanService.checkoutBook(request.isbn, request.patronId, request.branchId);
         return ResponseEntity.status(HttpStatus.CREATED).body(loan);
     }
 
+    @PostMapping("/checkout/batch")
+    public ResponseEntity<LoanService.BatchResult> checkoutBatch(@RequestBody BatchCheckoutRequest request) {
+        return ResponseEntity.ok(loanService.checkoutBatch(request.patronId, request.isbns, request.branchId));
+    }
+
+    @PostMapping("/return/batch")
+    public ResponseEntity<LoanService.BatchResult> returnBatch(@RequestBody BatchReturnRequest request) {
+        return ResponseEntity.ok(loanService.returnBatch(request.barcodes, request.isbns));
+    }
+
     @PostMapping("/return/{isbn}")
     public ResponseEntity<Void> returnBook(@PathVariable String isbn) {
         loanService.returnBook(isbn);
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/return/copy/{barcode}")
+    public ResponseEntity<Void> returnCopy(@PathVariable String barcode) {
+        loanService.returnCopy(barcode);
+        return ResponseEntity.ok().build();
+    }
+
     @GetMapping("/patron/{patronId}")
     public ResponseEntity<List<Loan>> getPatronLoans(@PathVariable String patronId) {
         return ResponseEntity.ok(loanService.getPatronLoans(patronId));
     }
 
+    @GetMapping("/patron/{patronId}/fines")
+    public ResponseEntity<OverdueService.FineSummary> getPatronFines(@PathVariable String patronId) {
+        return ResponseEntity.ok(overdueService.getFines(patronId));
+    }
+
+    @GetMapping("/overdue")
+    public ResponseEntity<List<Loan>> getOverdueLoans() {
+        return ResponseEntity.ok(loanService.getOverdueLoans());
+    }
+
     static class CheckoutRequest {
         public String isbn;
         public String patronId;
+        public String branchId;
+    }
+
+    static class BatchCheckoutRequest {
+        public String patronId;
+        public String branchId;
+        public List<String> isbns;
+    }
+
+    static class BatchReturnRequest {
+        public List<String> barcodes;
+        public List<String> isbns;
     }
 }
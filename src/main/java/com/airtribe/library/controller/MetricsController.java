@@ -0,0 +1,20 @@
+package com.airtribe.library.controller;
+
+import com.airtribe.library.metrics.MetricsRegistry;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+    private final MetricsRegistry metricsRegistry;
+
+    public MetricsController(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    @GetMapping
+    public ResponseEntity<MetricsRegistry.MetricsSnapshot> getMetrics() {
+        return ResponseEntity.ok(metricsRegistry.snapshot());
+    }
+}
@@ -1,19 +1,26 @@
 package com.airtribe.library.controller;
 
 import com.airtribe.library.domain.Patron;
+import com.airtribe.library.repository.Page;
 import com.airtribe.library.service.PatronService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.ObjectMapper;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/patrons")
 public class PatronController {
     private final PatronService patronService;
+    private final ObjectMapper objectMapper;
 
-    public PatronController(PatronService patronService) {
+    public PatronController(PatronService patronService, ObjectMapper objectMapper) {
         this.patronService = patronService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
@@ -38,11 +45,39 @@ public class PatronController {
         return ResponseEntity.ok(patronService.getAllPatrons());
     }
 
+    @GetMapping(params = "limit")
+    public ResponseEntity<Page<Patron>> getPatronPage(@RequestParam(required = false) String cursor,
+                                                      @RequestParam int limit) {
+        return ResponseEntity.ok(patronService.getPatronPage(cursor, limit));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamPatrons() {
+        return NdjsonResponses.stream(objectMapper, patronService::streamPatrons);
+    }
+
     @GetMapping("/{patronId}/history")
     public ResponseEntity<List<String>> getBorrowingHistory(@PathVariable String patronId) {
         return ResponseEntity.ok(patronService.getBorrowingHistory(patronId));
     }
 
+    @GetMapping(value = "/{patronId}/history", params = "limit")
+    public ResponseEntity<Page<String>> getBorrowingHistoryPage(@PathVariable String patronId,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam int limit) {
+        return ResponseEntity.ok(patronService.getBorrowingHistoryPage(patronId, cursor, limit));
+    }
+
+    @GetMapping(value = "/{patronId}/history", params = {"from", "limit"})
+    public ResponseEntity<Page<PatronService.HistoryEntry>> getBorrowingHistoryBetween(
+            @PathVariable String patronId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam int limit) {
+        return ResponseEntity.ok(patronService.getBorrowingHistoryBetween(patronId, from, to, cursor, limit));
+    }
+
     static class PatronRequest {
         public String name;
         public String email;
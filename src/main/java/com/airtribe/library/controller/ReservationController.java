@@ -27,8 +27,41 @@ public class ReservationController {
         return ResponseEntity.ok(reservationService.getReservationsByBook(isbn));
     }
 
+    @GetMapping("/{reservationId}")
+    public ResponseEntity<Reservation> getReservation(@PathVariable String reservationId) {
+        return ResponseEntity.ok(reservationService.getReservation(reservationId));
+    }
+
+    @GetMapping("/{reservationId}/position")
+    public ResponseEntity<QueuePositionResponse> getQueuePosition(@PathVariable String reservationId) {
+        Reservation reservation = reservationService.getReservation(reservationId);
+        int position = reservationService.getQueuePosition(reservationId);
+        int queueLength = reservationService.getQueueLength(reservation.getIsbn());
+        return ResponseEntity.ok(new QueuePositionResponse(reservationId, reservation.getIsbn(), position, queueLength));
+    }
+
+    @DeleteMapping("/{reservationId}")
+    public ResponseEntity<Void> cancelReservation(@PathVariable String reservationId) {
+        reservationService.cancelReservation(reservationId);
+        return ResponseEntity.noContent().build();
+    }
+
     static class ReservationRequest {
         public String isbn;
         public String patronId;
     }
+
+    static class QueuePositionResponse {
+        public String reservationId;
+        public String isbn;
+        public int position;
+        public int queueLength;
+
+        QueuePositionResponse(String reservationId, String isbn, int position, int queueLength) {
+            this.reservationId = reservationId;
+            this.isbn = isbn;
+            this.position = position;
+            this.queueLength = queueLength;
+        }
+    }
 }
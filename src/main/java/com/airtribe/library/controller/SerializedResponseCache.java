@@ -0,0 +1,150 @@
+package com.airtribe.library.controller;
+
+import com.airtribe.library.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+import tools.jackson.databind.ObjectMapper;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+@Component
+public class SerializedResponseCache {
+    private final ObjectMapper objectMapper;
+    private final long maxBytes;
+    private final String instance = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private long bytes;
+
+    public SerializedResponseCache(ObjectMapper objectMapper, MetricsRegistry metrics,
+                                   @Value("${library.http-cache.max-bytes:16777216}") long maxBytes) {
+        this.objectMapper = objectMapper;
+        this.maxBytes = Math.max(0, maxBytes);
+        metrics.gauge("http-cache.hits", hits::sum);
+        metrics.gauge("http-cache.misses", misses::sum);
+        metrics.gauge("http-cache.not-modified", notModified::sum);
+        metrics.gauge("http-cache.bytes", this::getBytes);
+    }
+
+    public <T> ResponseEntity<byte[]> respond(WebRequest request, String kind, String id, T entity,
+                                              ToLongFunction<T> versionOf) {
+        return respond(request, kind, id, versionOf.applyAsLong(entity), () -> List.of(entity), versionOf,
+                items -> entity);
+    }
+
+    public <T> ResponseEntity<byte[]> respondAll(WebRequest request, String kind, long version,
+                                                 Supplier<List<T>> items, ToLongFunction<T> versionOf) {
+        return respond(request, kind, "", version, items, versionOf, list -> list);
+    }
+
+    private <T> ResponseEntity<byte[]> respond(WebRequest request, String kind, String id, long version,
+                                               Supplier<List<T>> items, ToLongFunction<T> versionOf,
+                                               Function<List<T>, ?> body) {
+        if (version == 0) {
+            return ok(null, objectMapper.writeValueAsBytes(body.apply(items.get())));
+        }
+        String etag = "\"" + kind + "-" + instance + "-" + Long.toString(version, 36) + "\"";
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            notModified.increment();
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+        }
+        Key key = new Key(kind, id);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version == version) {
+                hits.increment();
+                return ok(etag, entry.body);
+            }
+        }
+        misses.increment();
+        List<T> snapshot = items.get();
+        long[] versions = new long[snapshot.size()];
+        boolean settled = true;
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = versionOf.applyAsLong(snapshot.get(i));
+            settled &= versions[i] != 0;
+        }
+        byte[] serialized = objectMapper.writeValueAsBytes(body.apply(snapshot));
+        for (int i = 0; settled && i < versions.length; i++) {
+            settled = versionOf.applyAsLong(snapshot.get(i)) == versions[i];
+        }
+        if (!settled) {
+            return ok(null, serialized);
+        }
+        store(key, version, serialized);
+        return ok(etag, serialized);
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void store(Key key, long version, byte[] serialized) {
+        if (serialized.length > maxBytes / 4) {
+            return;
+        }
+        synchronized (this) {
+            Entry previous = entries.get(key);
+            if (previous != null && previous.version > version) {
+                return;
+            }
+            if (previous != null) {
+                bytes -= previous.body.length;
+            }
+            entries.put(key, new Entry(version, serialized));
+            bytes += serialized.length;
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().body.length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ResponseEntity<byte[]> ok(String etag, byte[] body) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache());
+        if (etag != null) {
+            response.eTag(etag);
+        }
+        return response.body(body);
+    }
+
+    private record Key(String kind, String id) {
+    }
+
+    private record Entry(long version, byte[] body) {
+    }
+}
@@ -0,0 +1,37 @@
+package com.airtribe.library.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+    private final ConcurrencyLimitInterceptor searchLimiter;
+    private final ConcurrencyLimitInterceptor recommendationLimiter;
+
+    public WebConfig(@Value("${library.limits.search.max-concurrent:32}") int searchMaxConcurrent,
+                     @Value("${library.limits.recommendations.max-concurrent:16}") int recommendationMaxConcurrent,
+                     @Value("${library.limits.acquire-timeout-ms:0}") long acquireTimeoutMillis) {
+        this.searchLimiter = new ConcurrencyLimitInterceptor("search", searchMaxConcurrent, acquireTimeoutMillis);
+        this.recommendationLimiter = new ConcurrencyLimitInterceptor("recommendations",
+                recommendationMaxConcurrent, acquireTimeoutMillis);
+    }
+
+    @Bean
+    public ConcurrencyLimitInterceptor searchConcurrencyLimiter() {
+        return searchLimiter;
+    }
+
+    @Bean
+    public ConcurrencyLimitInterceptor recommendationConcurrencyLimiter() {
+        return recommendationLimiter;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(searchLimiter).addPathPatterns("/api/books/search", "/api/books/query");
+        registry.addInterceptor(recommendationLimiter).addPathPatterns("/api/recommendations/**");
+    }
+}
@@ -4,11 +4,12 @@ import java.util.Objects;
 
 public class Book {
     private String isbn;
-    private String title;
-    private String author;
-    private int publicationYear;
-    private String branchId;
-    private BookStatus status;
+    private volatile String title;
+    private volatile String author;
+    private volatile int publicationYear;
+    private volatile String branchId;
+    private volatile BookStatus status;
+    private volatile long version;
 
     public Book(String isbn, String title, String author, int publicationYear) {
         this.isbn = isbn;
@@ -25,11 +26,19 @@ public class Book {
     public String getBranchId() { return branchId; }
     public BookStatus getStatus() { return status; }
 
-    public void setTitle(String title) { this.title = title; }
-    public void setAuthor(String author) { this.author = author; }
-    public void setPublicationYear(int publicationYear) { this.publicationYear = publicationYear; }
-    public void setBranchId(String branchId) { this.branchId = branchId; }
-    public void setStatus(BookStatus status) { this.status = status; }
+    public void setTitle(String title) { this.version = 0; this.title = title; }
+    public void setAuthor(String author) { this.version = 0; this.author = author; }
+    public void setPublicationYear(int publicationYear) { this.version = 0; this.publicationYear = publicationYear; }
+    public void setBranchId(String branchId) { this.version = 0; this.branchId = branchId; }
+    public void setStatus(BookStatus status) { this.version = 0; this.status = status; }
+
+    public long version() {
+        return version;
+    }
+
+    public void stampVersion(long version) {
+        this.version = version;
+    }
 
     @Override
     public boolean equals(Object o) {
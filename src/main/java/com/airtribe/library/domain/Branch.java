@@ -1,33 +1,49 @@
 package com.airtribe.library.domain;
 
+import com.airtribe.library.util.KeyCodec;
+import com.airtribe.library.util.PersistentLongSet;
 import java.util.*;
 
 public class Branch {
     private String branchId;
-    private String name;
-    private String location;
-    private Set<String> bookIsbns;
+    private volatile String name;
+    private volatile String location;
+    private volatile PersistentLongSet bookIsbns = PersistentLongSet.EMPTY;
+    private volatile long version;
 
     public Branch(String branchId, String name, String location) {
         this.branchId = branchId;
         this.name = name;
         this.location = location;
-        this.bookIsbns = new HashSet<>();
     }
 
     public String getBranchId() { return branchId; }
     public String getName() { return name; }
     public String getLocation() { return location; }
-    public Set<String> getBookIsbns() { return new HashSet<>(bookIsbns); }
+    public Set<String> getBookIsbns() { return bookIsbns.asStrings(KeyCodec.ISBN); }
 
-    public void setName(String name) { this.name = name; }
-    public void setLocation(String location) { this.location = location; }
+    public void setName(String name) { this.version = 0; this.name = name; }
+    public void setLocation(String location) { this.version = 0; this.location = location; }
 
-    public void addBook(String isbn) {
-        bookIsbns.add(isbn);
+    public synchronized void addBook(String isbn) {
+        version = 0;
+        bookIsbns = bookIsbns.with(KeyCodec.ISBN.encode(isbn));
     }
 
-    public void removeBook(String isbn) {
-        bookIsbns.remove(isbn);
+    public synchronized void removeBook(String isbn) {
+        version = 0;
+        bookIsbns = bookIsbns.without(KeyCodec.ISBN.lookup(isbn));
+    }
+
+    public PersistentLongSet bookIsbnKeys() {
+        return bookIsbns;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public void stampVersion(long version) {
+        this.version = version;
     }
 }
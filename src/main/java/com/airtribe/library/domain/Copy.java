@@ -0,0 +1,36 @@
+package com.airtribe.library.domain;
+
+import com.airtribe.library.util.KeyCodec;
+
+public class Copy {
+    private final long copyKey;
+    private final long isbnKey;
+    private volatile String branchId;
+    private volatile BookStatus status;
+
+    public Copy(String barcode, String isbn, String branchId) {
+        this(barcode, isbn, branchId, BookStatus.AVAILABLE);
+    }
+
+    public Copy(String barcode, String isbn, String branchId, BookStatus status) {
+        this.copyKey = KeyCodec.COPY_ID.encode(barcode);
+        this.isbnKey = KeyCodec.ISBN.encode(isbn);
+        this.branchId = branchId;
+        this.status = status;
+    }
+
+    public String getBarcode() { return KeyCodec.COPY_ID.decode(copyKey); }
+    public String getIsbn() { return KeyCodec.ISBN.decode(isbnKey); }
+    public String getBranchId() { return branchId; }
+    public BookStatus getStatus() { return status; }
+
+    public void setBranchId(String branchId) { this.branchId = branchId; }
+    public void setStatus(BookStatus status) { this.status = status; }
+
+    public boolean isAvailable() {
+        return status == BookStatus.AVAILABLE;
+    }
+
+    public long copyKey() { return copyKey; }
+    public long isbnKey() { return isbnKey; }
+}
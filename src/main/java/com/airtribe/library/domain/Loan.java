@@ -1,33 +1,58 @@
 package com.airtribe.library.domain;
 
+import com.airtribe.library.util.KeyCodec;
 import java.time.LocalDate;
 
 public class Loan {
-    private String loanId;
-    private String isbn;
-    private String patronId;
-    private LocalDate borrowDate;
-    private LocalDate dueDate;
-    private LocalDate returnDate;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private final long loanKey;
+    private final long isbnKey;
+    private final long patronKey;
+    private final long copyKey;
+    private final int borrowDay;
+    private final int dueDay;
+    private volatile int returnDay = NO_DATE;
+    private int remindersSent;
 
     public Loan(String loanId, String isbn, String patronId, LocalDate borrowDate, LocalDate dueDate) {
-        this.loanId = loanId;
-        this.isbn = isbn;
-        this.patronId = patronId;
-        this.borrowDate = borrowDate;
-        this.dueDate = dueDate;
+        this(loanId, isbn, patronId, null, borrowDate, dueDate);
+    }
+
+    public Loan(String loanId, String isbn, String patronId, String barcode, LocalDate borrowDate,
+                LocalDate dueDate) {
+        this.loanKey = KeyCodec.LOAN_ID.encode(loanId);
+        this.isbnKey = KeyCodec.ISBN.encode(isbn);
+        this.patronKey = KeyCodec.PATRON_ID.encode(patronId);
+        this.copyKey = KeyCodec.COPY_ID.encode(barcode);
+        this.borrowDay = (int) borrowDate.toEpochDay();
+        this.dueDay = (int) dueDate.toEpochDay();
     }
 
-    public String getLoanId() { return loanId; }
-    public String getIsbn() { return isbn; }
-    public String getPatronId() { return patronId; }
-    public LocalDate getBorrowDate() { return borrowDate; }
-    public LocalDate getDueDate() { return dueDate; }
-    public LocalDate getReturnDate() { return returnDate; }
+    public String getLoanId() { return KeyCodec.LOAN_ID.decode(loanKey); }
+    public String getIsbn() { return KeyCodec.ISBN.decode(isbnKey); }
+    public String getPatronId() { return KeyCodec.PATRON_ID.decode(patronKey); }
+    public String getBarcode() { return KeyCodec.COPY_ID.decode(copyKey); }
+    public LocalDate getBorrowDate() { return LocalDate.ofEpochDay(borrowDay); }
+    public LocalDate getDueDate() { return LocalDate.ofEpochDay(dueDay); }
+    public LocalDate getReturnDate() { return returnDay == NO_DATE ? null : LocalDate.ofEpochDay(returnDay); }
 
-    public void setReturnDate(LocalDate returnDate) { this.returnDate = returnDate; }
+    public void setReturnDate(LocalDate returnDate) {
+        this.returnDay = returnDate == null ? NO_DATE : (int) returnDate.toEpochDay();
+    }
 
     public boolean isActive() {
-        return returnDate == null;
+        return returnDay == NO_DATE;
     }
+
+    public int remindersSent() { return remindersSent; }
+
+    public void markReminded(int remindersSent) {
+        this.remindersSent = remindersSent;
+    }
+
+    public long loanKey() { return loanKey; }
+    public long isbnKey() { return isbnKey; }
+    public long patronKey() { return patronKey; }
+    public long copyKey() { return copyKey; }
 }
@@ -1,41 +1,72 @@
 package com.airtribe.library.domain;
 
+import com.airtribe.library.util.HistoryLog;
+import com.airtribe.library.util.KeyCodec;
+import com.airtribe.library.util.PersistentLongSet;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.function.UnaryOperator;
 
 public class Patron {
     private String patronId;
     private String name;
     private String email;
-    private List<String> borrowingHistory;
-    private Set<String> currentBorrowedBooks;
+    private volatile HistoryLog borrowingHistory = HistoryLog.EMPTY;
+    private volatile PersistentLongSet currentBorrowedBooks = PersistentLongSet.EMPTY;
+    private volatile int loggedHistorySize;
 
     public Patron(String patronId, String name, String email) {
         this.patronId = patronId;
         this.name = name;
         this.email = email;
-        this.borrowingHistory = new ArrayList<>();
-        this.currentBorrowedBooks = new HashSet<>();
     }
 
     public String getPatronId() { return patronId; }
     public String getName() { return name; }
     public String getEmail() { return email; }
-    public List<String> getBorrowingHistory() { return new ArrayList<>(borrowingHistory); }
-    public Set<String> getCurrentBorrowedBooks() { return new HashSet<>(currentBorrowedBooks); }
+    @JsonIgnore
+    public List<String> getBorrowingHistory() { return borrowingHistory.asStrings(KeyCodec.ISBN); }
+    public Set<String> getCurrentBorrowedBooks() { return currentBorrowedBooks.asStrings(KeyCodec.ISBN); }
 
     public void setName(String name) { this.name = name; }
     public void setEmail(String email) { this.email = email; }
 
     public void addToBorrowingHistory(String isbn) {
-        borrowingHistory.add(isbn);
+        addToBorrowingHistory(isbn, LocalDate.now());
     }
 
-    public void borrowBook(String isbn) {
-        currentBorrowedBooks.add(isbn);
+    public synchronized void addToBorrowingHistory(String isbn, LocalDate borrowedOn) {
+        int day = borrowedOn == null ? HistoryLog.NO_DAY : (int) borrowedOn.toEpochDay();
+        borrowingHistory = borrowingHistory.with(KeyCodec.ISBN.encode(isbn), day);
     }
 
-    public void returnBook(String isbn) {
-        currentBorrowedBooks.remove(isbn);
+    public synchronized void restoreBorrowingHistory(HistoryLog history) {
+        borrowingHistory = history;
+    }
+
+    public synchronized void compactBorrowingHistory(UnaryOperator<HistoryLog> compactor) {
+        borrowingHistory = compactor.apply(borrowingHistory);
+    }
+
+    public synchronized void borrowBook(String isbn) {
+        currentBorrowedBooks = currentBorrowedBooks.with(KeyCodec.ISBN.encode(isbn));
+    }
+
+    public synchronized void returnBook(String isbn) {
+        currentBorrowedBooks = currentBorrowedBooks.without(KeyCodec.ISBN.lookup(isbn));
+    }
+
+    public HistoryLog borrowingHistoryLog() {
+        return borrowingHistory;
+    }
+
+    public int loggedHistorySize() {
+        return loggedHistorySize;
+    }
+
+    public synchronized void markHistoryLogged(int size) {
+        loggedHistorySize = Math.max(loggedHistorySize, size);
     }
 
     @Override
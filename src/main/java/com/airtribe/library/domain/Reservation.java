@@ -1,27 +1,37 @@
 package com.airtribe.library.domain;
 
+import com.airtribe.library.util.KeyCodec;
 import java.time.LocalDateTime;
 
 public class Reservation {
-    private String reservationId;
-    private String isbn;
-    private String patronId;
+    private final long reservationKey;
+    private final long isbnKey;
+    private final long patronKey;
     private LocalDateTime reservationDate;
     private ReservationStatus status;
 
     public Reservation(String reservationId, String isbn, String patronId) {
-        this.reservationId = reservationId;
-        this.isbn = isbn;
-        this.patronId = patronId;
-        this.reservationDate = LocalDateTime.now();
-        this.status = ReservationStatus.ACTIVE;
+        this(reservationId, isbn, patronId, LocalDateTime.now(), ReservationStatus.ACTIVE);
     }
 
-    public String getReservationId() { return reservationId; }
-    public String getIsbn() { return isbn; }
-    public String getPatronId() { return patronId; }
+    public Reservation(String reservationId, String isbn, String patronId,
+                       LocalDateTime reservationDate, ReservationStatus status) {
+        this.reservationKey = KeyCodec.RESERVATION_ID.encode(reservationId);
+        this.isbnKey = KeyCodec.ISBN.encode(isbn);
+        this.patronKey = KeyCodec.PATRON_ID.encode(patronId);
+        this.reservationDate = reservationDate;
+        this.status = status;
+    }
+
+    public String getReservationId() { return KeyCodec.RESERVATION_ID.decode(reservationKey); }
+    public String getIsbn() { return KeyCodec.ISBN.decode(isbnKey); }
+    public String getPatronId() { return KeyCodec.PATRON_ID.decode(patronKey); }
     public LocalDateTime getReservationDate() { return reservationDate; }
     public ReservationStatus getStatus() { return status; }
 
     public void setStatus(ReservationStatus status) { this.status = status; }
+
+    public long reservationKey() { return reservationKey; }
+    public long isbnKey() { return isbnKey; }
+    public long patronKey() { return patronKey; }
 }
@@ -0,0 +1,7 @@
+package com.airtribe.library.exception;
+
+public class AmbiguousReturnException extends RuntimeException {
+    public AmbiguousReturnException(String message) {
+        super(message);
+    }
+}
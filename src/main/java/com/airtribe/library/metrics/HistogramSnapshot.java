@@ -0,0 +1,4 @@
+package com.airtribe.library.metrics;
+
+public record HistogramSnapshot(long count, double mean, double p50, double p90, double p99, double max) {
+}
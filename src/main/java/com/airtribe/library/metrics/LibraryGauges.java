@@ -0,0 +1,62 @@
+package com.airtribe.library.metrics;
+
+import com.airtribe.library.audit.AuditLog;
+import com.airtribe.library.controller.ConcurrencyLimitInterceptor;
+import com.airtribe.library.patterns.NotificationService;
+import com.airtribe.library.repository.*;
+import com.airtribe.library.util.KeyCodec;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Component;
+import java.util.List;
+
+@Component
+public class LibraryGauges {
+    private final MetricsRegistry metrics;
+    private final BookRepository bookRepository;
+    private final PatronRepository patronRepository;
+    private final LoanRepository loanRepository;
+    private final ReservationRepository reservationRepository;
+    private final BranchRepository branchRepository;
+    private final BookSearchIndex searchIndex;
+    private final NotificationService notificationService;
+    private final AuditLog auditLog;
+    private final List<ConcurrencyLimitInterceptor> limiters;
+
+    public LibraryGauges(MetricsRegistry metrics, BookRepository bookRepository, PatronRepository patronRepository,
+                         LoanRepository loanRepository, ReservationRepository reservationRepository,
+                         BranchRepository branchRepository, BookSearchIndex searchIndex,
+                         NotificationService notificationService, AuditLog auditLog,
+                         List<ConcurrencyLimitInterceptor> limiters) {
+        this.metrics = metrics;
+        this.bookRepository = bookRepository;
+        this.patronRepository = patronRepository;
+        this.loanRepository = loanRepository;
+        this.reservationRepository = reservationRepository;
+        this.branchRepository = branchRepository;
+        this.searchIndex = searchIndex;
+        this.notificationService = notificationService;
+        this.auditLog = auditLog;
+        this.limiters = limiters;
+    }
+
+    @PostConstruct
+    public void register() {
+        metrics.gauge("repository.books", bookRepository::count);
+        metrics.gauge("repository.patrons", patronRepository::count);
+        metrics.gauge("repository.loans", loanRepository::count);
+        metrics.gauge("repository.reservations", reservationRepository::count);
+        metrics.gauge("repository.branches", branchRepository::count);
+        metrics.gauge("loans.active", loanRepository::countActive);
+        metrics.gauge("search.index.documents", searchIndex::size);
+        metrics.gauge("keys.dictionary-entries", KeyCodec::dictionaryEntries);
+        metrics.gauge("notifications.pending", () -> notificationService.getStats().pending());
+        metrics.gauge("notifications.dropped", () -> notificationService.getStats().dropped());
+        metrics.gauge("audit.published", auditLog::getPublished);
+        metrics.gauge("audit.dropped", auditLog::getDropped);
+        metrics.gauge("audit.backlog", auditLog::getBacklog);
+        for (ConcurrencyLimitInterceptor limiter : limiters) {
+            metrics.gauge("limits." + limiter.getEndpoint() + ".in-flight", limiter::getInFlight);
+            metrics.gauge("limits." + limiter.getEndpoint() + ".rejected", limiter::getRejected);
+        }
+    }
+}
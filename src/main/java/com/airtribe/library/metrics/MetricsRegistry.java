@@ -0,0 +1,41 @@
+package com.airtribe.library.metrics;
+
+import org.springframework.stereotype.Component;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+@Component
+public class MetricsRegistry {
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    public OperationMetrics operation(String name) {
+        return operations.computeIfAbsent(name, n -> new OperationMetrics());
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    public MetricsSnapshot snapshot() {
+        Map<String, OperationMetrics.OperationSnapshot> operationSnapshots = new TreeMap<>();
+        operations.forEach((name, metrics) -> operationSnapshots.put(name, metrics.snapshot()));
+        Map<String, HistogramSnapshot> histogramSnapshots = new TreeMap<>();
+        histograms.forEach((name, histogram) -> histogramSnapshots.put(name, histogram.snapshot(1)));
+        Map<String, Long> gaugeValues = new TreeMap<>();
+        gauges.forEach((name, supplier) -> gaugeValues.put(name, supplier.getAsLong()));
+        return new MetricsSnapshot(operationSnapshots, histogramSnapshots, gaugeValues);
+    }
+
+    public record MetricsSnapshot(Map<String, OperationMetrics.OperationSnapshot> operations,
+                                  Map<String, HistogramSnapshot> histograms,
+                                  Map<String, Long> gauges) {
+    }
+}
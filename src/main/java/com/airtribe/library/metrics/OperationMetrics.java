@@ -0,0 +1,27 @@
+package com.airtribe.library.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public final class OperationMetrics {
+    private static final double NANOS_TO_MICROS = 1e-3;
+
+    private final Histogram latencyNanos = new Histogram();
+    private final LongAdder errors = new LongAdder();
+
+    public void recordSuccess(long startNanos) {
+        latencyNanos.record(System.nanoTime() - startNanos);
+    }
+
+    public void recordFailure(long startNanos) {
+        latencyNanos.record(System.nanoTime() - startNanos);
+        errors.increment();
+    }
+
+    OperationSnapshot snapshot() {
+        HistogramSnapshot latency = latencyNanos.snapshot(NANOS_TO_MICROS);
+        return new OperationSnapshot(latency.count(), errors.sum(), latency);
+    }
+
+    public record OperationSnapshot(long calls, long errors, HistogramSnapshot latencyMicros) {
+    }
+}
@@ -3,34 +3,62 @@ package com.airtribe.library.patterns;
 import com.airtribe.library.domain.*;
 import org.springframework.stereotype.Component;
 import java.time.LocalDate;
-import java.util.UUID;
 
 @Component
 public class EntityFactory {
-    
+    private final IdGenerator idGenerator;
+
+    public EntityFactory(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
     public Book createBook(String isbn, String title, String author, int publicationYear) {
         return new Book(isbn, title, author, publicationYear);
     }
 
     public Patron createPatron(String name, String email) {
-        String patronId = "P" + UUID.randomUUID().toString().substring(0, 8);
+        String patronId = idGenerator.nextId('P');
         return new Patron(patronId, name, email);
     }
 
+    public Copy createCopy(String isbn, String branchId) {
+        String barcode = idGenerator.nextId('C');
+        return new Copy(barcode, isbn, branchId);
+    }
+
     public Loan createLoan(String isbn, String patronId) {
-        String loanId = "L" + UUID.randomUUID().toString().substring(0, 8);
+        return createLoan(isbn, patronId, null);
+    }
+
+    public Loan createLoan(String isbn, String patronId, String barcode) {
+        String loanId = idGenerator.nextId('L');
         LocalDate borrowDate = LocalDate.now();
         LocalDate dueDate = borrowDate.plusDays(14);
-        return new Loan(loanId, isbn, patronId, borrowDate, dueDate);
+        return new Loan(loanId, isbn, patronId, barcode, borrowDate, dueDate);
     }
 
     public Branch createBranch(String name, String location) {
-        String branchId = "B" + UUID.randomUUID().toString().substring(0, 8);
+        String branchId = idGenerator.nextId('B');
         return new Branch(branchId, name, location);
     }
 
+    public void advancePast(String id) {
+        if (id == null || id.length() != IdGenerator.ID_DIGITS + 1) {
+            return;
+        }
+        long value = 0;
+        for (int i = 1; i < id.length(); i++) {
+            int digit = Character.digit(id.charAt(i), 16);
+            if (digit < 0) {
+                return;
+            }
+            value = (value << 4) | digit;
+        }
+        idGenerator.advancePast(value);
+    }
+
     public Reservation createReservation(String isbn, String patronId) {
-        String reservationId = "R" + UUID.randomUUID().toString().substring(0, 8);
+        String reservationId = idGenerator.nextId('R');
         return new Reservation(reservationId, isbn, patronId);
     }
 }
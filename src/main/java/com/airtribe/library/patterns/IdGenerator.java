@@ -0,0 +1,21 @@
+package com.airtribe.library.patterns;
+
+public interface IdGenerator {
+    int ID_DIGITS = 15;
+
+    long nextId();
+
+    default void advancePast(long id) {
+    }
+
+    default String nextId(char prefix) {
+        long id = nextId();
+        char[] chars = new char[ID_DIGITS + 1];
+        chars[0] = prefix;
+        for (int i = ID_DIGITS; i >= 1; i--) {
+            chars[i] = Character.forDigit((int) (id & 0xf), 16);
+            id >>>= 4;
+        }
+        return new String(chars);
+    }
+}
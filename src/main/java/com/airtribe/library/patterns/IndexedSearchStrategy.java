@@ -0,0 +1,30 @@
+package com.airtribe.library.patterns;
+
+import com.airtribe.library.domain.Book;
+import com.airtribe.library.repository.BookSearchIndex;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+public class IndexedSearchStrategy implements SearchStrategy {
+    private final BookSearchIndex index;
+    private final BookSearchIndex.Field field;
+
+    public IndexedSearchStrategy(BookSearchIndex index, BookSearchIndex.Field field) {
+        this.index = index;
+        this.field = field;
+    }
+
+    @Override
+    public List<Book> search(List<Book> books, String query) {
+        Set<Book> candidates = new HashSet<>(books);
+        return index.search(field, query, 0, Integer.MAX_VALUE).stream()
+                .filter(candidates::contains)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Book> search(Supplier<List<Book>> books, String query, int page, int size) {
+        return index.search(field, query, page * size, size);
+    }
+}
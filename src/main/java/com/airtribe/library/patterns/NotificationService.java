@@ -1,30 +1,253 @@
 package com.airtribe.library.patterns;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 @Component
 public class NotificationService implements Subject {
     private static final Logger logger = LoggerFactory.getLogger(NotificationService.class);
-    private final List<Observer> observers = new ArrayList<>();
+    private static final long POLL_MILLIS = 100;
+    private static final long SHUTDOWN_MILLIS = 5_000;
+
+    private final Map<String, Set<Observer>> observers = new ConcurrentHashMap<>();
+    private final List<BlockingQueue<Notification>> queues;
+    private final List<Thread> workers = new ArrayList<>();
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+    private final long enqueueTimeoutMillis;
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder unaddressed = new LongAdder();
+    private final AtomicLong pending = new AtomicLong();
+    private final Object idle = new Object();
+    private final Map<String, ChannelCounters> channels = new ConcurrentHashMap<>();
+    private volatile boolean running;
+
+    public NotificationService(@Value("${library.notifications.workers:2}") int workerCount,
+                               @Value("${library.notifications.queue-capacity:10000}") int queueCapacity,
+                               @Value("${library.notifications.batch-size:64}") int batchSize,
+                               @Value("${library.notifications.max-attempts:3}") int maxAttempts,
+                               @Value("${library.notifications.retry-backoff-ms:50}") long retryBackoffMillis,
+                               @Value("${library.notifications.enqueue-timeout-ms:100}") long enqueueTimeoutMillis) {
+        int shards = Math.max(1, workerCount);
+        int shardCapacity = Math.max(1, queueCapacity / shards);
+        List<BlockingQueue<Notification>> shardQueues = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            shardQueues.add(new ArrayBlockingQueue<>(shardCapacity));
+        }
+        this.queues = List.copyOf(shardQueues);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMillis = Math.max(0, retryBackoffMillis);
+        this.enqueueTimeoutMillis = Math.max(0, enqueueTimeoutMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < queues.size(); i++) {
+            BlockingQueue<Notification> queue = queues.get(i);
+            Thread worker = new Thread(() -> drain(queue), "notification-dispatch-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        long deadline = System.currentTimeMillis() + SHUTDOWN_MILLIS;
+        for (Thread worker : workers) {
+            try {
+                worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        workers.forEach(Thread::interrupt);
+        if (pending.get() > 0) {
+            logger.warn("Notification service stopped with {} undelivered notifications", pending.get());
+        }
+    }
 
     @Override
-    public void attach(Observer observer) {
-        observers.add(observer);
+    public void attach(String recipientId, Observer observer) {
+        observers.computeIfAbsent(recipientId, id -> new CopyOnWriteArraySet<>()).add(observer);
     }
 
     @Override
-    public void detach(Observer observer) {
-        observers.remove(observer);
+    public void detach(String recipientId, Observer observer) {
+        observers.computeIfPresent(recipientId, (id, attached) -> {
+            attached.remove(observer);
+            return attached.isEmpty() ? null : attached;
+        });
     }
 
     @Override
-    public void notifyObservers(String message) {
-        logger.info("Notifying {} observers: {}", observers.size(), message);
-        for (Observer observer : observers) {
-            observer.update(message);
+    public boolean notifyObservers(String recipientId, String message) {
+        return notifyObservers(recipientId, message, enqueueTimeoutMillis);
+    }
+
+    public boolean notifyObservers(String recipientId, String message, Observer fallback) {
+        return notifyObservers(recipientId, message, enqueueTimeoutMillis, fallback);
+    }
+
+    public boolean notifyObservers(String recipientId, String message, long timeoutMillis) {
+        return notifyObservers(recipientId, message, timeoutMillis, null);
+    }
+
+    public boolean notifyObservers(String recipientId, String message, long timeoutMillis, Observer fallback) {
+        if (fallback == null && !observers.containsKey(recipientId)) {
+            unaddressed.increment();
+            return false;
+        }
+        BlockingQueue<Notification> queue = queues.get(Math.floorMod(recipientId.hashCode(), queues.size()));
+        Notification notification = new Notification(recipientId, message, fallback);
+        pending.incrementAndGet();
+        boolean accepted;
+        try {
+            accepted = queue.offer(notification)
+                    || queue.offer(notification, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            completed(1);
+            dropped.increment();
+            logger.warn("Notification queue full, dropping notification for {}", recipientId);
+            return false;
+        }
+        enqueued.increment();
+        return true;
+    }
+
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (idle) {
+            while (pending.get() > 0) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                idle.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    public NotificationStats getStats() {
+        Map<String, ChannelStats> channelStats = new TreeMap<>();
+        channels.forEach((channel, counters) -> channelStats.put(channel, counters.snapshot()));
+        return new NotificationStats(enqueued.sum(), dropped.sum(), coalesced.sum(), unaddressed.sum(),
+                pending.get(), channelStats);
+    }
+
+    private void drain(BlockingQueue<Notification> queue) {
+        List<Notification> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                Notification first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                try {
+                    dispatch(batch);
+                } catch (RuntimeException e) {
+                    logger.error("Notification batch dispatch failed", e);
+                } finally {
+                    completed(batch.size());
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatch(List<Notification> batch) throws InterruptedException {
+        Map<String, Set<String>> byRecipient = new LinkedHashMap<>();
+        Map<String, Observer> fallbacks = new HashMap<>();
+        for (Notification notification : batch) {
+            if (!byRecipient.computeIfAbsent(notification.recipientId(), id -> new LinkedHashSet<>())
+                    .add(notification.message())) {
+                coalesced.increment();
+            }
+            if (notification.fallback() != null) {
+                fallbacks.putIfAbsent(notification.recipientId(), notification.fallback());
+            }
+        }
+        for (Map.Entry<String, Set<String>> entry : byRecipient.entrySet()) {
+            List<String> messages = List.copyOf(entry.getValue());
+            Set<Observer> attached = observers.getOrDefault(entry.getKey(), Set.of());
+            Observer fallback = fallbacks.get(entry.getKey());
+            for (Observer observer : attached.isEmpty() && fallback != null ? Set.of(fallback) : attached) {
+                deliver(entry.getKey(), observer, messages);
+            }
+        }
+    }
+
+    private void deliver(String recipientId, Observer observer, List<String> messages) throws InterruptedException {
+        ChannelCounters counters = channels.computeIfAbsent(observer.channel(), channel -> new ChannelCounters());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                observer.update(messages);
+                counters.batches.increment();
+                counters.delivered.add(messages.size());
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts) {
+                    counters.failed.add(messages.size());
+                    logger.error("Notification to {} via {} failed after {} attempts",
+                            recipientId, observer.channel(), attempt, e);
+                    return;
+                }
+                counters.retried.increment();
+                Thread.sleep(retryBackoffMillis * attempt);
+            }
+        }
+    }
+
+    private void completed(int count) {
+        if (pending.addAndGet(-count) == 0) {
+            synchronized (idle) {
+                idle.notifyAll();
+            }
+        }
+    }
+
+    public record NotificationStats(long enqueued, long dropped, long coalesced, long unaddressed, long pending,
+                                    Map<String, ChannelStats> channels) {
+    }
+
+    public record ChannelStats(long batches, long delivered, long retried, long failed) {
+    }
+
+    private record Notification(String recipientId, String message, Observer fallback) {
+    }
+
+    private static final class ChannelCounters {
+        private final LongAdder batches = new LongAdder();
+        private final LongAdder delivered = new LongAdder();
+        private final LongAdder retried = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+
+        ChannelStats snapshot() {
+            return new ChannelStats(batches.sum(), delivered.sum(), retried.sum(), failed.sum());
         }
     }
 }
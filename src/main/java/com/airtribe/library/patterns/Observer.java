@@ -1,5 +1,17 @@
 package com.airtribe.library.patterns;
 
+import java.util.List;
+
 public interface Observer {
     void update(String message);
+
+    default void update(List<String> messages) {
+        for (String message : messages) {
+            update(message);
+        }
+    }
+
+    default String channel() {
+        return getClass().getSimpleName();
+    }
 }
@@ -3,6 +3,9 @@ package com.airtribe.library.patterns;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.Objects;
+
 public class PatronObserver implements Observer {
     private static final Logger logger = LoggerFactory.getLogger(PatronObserver.class);
     private final String patronId;
@@ -18,7 +21,34 @@ public class PatronObserver implements Observer {
         logger.info("Notification sent to patron {} ({}): {}", patronId, email, message);
     }
 
+    @Override
+    public void update(List<String> messages) {
+        if (messages.size() == 1) {
+            update(messages.get(0));
+            return;
+        }
+        logger.info("{} notifications sent to patron {} ({}): {}", messages.size(), patronId, email, messages);
+    }
+
+    @Override
+    public String channel() {
+        return "email";
+    }
+
     public String getPatronId() {
         return patronId;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PatronObserver that = (PatronObserver) o;
+        return Objects.equals(patronId, that.patronId) && Objects.equals(email, that.email);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(patronId, email);
+    }
 }
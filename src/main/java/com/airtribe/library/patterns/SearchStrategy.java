@@ -2,7 +2,15 @@ package com.airtribe.library.patterns;
 
 import com.airtribe.library.domain.Book;
 import java.util.List;
+import java.util.function.Supplier;
 
 public interface SearchStrategy {
     List<Book> search(List<Book> books, String query);
+
+    default List<Book> search(Supplier<List<Book>> books, String query, int page, int size) {
+        List<Book> results = search(books.get(), query);
+        int from = (int) Math.min((long) page * size, results.size());
+        int to = (int) Math.min((long) from + size, results.size());
+        return results.subList(from, to);
+    }
 }
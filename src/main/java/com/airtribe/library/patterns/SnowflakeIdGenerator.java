@@ -0,0 +1,77 @@
+package com.airtribe.library.patterns;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+@Component
+public class SnowflakeIdGenerator implements IdGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(SnowflakeIdGenerator.class);
+    public static final int TIMESTAMP_BITS = 41;
+    public static final int NODE_BITS = 8;
+    public static final int SEQUENCE_BITS = 10;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long MAX_TIMESTAMP = (1L << TIMESTAMP_BITS) - 1;
+
+    private final long nodeId;
+    private final long epochMillis;
+    private final LongSupplier clock;
+    private final AtomicLong last = new AtomicLong();
+
+    @Autowired
+    public SnowflakeIdGenerator(@Value("${library.ids.node-id:0}") int nodeId,
+                                @Value("${library.ids.epoch:2024-01-01T00:00:00Z}") String epoch) {
+        this(nodeId, Instant.parse(epoch).toEpochMilli(), System::currentTimeMillis);
+    }
+
+    public SnowflakeIdGenerator(int nodeId, long epochMillis, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.epochMillis = epochMillis;
+        this.clock = clock;
+        logger.debug("Snowflake id generator for node {} with epoch {}", nodeId, Instant.ofEpochMilli(epochMillis));
+    }
+
+    @Override
+    public long nextId() {
+        long now = clock.getAsLong() - epochMillis;
+        if (now < 0 || now > MAX_TIMESTAMP) {
+            throw new IllegalStateException("Clock is outside the id epoch range: " + Instant.ofEpochMilli(now + epochMillis));
+        }
+        long current;
+        long next;
+        do {
+            current = last.get();
+            long candidate = now << SEQUENCE_BITS;
+            next = candidate > current ? candidate : current + 1;
+        } while (!last.compareAndSet(current, next));
+        long timestamp = next >>> SEQUENCE_BITS;
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+    }
+
+    @Override
+    public void advancePast(long id) {
+        long state = ((id >>> (NODE_BITS + SEQUENCE_BITS)) << SEQUENCE_BITS) | (id & SEQUENCE_MASK);
+        last.accumulateAndGet(state, Math::max);
+    }
+
+    public long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + epochMillis;
+    }
+
+    public int nodeOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE_ID);
+    }
+
+    public int getNodeId() {
+        return (int) nodeId;
+    }
+}
@@ -1,7 +1,7 @@
 package com.airtribe.library.patterns;
 
 public interface Subject {
-    void attach(Observer observer);
-    void detach(Observer observer);
-    void notifyObservers(String message);
+    void attach(String recipientId, Observer observer);
+    void detach(String recipientId, Observer observer);
+    boolean notifyObservers(String recipientId, String message);
 }
@@ -0,0 +1,239 @@
+package com.airtribe.library.persistence;
+
+import com.airtribe.library.domain.*;
+import com.airtribe.library.util.HistoryLog;
+import com.airtribe.library.util.KeyCodec;
+import java.io.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.function.Function;
+
+public final class EntityCodec {
+    private static final int LOAN_RETURNED = 1;
+    private static final int LOAN_COPY = 2;
+    private static final int LOAN_REMINDED = 4;
+    private static final int HISTORY_SEGMENTED = -1;
+    private static final int HISTORY_APPENDED = -2;
+
+    private EntityCodec() {
+    }
+
+    public static byte[] encode(EntityType type, Object entity) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(out, type, entity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Object decode(EntityType type, byte[] payload) {
+        return decodeRecord(type, payload, patronId -> null);
+    }
+
+    public static byte[] encodeRecord(EntityType type, Object entity) {
+        if (type != EntityType.PATRON) {
+            return encode(type, entity);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writePatronAppend(out, (Patron) entity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Object decodeRecord(EntityType type, byte[] payload, Function<String, Patron> patrons) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            return type == EntityType.PATRON ? readPatron(in, patrons) : read(in, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void write(DataOutput out, EntityType type, Object entity) throws IOException {
+        switch (type) {
+            case BOOK -> writeBook(out, (Book) entity);
+            case PATRON -> writePatron(out, (Patron) entity);
+            case LOAN -> writeLoan(out, (Loan) entity);
+            case RESERVATION -> writeReservation(out, (Reservation) entity);
+            case BRANCH -> writeBranch(out, (Branch) entity);
+            case COPY -> writeCopy(out, (Copy) entity);
+        }
+    }
+
+    public static Object read(DataInput in, EntityType type) throws IOException {
+        return switch (type) {
+            case BOOK -> readBook(in);
+            case PATRON -> readPatron(in, patronId -> null);
+            case LOAN -> readLoan(in);
+            case RESERVATION -> readReservation(in);
+            case BRANCH -> readBranch(in);
+            case COPY -> readCopy(in);
+        };
+    }
+
+    private static void writeBook(DataOutput out, Book book) throws IOException {
+        writeString(out, book.getIsbn());
+        writeString(out, book.getTitle());
+        writeString(out, book.getAuthor());
+        out.writeInt(book.getPublicationYear());
+        writeString(out, book.getBranchId());
+        out.writeByte(book.getStatus().ordinal());
+    }
+
+    private static Book readBook(DataInput in) throws IOException {
+        Book book = new Book(readString(in), readString(in), readString(in), in.readInt());
+        book.setBranchId(readString(in));
+        book.setStatus(BookStatus.values()[in.readByte()]);
+        return book;
+    }
+
+    private static void writePatron(DataOutput out, Patron patron) throws IOException {
+        writeString(out, patron.getPatronId());
+        writeString(out, patron.getName());
+        writeString(out, patron.getEmail());
+        out.writeInt(HISTORY_SEGMENTED);
+        patron.borrowingHistoryLog().writeTo(out, KeyCodec.ISBN);
+        writeStrings(out, patron.getCurrentBorrowedBooks());
+    }
+
+    private static void writePatronAppend(DataOutput out, Patron patron) throws IOException {
+        writeString(out, patron.getPatronId());
+        writeString(out, patron.getName());
+        writeString(out, patron.getEmail());
+        HistoryLog history = patron.borrowingHistoryLog();
+        int from = Math.min(patron.loggedHistorySize(), history.size());
+        out.writeInt(HISTORY_APPENDED);
+        out.writeInt(from);
+        history.writeTailTo(out, from, KeyCodec.ISBN);
+        writeStrings(out, patron.getCurrentBorrowedBooks());
+    }
+
+    private static Patron readPatron(DataInput in, Function<String, Patron> patrons) throws IOException {
+        Patron patron = new Patron(readString(in), readString(in), readString(in));
+        int historySize = in.readInt();
+        if (historySize == HISTORY_SEGMENTED) {
+            patron.restoreBorrowingHistory(HistoryLog.readFrom(in, KeyCodec.ISBN));
+        } else if (historySize == HISTORY_APPENDED) {
+            int from = in.readInt();
+            HistoryLog tail = HistoryLog.readFrom(in, KeyCodec.ISBN);
+            Patron current = patrons.apply(patron.getPatronId());
+            HistoryLog history = current == null ? HistoryLog.EMPTY : current.borrowingHistoryLog();
+            patron.restoreBorrowingHistory(history.appendFrom(tail, Math.max(0, history.size() - from)));
+        }
+        for (int i = 0; i < historySize; i++) {
+            patron.addToBorrowingHistory(readString(in), null);
+        }
+        int borrowedSize = in.readInt();
+        for (int i = 0; i < borrowedSize; i++) {
+            patron.borrowBook(readString(in));
+        }
+        return patron;
+    }
+
+    private static void writeLoan(DataOutput out, Loan loan) throws IOException {
+        writeString(out, loan.getLoanId());
+        writeString(out, loan.getIsbn());
+        writeString(out, loan.getPatronId());
+        out.writeLong(loan.getBorrowDate().toEpochDay());
+        out.writeLong(loan.getDueDate().toEpochDay());
+        int flags = (loan.getReturnDate() != null ? LOAN_RETURNED : 0) | (loan.getBarcode() != null ? LOAN_COPY : 0)
+                | (loan.remindersSent() > 0 ? LOAN_REMINDED : 0);
+        out.writeByte(flags);
+        if (loan.getReturnDate() != null) {
+            out.writeLong(loan.getReturnDate().toEpochDay());
+        }
+        if (loan.getBarcode() != null) {
+            out.writeUTF(loan.getBarcode());
+        }
+        if (loan.remindersSent() > 0) {
+            out.writeByte(loan.remindersSent());
+        }
+    }
+
+    private static Loan readLoan(DataInput in) throws IOException {
+        String loanId = readString(in);
+        String isbn = readString(in);
+        String patronId = readString(in);
+        LocalDate borrowDate = LocalDate.ofEpochDay(in.readLong());
+        LocalDate dueDate = LocalDate.ofEpochDay(in.readLong());
+        int flags = in.readByte();
+        LocalDate returnDate = (flags & LOAN_RETURNED) != 0 ? LocalDate.ofEpochDay(in.readLong()) : null;
+        String barcode = (flags & LOAN_COPY) != 0 ? in.readUTF() : null;
+        Loan loan = new Loan(loanId, isbn, patronId, barcode, borrowDate, dueDate);
+        loan.setReturnDate(returnDate);
+        if ((flags & LOAN_REMINDED) != 0) {
+            loan.markReminded(in.readUnsignedByte());
+        }
+        return loan;
+    }
+
+    private static void writeReservation(DataOutput out, Reservation reservation) throws IOException {
+        writeString(out, reservation.getReservationId());
+        writeString(out, reservation.getIsbn());
+        writeString(out, reservation.getPatronId());
+        out.writeLong(reservation.getReservationDate().toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(reservation.getReservationDate().getNano());
+        out.writeByte(reservation.getStatus().ordinal());
+    }
+
+    private static Reservation readReservation(DataInput in) throws IOException {
+        String reservationId = readString(in);
+        String isbn = readString(in);
+        String patronId = readString(in);
+        LocalDateTime reservationDate = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+        return new Reservation(reservationId, isbn, patronId, reservationDate,
+                ReservationStatus.values()[in.readByte()]);
+    }
+
+    private static void writeBranch(DataOutput out, Branch branch) throws IOException {
+        writeString(out, branch.getBranchId());
+        writeString(out, branch.getName());
+        writeString(out, branch.getLocation());
+        writeStrings(out, branch.getBookIsbns());
+    }
+
+    private static Branch readBranch(DataInput in) throws IOException {
+        Branch branch = new Branch(readString(in), readString(in), readString(in));
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            branch.addBook(readString(in));
+        }
+        return branch;
+    }
+
+    private static void writeCopy(DataOutput out, Copy copy) throws IOException {
+        writeString(out, copy.getBarcode());
+        writeString(out, copy.getIsbn());
+        writeString(out, copy.getBranchId());
+        out.writeByte(copy.getStatus().ordinal());
+    }
+
+    private static Copy readCopy(DataInput in) throws IOException {
+        return new Copy(readString(in), readString(in), readString(in), BookStatus.values()[in.readByte()]);
+    }
+
+    private static void writeStrings(DataOutput out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,10 @@
+package com.airtribe.library.persistence;
+
+public enum EntityType {
+    BOOK,
+    PATRON,
+    LOAN,
+    RESERVATION,
+    BRANCH,
+    COPY
+}
@@ -0,0 +1,201 @@
+package com.airtribe.library.persistence;
+
+import com.airtribe.library.domain.*;
+import com.airtribe.library.patterns.EntityFactory;
+import com.airtribe.library.repository.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+@Component
+public class PersistenceManager {
+    private static final Logger logger = LoggerFactory.getLogger(PersistenceManager.class);
+
+    private final WriteAheadLog writeAheadLog;
+    private final SnapshotStore snapshotStore;
+    private final BookRepository bookRepository;
+    private final PatronRepository patronRepository;
+    private final LoanRepository loanRepository;
+    private final ReservationRepository reservationRepository;
+    private final BranchRepository branchRepository;
+    private final CopyRepository copyRepository;
+    private final BookSearchIndex bookSearchIndex;
+    private final EntityFactory entityFactory;
+    private final long snapshotIntervalSeconds;
+    private ScheduledExecutorService scheduler;
+
+    public PersistenceManager(WriteAheadLog writeAheadLog, BookRepository bookRepository,
+                              PatronRepository patronRepository, LoanRepository loanRepository,
+                              ReservationRepository reservationRepository, BranchRepository branchRepository,
+                              CopyRepository copyRepository, BookSearchIndex bookSearchIndex, EntityFactory entityFactory,
+                              @Value("${library.persistence.snapshot-interval-seconds:300}") long snapshotIntervalSeconds) {
+        this.writeAheadLog = writeAheadLog;
+        this.snapshotStore = new SnapshotStore(writeAheadLog.getDirectory());
+        this.bookRepository = bookRepository;
+        this.patronRepository = patronRepository;
+        this.loanRepository = loanRepository;
+        this.reservationRepository = reservationRepository;
+        this.branchRepository = branchRepository;
+        this.copyRepository = copyRepository;
+        this.bookSearchIndex = bookSearchIndex;
+        this.entityFactory = entityFactory;
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+
+    @PostConstruct
+    public void recover() throws IOException {
+        if (!writeAheadLog.isEnabled()) {
+            return;
+        }
+        long began = System.nanoTime();
+        OptionalLong snapshot = snapshotStore.latestSequence();
+        long replayFrom = snapshot.orElse(0);
+        long snapshotRecords = snapshot.isPresent() ? snapshotStore.load(replayFrom, this::apply) : 0;
+        long snapshotLoaded = System.nanoTime();
+        long walRecords = 0;
+        long lastSegment = replayFrom;
+        for (long sequence : writeAheadLog.segmentSequences()) {
+            if (sequence >= replayFrom) {
+                walRecords += writeAheadLog.replay(sequence, this::apply);
+                lastSegment = sequence;
+            }
+        }
+        bookSearchIndex.markRebuilding();
+        writeAheadLog.open(lastSegment);
+        int backfilled = backfillCopies();
+        long recovered = System.nanoTime();
+        logger.info("Recovered state from {}: {} snapshot records in {} ms, {} log records in {} ms (JVM uptime {} ms)",
+                writeAheadLog.getDirectory(), snapshotRecords, (snapshotLoaded - began) / 1_000_000,
+                walRecords, (recovered - snapshotLoaded) / 1_000_000,
+                ManagementFactory.getRuntimeMXBean().getUptime());
+        if (backfilled > 0) {
+            logger.info("Created a physical copy for {} books recovered without one", backfilled);
+        }
+
+        Thread indexBuilder = new Thread(this::rebuildSearchIndex, "search-index-rebuild");
+        indexBuilder.setDaemon(true);
+        indexBuilder.start();
+
+        if (snapshotIntervalSeconds > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "snapshot-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalSeconds,
+                    snapshotIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    public synchronized void snapshot() throws IOException {
+        if (!writeAheadLog.isEnabled()) {
+            throw new IllegalStateException("Persistence is disabled");
+        }
+        long sequence = writeAheadLog.rotate();
+        try {
+            snapshotStore.write(sequence, this::forEach);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writeAheadLog.deleteSegmentsBefore(sequence);
+        snapshotStore.deleteSnapshotsBefore(sequence);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void rebuildSearchIndex() {
+        long began = System.nanoTime();
+        bookRepository.forEachOrdered(book -> {
+            bookSearchIndex.index(book);
+            Book current = bookRepository.findByIsbn(book.getIsbn()).orElse(null);
+            if (current == null) {
+                bookSearchIndex.remove(book.getIsbn());
+            } else if (current != book) {
+                bookSearchIndex.index(current);
+            }
+        });
+        bookSearchIndex.markReady();
+        logger.info("Search index rebuilt: {} books in {} ms", bookSearchIndex.size(),
+                (System.nanoTime() - began) / 1_000_000);
+    }
+
+    private int backfillCopies() {
+        List<Copy> missing = new ArrayList<>();
+        bookRepository.forEachOrdered(book -> {
+            if (copyRepository.findByIsbn(book.getIsbn()).isEmpty()) {
+                Copy copy = entityFactory.createCopy(book.getIsbn(), book.getBranchId());
+                copy.setStatus(book.getStatus());
+                missing.add(copy);
+            }
+        });
+        if (!missing.isEmpty()) {
+            copyRepository.saveAll(missing);
+        }
+        return missing.size();
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Periodic snapshot failed", e);
+        }
+    }
+
+    private void apply(WriteAheadLog.Record record) {
+        if (record.isDelete()) {
+            String id = record.deletedId();
+            switch (record.type()) {
+                case BOOK -> bookRepository.delete(id);
+                case PATRON -> patronRepository.delete(id);
+                case BRANCH -> branchRepository.delete(id);
+                case COPY -> copyRepository.delete(id);
+                default -> logger.warn("Ignoring delete of {} {}", record.type(), id);
+            }
+            return;
+        }
+        apply(record.type(), EntityCodec.decodeRecord(record.type(), record.payload(),
+                patronId -> patronRepository.findById(patronId).orElse(null)));
+    }
+
+    private void apply(EntityType type, Object entity) {
+        switch (type) {
+            case BOOK -> bookRepository.save((Book) entity);
+            case PATRON -> entityFactory.advancePast(patronRepository.save((Patron) entity).getPatronId());
+            case LOAN -> entityFactory.advancePast(loanRepository.save((Loan) entity).getLoanId());
+            case RESERVATION -> entityFactory.advancePast(
+                    reservationRepository.save((Reservation) entity).getReservationId());
+            case BRANCH -> entityFactory.advancePast(branchRepository.save((Branch) entity).getBranchId());
+            case COPY -> entityFactory.advancePast(copyRepository.save((Copy) entity).getBarcode());
+        }
+    }
+
+    private void forEach(EntityType type, Consumer<Object> action) {
+        switch (type) {
+            case BOOK -> bookRepository.forEachOrdered(action::accept);
+            case PATRON -> patronRepository.forEachOrdered(action::accept);
+            case LOAN -> loanRepository.forEachOrdered(action::accept);
+            case RESERVATION -> reservationRepository.forEachOrdered(action::accept);
+            case BRANCH -> branchRepository.forEachOrdered(action::accept);
+            case COPY -> copyRepository.forEachOrdered(action::accept);
+        }
+    }
+}
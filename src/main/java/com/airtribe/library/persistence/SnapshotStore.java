@@ -0,0 +1,297 @@
+package com.airtribe.library.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+public class SnapshotStore {
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotStore.class);
+    static final int SNAPSHOT_MAGIC = 0x4C4D5353;
+    static final int LEGACY_FORMAT_VERSION = 1;
+    static final int FORMAT_VERSION = 2;
+    private static final int FOOTER_MAGIC = 0x4C4D5346;
+    private static final int HEADER_BYTES = 16;
+    private static final int FOOTER_BYTES = 16;
+    private static final int INDEX_ENTRY_BYTES = 20;
+    private static final int CHUNK_BYTES = 4 << 20;
+    private static final int LEGACY_END_MARKER = -1;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    public interface SnapshotSource {
+        void forEach(EntityType type, Consumer<Object> action);
+    }
+
+    private record Chunk(long offset, int length, int records, int crc) {
+    }
+
+    private final Path directory;
+
+    public SnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path write(long walSequence, SnapshotSource source) throws IOException {
+        Files.createDirectories(directory);
+        Path target = snapshotPath(walSequence);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        long records;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(SNAPSHOT_MAGIC).putInt(FORMAT_VERSION).putLong(walSequence).flip();
+            writeFully(out, header);
+            ChunkWriter chunks = new ChunkWriter(out, HEADER_BYTES);
+            for (EntityType type : EntityType.values()) {
+                source.forEach(type, entity -> chunks.append(type, entity));
+            }
+            chunks.finish();
+            records = chunks.records;
+            out.force(true);
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temp);
+            throw e.getCause();
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory();
+        logger.info("Snapshot written: {} ({} records)", target.getFileName(), records);
+        return target;
+    }
+
+    public OptionalLong latestSequence() throws IOException {
+        List<Long> sequences = sequences();
+        return sequences.isEmpty() ? OptionalLong.empty() : OptionalLong.of(sequences.get(sequences.size() - 1));
+    }
+
+    public long load(long walSequence, BiConsumer<EntityType, Object> consumer) throws IOException {
+        Path path = snapshotPath(walSequence);
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(in, header, 0);
+            if (header.getInt(0) != SNAPSHOT_MAGIC) {
+                throw new IOException("Unrecognised snapshot format: " + path);
+            }
+            if (header.getLong(8) != walSequence) {
+                throw new IOException("Snapshot sequence does not match file name: " + path);
+            }
+            int version = header.getInt(4);
+            if (version == LEGACY_FORMAT_VERSION) {
+                return loadLegacy(path, consumer);
+            }
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + path);
+            }
+            List<Chunk> chunks = readIndex(in, path);
+            return loadStreamed(path, chunks, consumer);
+        }
+    }
+
+    public void deleteSnapshotsBefore(long walSequence) throws IOException {
+        for (long sequence : sequences()) {
+            if (sequence < walSequence) {
+                Files.deleteIfExists(snapshotPath(sequence));
+            }
+        }
+    }
+
+    private long loadStreamed(Path path, List<Chunk> chunks, BiConsumer<EntityType, Object> consumer) throws IOException {
+        long records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_BYTES))) {
+            in.skipNBytes(HEADER_BYTES);
+            long position = HEADER_BYTES;
+            for (Chunk chunk : chunks) {
+                in.skipNBytes(chunk.offset() - position);
+                byte[] bytes = new byte[chunk.length()];
+                in.readFully(bytes);
+                position = chunk.offset() + chunk.length();
+                verify(chunk, ByteBuffer.wrap(bytes), path);
+                records += decode(new DataInputStream(new ByteArrayInputStream(bytes)), chunk, consumer);
+            }
+        }
+        return records;
+    }
+
+    private static long decode(DataInput in, Chunk chunk, BiConsumer<EntityType, Object> consumer) throws IOException {
+        EntityType[] types = EntityType.values();
+        for (int i = 0; i < chunk.records(); i++) {
+            EntityType type = types[in.readByte()];
+            consumer.accept(type, EntityCodec.read(in, type));
+        }
+        return chunk.records();
+    }
+
+    private long loadLegacy(Path path, BiConsumer<EntityType, Object> consumer) throws IOException {
+        long records = 0;
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_BYTES))) {
+            DataInputStream checked = new DataInputStream(new CheckedInputStream(in, crc));
+            checked.readNBytes(HEADER_BYTES);
+            EntityType[] types = EntityType.values();
+            int tag;
+            while ((tag = checked.readByte()) != LEGACY_END_MARKER) {
+                EntityType type = types[tag];
+                consumer.accept(type, EntityCodec.read(checked, type));
+                records++;
+            }
+            if (in.readLong() != crc.getValue()) {
+                throw new IOException("Snapshot checksum mismatch: " + path);
+            }
+        }
+        return records;
+    }
+
+    private static List<Chunk> readIndex(FileChannel in, Path path) throws IOException {
+        long size = in.size();
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES);
+        readFully(in, footer, size - FOOTER_BYTES);
+        long indexOffset = footer.getLong(0);
+        if (footer.getInt(12) != FOOTER_MAGIC || indexOffset < HEADER_BYTES || indexOffset > size - FOOTER_BYTES - 4) {
+            throw new IOException("Snapshot footer is corrupt: " + path);
+        }
+        ByteBuffer index = ByteBuffer.allocate((int) (size - FOOTER_BYTES - indexOffset));
+        readFully(in, index, indexOffset);
+        CRC32 crc = new CRC32();
+        crc.update(index.array());
+        if ((int) crc.getValue() != footer.getInt(8)) {
+            throw new IOException("Snapshot index checksum mismatch: " + path);
+        }
+        int count = index.getInt(0);
+        if (index.capacity() != 4 + count * INDEX_ENTRY_BYTES) {
+            throw new IOException("Snapshot index is truncated: " + path);
+        }
+        List<Chunk> chunks = new ArrayList<>(count);
+        index.position(4);
+        for (int i = 0; i < count; i++) {
+            chunks.add(new Chunk(index.getLong(), index.getInt(), index.getInt(), index.getInt()));
+        }
+        return chunks;
+    }
+
+    private static void verify(Chunk chunk, ByteBuffer bytes, Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if ((int) crc.getValue() != chunk.crc()) {
+            throw new IOException("Snapshot chunk at offset " + chunk.offset() + " is corrupt: " + path);
+        }
+    }
+
+    private List<Long> sequences() throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return sequences;
+        }
+        try (DirectoryStream<Path> snapshots = Files.newDirectoryStream(directory, "snapshot-*.bin")) {
+            for (Path snapshot : snapshots) {
+                String name = snapshot.getFileName().toString();
+                sequences.add(Long.parseLong(name.substring(9, name.length() - 4)));
+            }
+        }
+        Collections.sort(sequences);
+        return sequences;
+    }
+
+    private Path snapshotPath(long walSequence) {
+        return directory.resolve(String.format("snapshot-%020d.bin", walSequence));
+    }
+
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            logger.debug("Directory fsync not supported for {}", directory);
+        }
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of snapshot");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static final class ChunkWriter {
+        private final FileChannel out;
+        private final ExposedByteArrayOutputStream chunk = new ExposedByteArrayOutputStream(CHUNK_BYTES + 4096);
+        private final DataOutputStream chunkOut = new DataOutputStream(chunk);
+        private final List<Chunk> index = new ArrayList<>();
+        private long position;
+        private int chunkRecords;
+        private long records;
+
+        ChunkWriter(FileChannel out, long position) {
+            this.out = out;
+            this.position = position;
+        }
+
+        void append(EntityType type, Object entity) {
+            try {
+                synchronized (entity) {
+                    chunkOut.writeByte(type.ordinal());
+                    EntityCodec.write(chunkOut, type, entity);
+                }
+                chunkRecords++;
+                records++;
+                if (chunk.size() >= CHUNK_BYTES) {
+                    flushChunk();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void finish() throws IOException {
+            flushChunk();
+            ByteBuffer entries = ByteBuffer.allocate(4 + index.size() * INDEX_ENTRY_BYTES);
+            entries.putInt(index.size());
+            for (Chunk entry : index) {
+                entries.putLong(entry.offset()).putInt(entry.length()).putInt(entry.records()).putInt(entry.crc());
+            }
+            CRC32 crc = new CRC32();
+            crc.update(entries.array());
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES);
+            footer.putLong(position).putInt((int) crc.getValue()).putInt(FOOTER_MAGIC).flip();
+            entries.flip();
+            writeFully(out, entries);
+            writeFully(out, footer);
+        }
+
+        private void flushChunk() throws IOException {
+            if (chunkRecords == 0) {
+                return;
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(chunk.buffer(), 0, chunk.size());
+            CRC32 crc = new CRC32();
+            crc.update(bytes.duplicate());
+            index.add(new Chunk(position, chunk.size(), chunkRecords, (int) crc.getValue()));
+            writeFully(out, bytes);
+            position += chunk.size();
+            chunk.reset();
+            chunkRecords = 0;
+        }
+    }
+
+    private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        ExposedByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
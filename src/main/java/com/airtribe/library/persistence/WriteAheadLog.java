@@ -0,0 +1,495 @@
+package com.airtribe.library.persistence;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+@Component
+public class WriteAheadLog {
+    private static final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+    static final int SEGMENT_MAGIC = 0x4C4D5357;
+    static final int FORMAT_VERSION = 1;
+    static final byte OP_SAVE = 1;
+    static final byte OP_DELETE = 2;
+    static final byte OP_BATCH = 3;
+    private static final int SEGMENT_HEADER_BYTES = 16;
+    private static final int FRAME_HEADER_BYTES = 8;
+    private static final int MAX_BATCH_RECORDS = 4096;
+
+    public record Record(EntityType type, byte operation, byte[] payload) {
+        public boolean isDelete() {
+            return operation == OP_DELETE;
+        }
+
+        public String deletedId() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+    }
+
+    private final boolean enabled;
+    private final boolean groupCommit;
+    private final Path directory;
+    private final BlockingQueue<PendingWrite> pending = new LinkedBlockingQueue<>();
+    private final Object writeLock = new Object();
+    private final Object submitLock = new Object();
+    private final ReadWriteLock publication = new ReentrantReadWriteLock();
+    private final ThreadLocal<Transaction> transaction = new ThreadLocal<>();
+    private FileChannel channel;
+    private long segmentSequence;
+    private volatile boolean open;
+    private volatile boolean closed;
+    private volatile boolean running;
+    private volatile IOException failure;
+    private Thread writer;
+
+    public WriteAheadLog(@Value("${library.persistence.enabled:false}") boolean enabled,
+                         @Value("${library.persistence.directory:data}") String directory,
+                         @Value("${library.persistence.group-commit:true}") boolean groupCommit) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.groupCommit = groupCommit;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public void recordSave(EntityType type, Object entity, Runnable publish) {
+        if (!open) {
+            publishUnlogged(publish);
+            return;
+        }
+        append(List.of(new Change(type, OP_SAVE, entity)), publish);
+    }
+
+    public void recordSaves(EntityType type, Collection<?> entities, Runnable publish) {
+        if (!open) {
+            publishUnlogged(publish);
+            return;
+        }
+        List<Change> changes = new ArrayList<>(entities.size());
+        for (Object entity : entities) {
+            changes.add(new Change(type, OP_SAVE, entity));
+        }
+        append(changes, publish);
+    }
+
+    public void recordDelete(EntityType type, String id, Runnable publish) {
+        if (!open) {
+            publishUnlogged(publish);
+            return;
+        }
+        append(List.of(new Change(type, OP_DELETE, id)), publish);
+    }
+
+    public <T> T atomically(Supplier<T> work) {
+        if (!open || transaction.get() != null) {
+            return work.get();
+        }
+        Transaction unit = new Transaction();
+        transaction.set(unit);
+        T result;
+        try {
+            result = work.get();
+        } finally {
+            transaction.remove();
+        }
+        if (!unit.changes.isEmpty()) {
+            publication.readLock().lock();
+            try {
+                await(submit(unit.changes));
+                unit.publications.forEach(Runnable::run);
+            } finally {
+                publication.readLock().unlock();
+            }
+        }
+        return result;
+    }
+
+    public synchronized void open(long sequence) throws IOException {
+        Files.createDirectories(directory);
+        synchronized (writeLock) {
+            openSegment(sequence);
+        }
+        if (groupCommit) {
+            running = true;
+            writer = new Thread(this::drainLoop, "wal-group-commit");
+            writer.setDaemon(true);
+            writer.start();
+        }
+        open = true;
+        logger.info("Write-ahead log open: segment={}, groupCommit={}", sequence, groupCommit);
+    }
+
+    public long rotate() throws IOException {
+        publication.writeLock().lock();
+        try {
+            synchronized (writeLock) {
+                channel.force(false);
+                channel.close();
+                openSegment(segmentSequence + 1);
+                return segmentSequence;
+            }
+        } finally {
+            publication.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException, InterruptedException {
+        if (!open) {
+            return;
+        }
+        synchronized (submitLock) {
+            open = false;
+            closed = true;
+            running = false;
+        }
+        if (writer != null) {
+            writer.join();
+        }
+        IOException shutdown = new IOException("Write-ahead log closed before the record was written");
+        for (PendingWrite write; (write = pending.poll()) != null; ) {
+            write.done.completeExceptionally(shutdown);
+        }
+        synchronized (writeLock) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    public List<Long> segmentSequences() throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return sequences;
+        }
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "wal-*.log")) {
+            for (Path segment : segments) {
+                String name = segment.getFileName().toString();
+                sequences.add(Long.parseLong(name.substring(4, name.length() - 4)));
+            }
+        }
+        Collections.sort(sequences);
+        return sequences;
+    }
+
+    public void deleteSegmentsBefore(long sequence) throws IOException {
+        for (long existing : segmentSequences()) {
+            if (existing < sequence) {
+                Files.deleteIfExists(segmentPath(existing));
+            }
+        }
+    }
+
+    public long replay(long sequence, Consumer<Record> consumer) throws IOException {
+        Path path = segmentPath(sequence);
+        long records = 0;
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES);
+            if (readFully(in, header) < SEGMENT_HEADER_BYTES || header.getInt(0) != SEGMENT_MAGIC) {
+                logger.warn("Skipping write-ahead log segment with invalid header: {}", path);
+                return 0;
+            }
+            long validEnd = in.position();
+            ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_BYTES);
+            CRC32 crc = new CRC32();
+            while (true) {
+                frameHeader.clear();
+                if (readFully(in, frameHeader) < FRAME_HEADER_BYTES) {
+                    break;
+                }
+                int length = frameHeader.getInt(0);
+                int checksum = frameHeader.getInt(4);
+                if (length < 2 || length > in.size() - in.position()) {
+                    break;
+                }
+                ByteBuffer body = ByteBuffer.allocate(length);
+                readFully(in, body);
+                crc.reset();
+                crc.update(body.array(), 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                if (body.get(1) == OP_BATCH) {
+                    body.position(2);
+                    while (body.hasRemaining()) {
+                        EntityType type = EntityType.values()[body.get()];
+                        byte operation = body.get();
+                        byte[] payload = new byte[body.getInt()];
+                        body.get(payload);
+                        consumer.accept(new Record(type, operation, payload));
+                        records++;
+                    }
+                } else {
+                    consumer.accept(new Record(EntityType.values()[body.get(0)], body.get(1),
+                            Arrays.copyOfRange(body.array(), 2, length)));
+                    records++;
+                }
+                validEnd = in.position();
+            }
+            if (validEnd < in.size()) {
+                logger.warn("Truncating torn tail of {} at offset {} (size {})", path, validEnd, in.size());
+                in.truncate(validEnd);
+            }
+        }
+        return records;
+    }
+
+    private void openSegment(long sequence) throws IOException {
+        Path path = segmentPath(sequence);
+        boolean exists = Files.exists(path) && Files.size(path) >= SEGMENT_HEADER_BYTES;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if (!exists) {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES);
+            header.putInt(SEGMENT_MAGIC).putInt(FORMAT_VERSION).putLong(sequence).flip();
+            writeFully(channel, header);
+            channel.force(true);
+        }
+        segmentSequence = sequence;
+    }
+
+    private void append(List<Change> changes, Runnable publish) {
+        Transaction unit = transaction.get();
+        if (unit != null) {
+            unit.changes.addAll(changes);
+            unit.publications.add(publish);
+            return;
+        }
+        publication.readLock().lock();
+        try {
+            if (!changes.isEmpty()) {
+                await(submit(changes));
+            }
+            publish.run();
+        } finally {
+            publication.readLock().unlock();
+        }
+    }
+
+    private void publishUnlogged(Runnable publish) {
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+        Transaction unit = transaction.get();
+        if (unit != null) {
+            unit.publications.add(publish);
+        } else {
+            publish.run();
+        }
+    }
+
+    private PendingWrite submit(List<Change> changes) {
+        if (groupCommit) {
+            synchronized (submitLock) {
+                if (!open) {
+                    throw new IllegalStateException("Write-ahead log is closed");
+                }
+                PendingWrite write = new PendingWrite(frame(changes));
+                pending.add(write);
+                return write;
+            }
+        }
+        synchronized (writeLock) {
+            if (!open) {
+                throw new IllegalStateException("Write-ahead log is closed");
+            }
+            PendingWrite write = new PendingWrite(frame(changes));
+            long start = 0;
+            try {
+                start = channel.size();
+                writeFully(channel, write.frame);
+                channel.force(false);
+                write.done.complete(null);
+            } catch (IOException e) {
+                discardFrom(start, e);
+                write.done.completeExceptionally(e);
+            }
+            return write;
+        }
+    }
+
+    private void discardFrom(long start, IOException cause) {
+        try {
+            channel.truncate(start);
+            channel.force(false);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            logger.error("Write-ahead log could not drop a failed write at offset {}; refusing further writes",
+                    start, e);
+            synchronized (submitLock) {
+                open = false;
+                closed = true;
+                failure = cause;
+            }
+        }
+    }
+
+    private void drainLoop() {
+        List<PendingWrite> batch = new ArrayList<>(MAX_BATCH_RECORDS);
+        while (running || !pending.isEmpty()) {
+            try {
+                PendingWrite first = pending.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch, MAX_BATCH_RECORDS - 1);
+                synchronized (writeLock) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    ByteBuffer[] frames = new ByteBuffer[batch.size()];
+                    for (int i = 0; i < frames.length; i++) {
+                        frames[i] = batch.get(i).frame;
+                    }
+                    long remaining = 0;
+                    for (ByteBuffer frame : frames) {
+                        remaining += frame.remaining();
+                    }
+                    long start = channel.size();
+                    try {
+                        while (remaining > 0) {
+                            remaining -= channel.write(frames);
+                        }
+                        channel.force(false);
+                    } catch (IOException e) {
+                        discardFrom(start, e);
+                        throw e;
+                    }
+                }
+                for (PendingWrite write : batch) {
+                    write.done.complete(null);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                logger.error("Write-ahead log batch failed", e);
+                for (PendingWrite write : batch) {
+                    write.done.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private static ByteBuffer frame(List<Change> changes) {
+        if (changes.size() == 1) {
+            return frame(changes.get(0).encode());
+        }
+        List<Record> records = new ArrayList<>(changes.size());
+        for (Change change : changes) {
+            records.add(change.encode());
+        }
+        return batchFrame(records);
+    }
+
+    private static ByteBuffer frame(Record record) {
+        int length = record.payload().length + 2;
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_BYTES + length);
+        frame.putInt(length).putInt(0).put((byte) record.type().ordinal()).put(record.operation())
+                .put(record.payload());
+        return seal(frame, length);
+    }
+
+    private static ByteBuffer batchFrame(List<Record> records) {
+        int length = 2;
+        for (Record record : records) {
+            length += 6 + record.payload().length;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_BYTES + length);
+        frame.putInt(length).putInt(0).put((byte) records.get(0).type().ordinal()).put(OP_BATCH);
+        for (Record record : records) {
+            frame.put((byte) record.type().ordinal()).put(record.operation())
+                    .putInt(record.payload().length).put(record.payload());
+        }
+        return seal(frame, length);
+    }
+
+    private static ByteBuffer seal(ByteBuffer frame, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(frame.array(), FRAME_HEADER_BYTES, length);
+        frame.putInt(4, (int) crc.getValue());
+        frame.flip();
+        return frame;
+    }
+
+    private static void await(PendingWrite write) {
+        try {
+            write.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for write-ahead log", e);
+        } catch (ExecutionException e) {
+            throw new UncheckedIOException("Write-ahead log append failed",
+                    e.getCause() instanceof IOException io ? io : new IOException(e.getCause()));
+        }
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("wal-%020d.log", sequence));
+    }
+
+    private static int readFully(FileChannel in, ByteBuffer buffer) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = in.read(buffer);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static final class PendingWrite {
+        private final ByteBuffer frame;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private PendingWrite(ByteBuffer frame) {
+            this.frame = frame;
+        }
+    }
+
+    private record Change(EntityType type, byte operation, Object entity) {
+        Record encode() {
+            if (operation == OP_DELETE) {
+                return new Record(type, operation, ((String) entity).getBytes(StandardCharsets.UTF_8));
+            }
+            synchronized (entity) {
+                return new Record(type, operation, EntityCodec.encodeRecord(type, entity));
+            }
+        }
+    }
+
+    private static final class Transaction {
+        private final List<Change> changes = new ArrayList<>();
+        private final List<Runnable> publications = new ArrayList<>();
+    }
+}
@@ -1,19 +1,47 @@
 package com.airtribe.library.repository;
 
 import com.airtribe.library.domain.Book;
+import com.airtribe.library.domain.BookStatus;
+import com.airtribe.library.persistence.EntityType;
+import com.airtribe.library.persistence.WriteAheadLog;
+import com.airtribe.library.util.KeyCodec;
 import org.springframework.stereotype.Repository;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 @Repository
 public class BookRepository {
     private final Map<String, Book> books = new ConcurrentHashMap<>();
+    private final NavigableSet<String> orderedIsbns = new ConcurrentSkipListSet<>();
+    private final Map<String, NavigableSet<String>> isbnsByAuthor = new ConcurrentHashMap<>();
+    private final NavigableMap<Integer, YearBucket> isbnsByYear = new ConcurrentSkipListMap<>();
+    private final Map<BookStatus, Set<String>> isbnsByStatus = new EnumMap<>(BookStatus.class);
+    private final Map<String, IndexedFields> indexedFields = new ConcurrentHashMap<>();
+    private final AtomicLong modifications = new AtomicLong();
+    private final WriteAheadLog writeAheadLog;
+
+    public BookRepository(WriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+        for (BookStatus status : BookStatus.values()) {
+            isbnsByStatus.put(status, ConcurrentHashMap.newKeySet());
+        }
+    }
 
     public Book save(Book book) {
-        books.put(book.getIsbn(), book);
+        writeAheadLog.recordSave(EntityType.BOOK, book, () -> index(book));
         return book;
     }
 
+    public void saveAll(Collection<Book> batch) {
+        writeAheadLog.recordSaves(EntityType.BOOK, batch, () -> batch.forEach(this::index));
+    }
+
     public Optional<Book> findByIsbn(String isbn) {
         return Optional.ofNullable(books.get(isbn));
     }
@@ -22,11 +50,180 @@ public class BookRepository {
         return new ArrayList<>(books.values());
     }
 
+    public long count() {
+        return books.size();
+    }
+
+    public long version() {
+        return modifications.get();
+    }
+
+    public List<Book> findByAuthor(String author) {
+        NavigableSet<String> isbns = author == null ? null : isbnsByAuthor.get(author);
+        if (isbns == null) {
+            return new ArrayList<>();
+        }
+        List<Book> result = new ArrayList<>(isbns.size());
+        for (String isbn : isbns) {
+            Book book = books.get(isbn);
+            if (book != null) {
+                result.add(book);
+            }
+        }
+        return result;
+    }
+
+    public long countByYear(int fromYear, int toYear) {
+        long count = 0;
+        for (YearBucket bucket : isbnsByYear.subMap(fromYear, true, toYear, true).values()) {
+            count += bucket.size.get();
+        }
+        return count;
+    }
+
+    public void scanIsbnsByYear(int fromYear, int toYear, boolean descending, Predicate<String> action) {
+        NavigableMap<Integer, YearBucket> range = isbnsByYear.subMap(fromYear, true, toYear, true);
+        for (YearBucket bucket : (descending ? range.descendingMap() : range).values()) {
+            if (!scan(bucket.isbns, action)) {
+                return;
+            }
+        }
+    }
+
+    public boolean isPublishedBetween(String isbn, int fromYear, int toYear) {
+        IndexedFields indexed = indexedFields.get(isbn);
+        return indexed != null && indexed.year() >= fromYear && indexed.year() <= toYear;
+    }
+
+    public long countByStatus(BookStatus status) {
+        return isbnsByStatus.get(status).size();
+    }
+
+    public void scanIsbnsByStatus(BookStatus status, Predicate<String> action) {
+        scan(isbnsByStatus.get(status), action);
+    }
+
+    public boolean hasStatus(String isbn, BookStatus status) {
+        return isbnsByStatus.get(status).contains(isbn);
+    }
+
+    public void scanIsbnsOrdered(Predicate<String> action) {
+        scan(orderedIsbns, action);
+    }
+
+    public Page<Book> findPage(String afterIsbn, int limit) {
+        return Page.of(orderedIsbns, KeyCodec.ISBN, afterIsbn, limit, books::get);
+    }
+
+    public void forEachOrdered(Consumer<Book> action) {
+        for (String isbn : orderedIsbns) {
+            Book book = books.get(isbn);
+            if (book != null) {
+                action.accept(book);
+            }
+        }
+    }
+
     public void delete(String isbn) {
-        books.remove(isbn);
+        writeAheadLog.recordDelete(EntityType.BOOK, isbn, () -> {
+            books.remove(isbn);
+            orderedIsbns.remove(isbn);
+            IndexedFields indexed = indexedFields.remove(isbn);
+            if (indexed != null) {
+                unindex(indexed, isbn);
+            }
+            modifications.incrementAndGet();
+        });
     }
 
     public boolean exists(String isbn) {
         return books.containsKey(isbn);
     }
+
+    private void index(Book book) {
+        book.stampVersion(modifications.incrementAndGet());
+        if (books.put(book.getIsbn(), book) == null) {
+            orderedIsbns.add(book.getIsbn());
+        }
+        indexFields(book);
+    }
+
+    private void indexFields(Book book) {
+        synchronized (book) {
+            String isbn = book.getIsbn();
+            IndexedFields current = new IndexedFields(book.getAuthor(), book.getPublicationYear(), book.getStatus());
+            IndexedFields previous = indexedFields.put(isbn, current);
+            if (previous != null && !Objects.equals(previous.author(), current.author())) {
+                unindexAuthor(previous.author(), isbn);
+            }
+            if (current.author() != null && (previous == null || !current.author().equals(previous.author()))) {
+                isbnsByAuthor.compute(current.author(), (a, isbns) -> {
+                    NavigableSet<String> target = isbns != null ? isbns : new ConcurrentSkipListSet<>();
+                    target.add(isbn);
+                    return target;
+                });
+            }
+            if (previous == null || previous.year() != current.year()) {
+                if (previous != null) {
+                    unindexYear(previous.year(), isbn);
+                }
+                YearBucket bucket = isbnsByYear.computeIfAbsent(current.year(), year -> new YearBucket());
+                if (bucket.isbns.add(isbn)) {
+                    bucket.size.incrementAndGet();
+                }
+            }
+            if (previous == null || previous.status() != current.status()) {
+                if (previous != null && previous.status() != null) {
+                    isbnsByStatus.get(previous.status()).remove(isbn);
+                }
+                if (current.status() != null) {
+                    isbnsByStatus.get(current.status()).add(isbn);
+                }
+            }
+        }
+    }
+
+    private void unindex(IndexedFields indexed, String isbn) {
+        if (indexed.author() != null) {
+            unindexAuthor(indexed.author(), isbn);
+        }
+        unindexYear(indexed.year(), isbn);
+        if (indexed.status() != null) {
+            isbnsByStatus.get(indexed.status()).remove(isbn);
+        }
+    }
+
+    private void unindexAuthor(String author, String isbn) {
+        if (author == null) {
+            return;
+        }
+        isbnsByAuthor.computeIfPresent(author, (a, isbns) -> {
+            isbns.remove(isbn);
+            return isbns.isEmpty() ? null : isbns;
+        });
+    }
+
+    private void unindexYear(int year, String isbn) {
+        YearBucket bucket = isbnsByYear.get(year);
+        if (bucket != null && bucket.isbns.remove(isbn)) {
+            bucket.size.decrementAndGet();
+        }
+    }
+
+    private static boolean scan(Collection<String> isbns, Predicate<String> action) {
+        for (String isbn : isbns) {
+            if (!action.test(isbn)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private record IndexedFields(String author, int year, BookStatus status) {
+    }
+
+    private static final class YearBucket {
+        private final NavigableSet<String> isbns = new ConcurrentSkipListSet<>();
+        private final AtomicInteger size = new AtomicInteger();
+    }
 }
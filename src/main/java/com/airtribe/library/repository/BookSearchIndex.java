@@ -0,0 +1,372 @@
+package com.airtribe.library.repository;
+
+import com.airtribe.library.domain.Book;
+import org.springframework.stereotype.Component;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+@Component
+public class BookSearchIndex {
+    private static final int GRAM_SIZE = 3;
+    private static final int MIN_COMPACTION_GARBAGE = 1024;
+    private static final Comparator<Hit> HIT_ORDER = Comparator.comparingInt(Hit::score).reversed()
+            .thenComparing(Hit::value)
+            .thenComparing(hit -> hit.entry().isbn());
+
+    public enum Field { TITLE, AUTHOR, ISBN }
+
+    private final List<Consumer<List<Change>>> subscribers = new CopyOnWriteArrayList<>();
+    private volatile Segment segment = new Segment();
+    private volatile boolean ready = true;
+
+    public synchronized void index(Book book) {
+        publish(List.of(append(book)));
+    }
+
+    public synchronized void indexAll(Collection<Book> books) {
+        List<Change> changes = new ArrayList<>(books.size());
+        for (Book book : books) {
+            changes.add(append(book));
+        }
+        publish(changes);
+    }
+
+    public synchronized void remove(String isbn) {
+        Segment current = segment;
+        Integer previous = current.docIdsByIsbn.remove(isbn);
+        if (previous != null) {
+            IndexedBook removed = current.docs[previous];
+            current.tombstone(previous);
+            compactIfNeeded();
+            publish(List.of(new Change(isbn, removed.title(), removed.author(), null, null)));
+        }
+    }
+
+    public void subscribe(Consumer<List<Change>> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public List<Book> search(Field field, String query, int offset, int limit) {
+        Segment current = segment;
+        if (field == Field.ISBN) {
+            IndexedBook entry = current.live(current.docIdsByIsbn.getOrDefault(query, -1));
+            return entry == null || offset > 0 || limit <= 0 ? Collections.emptyList() : List.of(entry.book());
+        }
+        String normalizedQuery = normalize(query);
+        long wanted = Math.min((long) offset + limit, Integer.MAX_VALUE);
+        PriorityQueue<Hit> top = new PriorityQueue<>(HIT_ORDER.reversed());
+        for (int docId : current.fields.get(field).candidates(normalizedQuery, current.docCount)) {
+            IndexedBook entry = current.live(docId);
+            if (entry == null) {
+                continue;
+            }
+            String value = entry.value(field);
+            int score = score(value, normalizedQuery);
+            if (score > 0) {
+                top.offer(new Hit(entry, value, score));
+                if (top.size() > wanted) {
+                    top.poll();
+                }
+            }
+        }
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(HIT_ORDER);
+        int from = Math.min(offset, hits.size());
+        int to = (int) Math.min((long) from + limit, hits.size());
+        List<Book> page = new ArrayList<>(to - from);
+        for (Hit hit : hits.subList(from, to)) {
+            page.add(hit.entry().book());
+        }
+        return page;
+    }
+
+    public long estimate(Field field, String query) {
+        Segment current = segment;
+        if (field == Field.ISBN) {
+            return 1;
+        }
+        return current.fields.get(field).estimate(normalize(query), current.docIdsByIsbn.size());
+    }
+
+    public List<Book> match(Field field, String query) {
+        Segment current = segment;
+        if (field == Field.ISBN) {
+            IndexedBook entry = current.live(current.docIdsByIsbn.getOrDefault(query, -1));
+            return entry == null ? Collections.emptyList() : List.of(entry.book());
+        }
+        String normalizedQuery = normalize(query);
+        List<Book> matches = new ArrayList<>();
+        for (int docId : current.fields.get(field).candidates(normalizedQuery, current.docCount)) {
+            IndexedBook entry = current.live(docId);
+            if (entry != null && score(entry.value(field), normalizedQuery) > 0) {
+                matches.add(entry.book());
+            }
+        }
+        return matches;
+    }
+
+    public Set<String> matchIsbns(Field field, String query) {
+        Set<String> isbns = new HashSet<>();
+        for (Book book : match(field, query)) {
+            isbns.add(book.getIsbn());
+        }
+        return isbns;
+    }
+
+    public static boolean matches(String value, String query) {
+        return score(normalize(value), normalize(query)) > 0;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void markRebuilding() {
+        ready = false;
+    }
+
+    public void markReady() {
+        ready = true;
+    }
+
+    public int size() {
+        return segment.docIdsByIsbn.size();
+    }
+
+    private Change append(Book book) {
+        Segment current = segment;
+        Integer previous = current.docIdsByIsbn.get(book.getIsbn());
+        IndexedBook replaced = previous == null ? null : current.docs[previous];
+        if (previous != null) {
+            current.tombstone(previous);
+        }
+        IndexedBook entry = new IndexedBook(book, normalize(book.getTitle()), normalize(book.getAuthor()));
+        current.append(entry);
+        compactIfNeeded();
+        return new Change(book.getIsbn(), replaced == null ? null : replaced.title(),
+                replaced == null ? null : replaced.author(), entry.title(), entry.author());
+    }
+
+    private void publish(List<Change> changes) {
+        for (Consumer<List<Change>> subscriber : subscribers) {
+            subscriber.accept(changes);
+        }
+    }
+
+    private void compactIfNeeded() {
+        Segment current = segment;
+        int live = current.docIdsByIsbn.size();
+        int garbage = current.docCount - live;
+        if (garbage < MIN_COMPACTION_GARBAGE || garbage < live) {
+            return;
+        }
+        Segment compacted = new Segment();
+        for (int docId = 0; docId < current.docCount; docId++) {
+            IndexedBook entry = current.docs[docId];
+            if (entry != null) {
+                compacted.append(entry);
+            }
+        }
+        segment = compacted;
+    }
+
+    private static int score(String value, String query) {
+        if (query.isEmpty()) {
+            return 1;
+        }
+        if (value.equals(query)) {
+            return 4;
+        }
+        if (value.startsWith(query)) {
+            return 3;
+        }
+        if (startsAnyToken(value, query)) {
+            return 2;
+        }
+        return value.contains(query) ? 1 : 0;
+    }
+
+    private static boolean startsAnyToken(String value, String query) {
+        for (String token : tokenize(value)) {
+            if (token.startsWith(query)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    static List<String> tokenize(String normalized) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letterOrDigit = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    static long gram(String normalized, int start, int length) {
+        long packed = length;
+        for (int i = start; i < start + length; i++) {
+            packed = (packed << 16) | normalized.charAt(i);
+        }
+        return packed * 0x9E3779B97F4A7C15L;
+    }
+
+    private static final class Segment {
+        private final Map<String, Integer> docIdsByIsbn = new ConcurrentHashMap<>();
+        private final Map<Field, FieldIndex> fields = new EnumMap<>(Field.class);
+        private volatile IndexedBook[] docs = new IndexedBook[1024];
+        private volatile int docCount;
+
+        Segment() {
+            fields.put(Field.TITLE, new FieldIndex());
+            fields.put(Field.AUTHOR, new FieldIndex());
+        }
+
+        void append(IndexedBook entry) {
+            int docId = docCount;
+            if (docId == docs.length) {
+                docs = Arrays.copyOf(docs, docId * 2);
+            }
+            docs[docId] = entry;
+            fields.get(Field.TITLE).add(docId, entry.title());
+            fields.get(Field.AUTHOR).add(docId, entry.author());
+            docCount = docId + 1;
+            docIdsByIsbn.put(entry.isbn(), docId);
+        }
+
+        void tombstone(int docId) {
+            docs[docId] = null;
+        }
+
+        IndexedBook live(int docId) {
+            if (docId < 0 || docId >= docCount) {
+                return null;
+            }
+            IndexedBook entry = docs[docId];
+            return entry != null && docIdsByIsbn.getOrDefault(entry.isbn(), -1) == docId ? entry : null;
+        }
+    }
+
+    private static final class FieldIndex {
+        private final Map<Long, PostingList> gramPostings = new ConcurrentHashMap<>();
+
+        void add(int docId, String value) {
+            for (int length = 1; length <= GRAM_SIZE; length++) {
+                for (int i = 0; i + length <= value.length(); i++) {
+                    gramPostings.computeIfAbsent(gram(value, i, length), g -> new PostingList()).append(docId);
+                }
+            }
+        }
+
+        long estimate(String query, int liveCount) {
+            if (query.isEmpty()) {
+                return liveCount;
+            }
+            int length = Math.min(GRAM_SIZE, query.length());
+            long smallest = liveCount;
+            for (int i = 0; i + length <= query.length(); i++) {
+                PostingList postings = gramPostings.get(gram(query, i, length));
+                if (postings == null) {
+                    return 0;
+                }
+                smallest = Math.min(smallest, postings.size);
+            }
+            return smallest;
+        }
+
+        int[] candidates(String query, int docCount) {
+            if (query.isEmpty()) {
+                int[] all = new int[docCount];
+                for (int i = 0; i < docCount; i++) {
+                    all[i] = i;
+                }
+                return all;
+            }
+            int length = Math.min(GRAM_SIZE, query.length());
+            List<PostingList> lists = new ArrayList<>();
+            for (int i = 0; i + length <= query.length(); i++) {
+                PostingList postings = gramPostings.get(gram(query, i, length));
+                if (postings == null) {
+                    return new int[0];
+                }
+                lists.add(postings);
+            }
+            return PostingList.intersect(lists);
+        }
+    }
+
+    private static final class PostingList {
+        private volatile int[] ids = new int[4];
+        private volatile int size;
+
+        void append(int docId) {
+            int n = size;
+            if (n > 0 && ids[n - 1] == docId) {
+                return;
+            }
+            if (n == ids.length) {
+                ids = Arrays.copyOf(ids, n * 2);
+            }
+            ids[n] = docId;
+            size = n + 1;
+        }
+
+        static int[] intersect(List<PostingList> lists) {
+            int count = lists.size();
+            int[] sizes = new int[count];
+            int[][] arrays = new int[count][];
+            for (int i = 0; i < count; i++) {
+                sizes[i] = lists.get(i).size;
+                arrays[i] = lists.get(i).ids;
+            }
+            int smallest = 0;
+            for (int i = 1; i < count; i++) {
+                if (sizes[i] < sizes[smallest]) {
+                    smallest = i;
+                }
+            }
+            int[] result = new int[sizes[smallest]];
+            int found = 0;
+            for (int i = 0; i < sizes[smallest]; i++) {
+                int docId = arrays[smallest][i];
+                boolean inAll = true;
+                for (int j = 0; j < count && inAll; j++) {
+                    inAll = j == smallest || Arrays.binarySearch(arrays[j], 0, sizes[j], docId) >= 0;
+                }
+                if (inAll) {
+                    result[found++] = docId;
+                }
+            }
+            return Arrays.copyOf(result, found);
+        }
+    }
+
+    public record Change(String isbn, String previousTitle, String previousAuthor, String title, String author) {
+    }
+
+    private record IndexedBook(Book book, String title, String author) {
+        String isbn() {
+            return book.getIsbn();
+        }
+
+        String value(Field field) {
+            return field == Field.TITLE ? title : author;
+        }
+    }
+
+    private record Hit(IndexedBook entry, String value, int score) {
+    }
+}
@@ -0,0 +1,122 @@
+package com.airtribe.library.repository;
+
+import com.airtribe.library.domain.BookStatus;
+import com.airtribe.library.domain.Copy;
+import com.airtribe.library.util.ConcurrentLongObjectMap;
+import com.airtribe.library.util.KeyCodec;
+import com.airtribe.library.util.LongObjectHashMap;
+import org.springframework.stereotype.Component;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+@Component
+public class BranchInventory {
+    private final ConcurrentLongObjectMap<Title> titles = new ConcurrentLongObjectMap<>();
+    private final Map<String, Counters> branches = new ConcurrentHashMap<>();
+
+    public void record(Copy copy) {
+        Title title = titles.computeIfAbsent(copy.isbnKey(), key -> new Title());
+        synchronized (title) {
+            Counted state = title.copies.computeIfAbsent(copy.copyKey(), key -> new Counted());
+            move(state, copy.getBranchId(), copy.getStatus(), state.reserved && copy.getStatus() == BookStatus.AVAILABLE);
+            if (title.holds > 0) {
+                allocate(title);
+            }
+        }
+    }
+
+    public void recordHolds(String isbn, int holds) {
+        Title title = titles.computeIfAbsent(KeyCodec.ISBN.encode(isbn), key -> new Title());
+        synchronized (title) {
+            if (holds != title.holds) {
+                title.holds = holds;
+                allocate(title);
+            }
+        }
+    }
+
+    public void remove(Copy copy) {
+        Title title = titles.get(copy.isbnKey());
+        if (title == null) {
+            return;
+        }
+        synchronized (title) {
+            Counted state = title.copies.remove(copy.copyKey());
+            if (state != null) {
+                move(state, null, null, state.reserved);
+                if (title.holds > 0) {
+                    allocate(title);
+                }
+            }
+        }
+    }
+
+    public BranchStats stats(String branchId) {
+        Counters counters = branches.get(branchId);
+        return counters == null ? new BranchStats(branchId, 0, 0, 0, 0) : counters.snapshot(branchId);
+    }
+
+    private void allocate(Title title) {
+        int[] unclaimed = {title.holds};
+        title.copies.forEachValue(state -> move(state, state.branchId, state.status,
+                state.status == BookStatus.AVAILABLE && unclaimed[0]-- > 0));
+    }
+
+    private void move(Counted state, String branchId, BookStatus status, boolean reserved) {
+        if (Objects.equals(state.branchId, branchId) && state.status == status && state.reserved == reserved) {
+            return;
+        }
+        if (state.branchId != null) {
+            counters(state.branchId).add(state.status, state.reserved, -1);
+        }
+        if (branchId != null && status != null) {
+            counters(branchId).add(status, reserved, 1);
+        }
+        state.branchId = status == null ? null : branchId;
+        state.status = status;
+        state.reserved = reserved;
+    }
+
+    private Counters counters(String branchId) {
+        return branches.computeIfAbsent(branchId, id -> new Counters());
+    }
+
+    public record BranchStats(String branchId, long total, long available, long borrowed, long reserved) {
+    }
+
+    private static final class Title {
+        private final LongObjectHashMap<Counted> copies = new LongObjectHashMap<>();
+        private int holds;
+    }
+
+    private static final class Counted {
+        private String branchId;
+        private BookStatus status;
+        private boolean reserved;
+    }
+
+    private static final class Counters {
+        private final LongAdder total = new LongAdder();
+        private final LongAdder available = new LongAdder();
+        private final LongAdder borrowed = new LongAdder();
+        private final LongAdder reserved = new LongAdder();
+
+        void add(BookStatus status, boolean onHold, int delta) {
+            total.add(delta);
+            switch (status) {
+                case AVAILABLE -> available.add(delta);
+                case BORROWED -> borrowed.add(delta);
+                case RESERVED -> reserved.add(delta);
+            }
+            if (onHold) {
+                reserved.add(delta);
+            }
+        }
+
+        BranchStats snapshot(String branchId) {
+            return new BranchStats(branchId, total.sum(), available.sum(), borrowed.sum(), reserved.sum());
+        }
+    }
+}
@@ -1,16 +1,33 @@
 package com.airtribe.library.repository;
 
 import com.airtribe.library.domain.Branch;
+import com.airtribe.library.persistence.EntityType;
+import com.airtribe.library.persistence.WriteAheadLog;
+import com.airtribe.library.util.KeyCodec;
 import org.springframework.stereotype.Repository;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Repository
 public class BranchRepository {
     private final Map<String, Branch> branches = new ConcurrentHashMap<>();
+    private final NavigableSet<String> orderedBranchIds = new ConcurrentSkipListSet<>();
+    private final AtomicLong modifications = new AtomicLong();
+    private final WriteAheadLog writeAheadLog;
+
+    public BranchRepository(WriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+    }
 
     public Branch save(Branch branch) {
-        branches.put(branch.getBranchId(), branch);
+        writeAheadLog.recordSave(EntityType.BRANCH, branch, () -> {
+            branch.stampVersion(modifications.incrementAndGet());
+            branches.put(branch.getBranchId(), branch);
+            orderedBranchIds.add(branch.getBranchId());
+        });
         return branch;
     }
 
@@ -22,7 +39,32 @@ public class BranchRepository {
         return new ArrayList<>(branches.values());
     }
 
+    public long count() {
+        return branches.size();
+    }
+
+    public long version() {
+        return modifications.get();
+    }
+
+    public Page<Branch> findPage(String afterBranchId, int limit) {
+        return Page.of(orderedBranchIds, KeyCodec.BRANCH_ID, afterBranchId, limit, branches::get);
+    }
+
+    public void forEachOrdered(Consumer<Branch> action) {
+        for (String branchId : orderedBranchIds) {
+            Branch branch = branches.get(branchId);
+            if (branch != null) {
+                action.accept(branch);
+            }
+        }
+    }
+
     public void delete(String branchId) {
-        branches.remove(branchId);
+        writeAheadLog.recordDelete(EntityType.BRANCH, branchId, () -> {
+            branches.remove(branchId);
+            orderedBranchIds.remove(branchId);
+            modifications.incrementAndGet();
+        });
     }
 }
@@ -0,0 +1,207 @@
+package com.airtribe.library.repository;
+
+import com.airtribe.library.domain.Copy;
+import com.airtribe.library.persistence.EntityType;
+import com.airtribe.library.persistence.WriteAheadLog;
+import com.airtribe.library.util.ConcurrentLongObjectMap;
+import com.airtribe.library.util.KeyCodec;
+import com.airtribe.library.util.LongObjectHashMap;
+import org.springframework.stereotype.Repository;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+
+@Repository
+public class CopyRepository {
+    private final ConcurrentLongObjectMap<Copy> copies = new ConcurrentLongObjectMap<>();
+    private final NavigableSet<Long> orderedCopyKeys = new ConcurrentSkipListSet<>();
+    private final ConcurrentLongObjectMap<CopyPool> pools = new ConcurrentLongObjectMap<>();
+    private final WriteAheadLog writeAheadLog;
+    private final BranchInventory branchInventory;
+
+    public CopyRepository(WriteAheadLog writeAheadLog, BranchInventory branchInventory) {
+        this.writeAheadLog = writeAheadLog;
+        this.branchInventory = branchInventory;
+    }
+
+    public Copy save(Copy copy) {
+        writeAheadLog.recordSave(EntityType.COPY, copy, () -> index(copy));
+        return copy;
+    }
+
+    public void saveAll(Collection<Copy> batch) {
+        writeAheadLog.recordSaves(EntityType.COPY, batch, () -> batch.forEach(this::index));
+    }
+
+    public Optional<Copy> findByBarcode(String barcode) {
+        return Optional.ofNullable(copies.get(KeyCodec.COPY_ID.lookup(barcode)));
+    }
+
+    public List<Copy> findByIsbn(String isbn) {
+        CopyPool pool = pools.get(KeyCodec.ISBN.lookup(isbn));
+        return pool == null ? new ArrayList<>() : pool.copies();
+    }
+
+    public Optional<Copy> findAvailable(String isbn, String preferredBranchId) {
+        CopyPool pool = pools.get(KeyCodec.ISBN.lookup(isbn));
+        return pool == null ? Optional.empty() : Optional.ofNullable(pool.pick(preferredBranchId));
+    }
+
+    public Availability availability(String isbn) {
+        CopyPool pool = pools.get(KeyCodec.ISBN.lookup(isbn));
+        return pool == null ? new Availability(isbn, 0, 0, List.of()) : pool.availability(isbn);
+    }
+
+    public boolean hasAvailable(String isbn) {
+        CopyPool pool = pools.get(KeyCodec.ISBN.lookup(isbn));
+        return pool != null && pool.hasAvailable();
+    }
+
+    public boolean hasAvailableExcept(String isbn, Copy copy) {
+        CopyPool pool = pools.get(KeyCodec.ISBN.lookup(isbn));
+        return pool != null && pool.hasAvailableExcept(copy);
+    }
+
+    public boolean hasAvailableAt(String isbn, String branchId) {
+        CopyPool pool = pools.get(KeyCodec.ISBN.lookup(isbn));
+        return pool != null && pool.hasAvailableAt(branchId);
+    }
+
+    public long count() {
+        return copies.size();
+    }
+
+    public void forEachOrdered(Consumer<Copy> action) {
+        for (long copyKey : orderedCopyKeys) {
+            Copy copy = copies.get(copyKey);
+            if (copy != null) {
+                action.accept(copy);
+            }
+        }
+    }
+
+    public void delete(String barcode) {
+        long copyKey = KeyCodec.COPY_ID.lookup(barcode);
+        if (copies.get(copyKey) == null) {
+            return;
+        }
+        writeAheadLog.recordDelete(EntityType.COPY, barcode, () -> unindex(copyKey));
+    }
+
+    private void unindex(long copyKey) {
+        Copy copy = copies.remove(copyKey);
+        if (copy == null) {
+            return;
+        }
+        orderedCopyKeys.remove(copyKey);
+        CopyPool pool = pools.get(copy.isbnKey());
+        if (pool != null) {
+            pool.remove(copy);
+        }
+        branchInventory.remove(copy);
+    }
+
+    private void index(Copy copy) {
+        long copyKey = copy.copyKey();
+        Copy previous = copies.put(copyKey, copy);
+        if (previous == null) {
+            orderedCopyKeys.add(copyKey);
+        }
+        pools.computeIfAbsent(copy.isbnKey(), key -> new CopyPool()).update(copy);
+        branchInventory.record(copy);
+    }
+
+    public record Availability(String isbn, int total, int available, List<BranchAvailability> branches) {
+    }
+
+    public record BranchAvailability(String branchId, int total, int available) {
+    }
+
+    private static final class CopyPool {
+        private final LongObjectHashMap<Filed> filed = new LongObjectHashMap<>();
+        private final Map<String, LinkedHashSet<Copy>> availableByBranch = new LinkedHashMap<>();
+
+        synchronized void update(Copy copy) {
+            Filed entry = filed.computeIfAbsent(copy.copyKey(), key -> new Filed());
+            unfile(entry);
+            entry.copy = copy;
+            entry.branchId = copy.getBranchId();
+            entry.available = copy.isAvailable();
+            if (entry.available) {
+                availableByBranch.computeIfAbsent(entry.branchId, id -> new LinkedHashSet<>()).add(copy);
+            }
+        }
+
+        synchronized void remove(Copy copy) {
+            Filed entry = filed.remove(copy.copyKey());
+            if (entry != null) {
+                unfile(entry);
+            }
+        }
+
+        synchronized Copy pick(String preferredBranchId) {
+            LinkedHashSet<Copy> preferred = preferredBranchId == null ? null : availableByBranch.get(preferredBranchId);
+            if (preferred != null) {
+                return preferred.iterator().next();
+            }
+            Iterator<LinkedHashSet<Copy>> branches = availableByBranch.values().iterator();
+            return branches.hasNext() ? branches.next().iterator().next() : null;
+        }
+
+        synchronized boolean hasAvailable() {
+            return !availableByBranch.isEmpty();
+        }
+
+        synchronized boolean hasAvailableExcept(Copy copy) {
+            for (LinkedHashSet<Copy> available : availableByBranch.values()) {
+                if (available.size() > 1 || !available.contains(copy)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized boolean hasAvailableAt(String branchId) {
+            return availableByBranch.containsKey(branchId);
+        }
+
+        synchronized List<Copy> copies() {
+            List<Copy> result = new ArrayList<>(filed.size());
+            filed.forEachValue(entry -> result.add(entry.copy));
+            return result;
+        }
+
+        synchronized Availability availability(String isbn) {
+            Map<String, int[]> counts = new TreeMap<>(Comparator.nullsLast(Comparator.naturalOrder()));
+            int[] totals = new int[2];
+            filed.forEachValue(entry -> {
+                int[] branch = counts.computeIfAbsent(entry.branchId, id -> new int[2]);
+                branch[0]++;
+                totals[0]++;
+                if (entry.available) {
+                    branch[1]++;
+                    totals[1]++;
+                }
+            });
+            List<BranchAvailability> branches = new ArrayList<>(counts.size());
+            counts.forEach((branchId, branch) -> branches.add(new BranchAvailability(branchId, branch[0], branch[1])));
+            return new Availability(isbn, totals[0], totals[1], branches);
+        }
+
+        private void unfile(Filed entry) {
+            if (!entry.available) {
+                return;
+            }
+            LinkedHashSet<Copy> available = availableByBranch.get(entry.branchId);
+            if (available != null && available.remove(entry.copy) && available.isEmpty()) {
+                availableByBranch.remove(entry.branchId);
+            }
+        }
+    }
+
+    private static final class Filed {
+        private Copy copy;
+        private String branchId;
+        private boolean available;
+    }
+}
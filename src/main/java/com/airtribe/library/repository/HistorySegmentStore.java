@@ -0,0 +1,115 @@
+package com.airtribe.library.repository;
+
+import com.airtribe.library.metrics.MetricsRegistry;
+import com.airtribe.library.util.HistoryLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+
+@Component
+public class HistorySegmentStore implements HistoryLog.ColdStore {
+    private static final Logger logger = LoggerFactory.getLogger(HistorySegmentStore.class);
+
+    private final int hotEntries;
+    private final int warmSegments;
+    private final String directory;
+    private final LongAdder reads = new LongAdder();
+    private Path file;
+    private FileChannel channel;
+    private long written;
+
+    public HistorySegmentStore(MetricsRegistry metrics,
+                               @Value("${library.history.hot-entries:256}") int hotEntries,
+                               @Value("${library.history.warm-segments:4}") int warmSegments,
+                               @Value("${library.history.spill-directory:}") String directory) {
+        this.hotEntries = Math.max(1, hotEntries);
+        this.warmSegments = Math.max(0, warmSegments);
+        this.directory = directory;
+        metrics.gauge("history.spilled-bytes", this::getSpilledBytes);
+        metrics.gauge("history.cold-reads", reads::sum);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (directory.isBlank()) {
+            return;
+        }
+        try {
+            Path path = Path.of(directory);
+            Files.createDirectories(path);
+            file = Files.createTempFile(path, "history-", ".seg");
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open history segment store in " + directory, e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to remove history segment store {}", file, e);
+        }
+    }
+
+    public HistoryLog compact(HistoryLog history) {
+        return history.compact(hotEntries, warmSegments, channel == null ? null : this);
+    }
+
+    public synchronized long getSpilledBytes() {
+        return written;
+    }
+
+    public long getColdReads() {
+        return reads.sum();
+    }
+
+    @Override
+    public synchronized long append(byte[] data) {
+        long position = written;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to spill history segment to " + file, e);
+        }
+        written += data.length;
+        return position;
+    }
+
+    @Override
+    public byte[] read(long position, int length) {
+        reads.increment();
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of history segment store at " + position);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read history segment from " + file, e);
+        }
+        return buffer.array();
+    }
+}
@@ -1,37 +1,222 @@
 package com.airtribe.library.repository;
 
 import com.airtribe.library.domain.Loan;
+import com.airtribe.library.persistence.EntityType;
+import com.airtribe.library.persistence.WriteAheadLog;
+import com.airtribe.library.util.ConcurrentLongObjectMap;
+import com.airtribe.library.util.KeyCodec;
+import com.airtribe.library.util.LongHashSet;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDate;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 @Repository
 public class LoanRepository {
-    private final Map<String, Loan> loans = new ConcurrentHashMap<>();
+    private static final int BUCKET_STRIPES = 64;
+
+    private final ConcurrentLongObjectMap<Loan> loans = new ConcurrentLongObjectMap<>();
+    private final NavigableSet<Long> orderedLoanKeys = new ConcurrentSkipListSet<>();
+    private final ConcurrentLongObjectMap<LongHashSet> activeLoanKeysByIsbn = new ConcurrentLongObjectMap<>();
+    private final ConcurrentLongObjectMap<Loan> activeByCopy = new ConcurrentLongObjectMap<>();
+    private final LongAdder activeLoans = new LongAdder();
+    private final ConcurrentLongObjectMap<LongHashSet> loanKeysByPatron = new ConcurrentLongObjectMap<>();
+    private final NavigableMap<LocalDate, LongHashSet> activeLoanKeysByDueDate = new ConcurrentSkipListMap<>();
+    private final Object[] bucketLocks = new Object[BUCKET_STRIPES];
+    private final WriteAheadLog writeAheadLog;
+
+    public LoanRepository(WriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+        for (int i = 0; i < BUCKET_STRIPES; i++) {
+            bucketLocks[i] = new Object();
+        }
+    }
 
     public Loan save(Loan loan) {
-        loans.put(loan.getLoanId(), loan);
+        writeAheadLog.recordSave(EntityType.LOAN, loan, () -> index(loan));
         return loan;
     }
 
+    public void saveAll(Collection<Loan> batch) {
+        writeAheadLog.recordSaves(EntityType.LOAN, batch, () -> batch.forEach(this::index));
+    }
+
+    private void index(Loan loan) {
+        synchronized (loan) {
+            long loanKey = loan.loanKey();
+            if (loans.put(loanKey, loan) == null) {
+                orderedLoanKeys.add(loanKey);
+            }
+            add(loanKeysByPatron.computeIfAbsent(loan.patronKey(), key -> new LongHashSet()), loanKey);
+            long isbnKey = loan.isbnKey();
+            LocalDate dueDate = loan.getDueDate();
+            if (loan.isActive()) {
+                synchronized (bucketLock(isbnKey)) {
+                    if (add(activeLoanKeysByIsbn.computeIfAbsent(isbnKey, key -> new LongHashSet()), loanKey)) {
+                        activeLoans.increment();
+                    }
+                }
+                if (loan.copyKey() != KeyCodec.NO_KEY) {
+                    activeByCopy.put(loan.copyKey(), loan);
+                }
+                synchronized (bucketLock(dueDate.toEpochDay())) {
+                    add(activeLoanKeysByDueDate.computeIfAbsent(dueDate, date -> new LongHashSet()), loanKey);
+                }
+            } else {
+                synchronized (bucketLock(isbnKey)) {
+                    LongHashSet activeForIsbn = activeLoanKeysByIsbn.get(isbnKey);
+                    if (activeForIsbn != null && remove(activeForIsbn, loanKey)) {
+                        activeLoans.decrement();
+                        if (activeForIsbn.isEmpty()) {
+                            activeLoanKeysByIsbn.remove(isbnKey);
+                        }
+                    }
+                }
+                if (loan.copyKey() != KeyCodec.NO_KEY) {
+                    activeByCopy.remove(loan.copyKey(), loan);
+                }
+                synchronized (bucketLock(dueDate.toEpochDay())) {
+                    LongHashSet dueOn = activeLoanKeysByDueDate.get(dueDate);
+                    if (dueOn != null && remove(dueOn, loanKey) && dueOn.isEmpty()) {
+                        activeLoanKeysByDueDate.remove(dueDate);
+                    }
+                }
+            }
+        }
+    }
+
     public Optional<Loan> findById(String loanId) {
-        return Optional.ofNullable(loans.get(loanId));
+        return Optional.ofNullable(loans.get(KeyCodec.LOAN_ID.lookup(loanId)));
     }
 
     public List<Loan> findAll() {
-        return new ArrayList<>(loans.values());
+        return loans.values();
+    }
+
+    public long count() {
+        return loans.size();
+    }
+
+    public Page<Loan> findPage(String afterLoanId, int limit) {
+        return Page.of(orderedLoanKeys, KeyCodec.LOAN_ID, afterLoanId, limit, loans::get);
+    }
+
+    public void forEachOrdered(Consumer<Loan> action) {
+        for (long loanKey : orderedLoanKeys) {
+            Loan loan = loans.get(loanKey);
+            if (loan != null) {
+                action.accept(loan);
+            }
+        }
     }
 
     public List<Loan> findByPatronId(String patronId) {
-        return loans.values().stream()
-                .filter(loan -> loan.getPatronId().equals(patronId))
-                .collect(Collectors.toList());
+        LongHashSet loanKeys = loanKeysByPatron.get(KeyCodec.PATRON_ID.lookup(patronId));
+        return loanKeys == null ? new ArrayList<>() : resolve(snapshot(loanKeys));
     }
 
     public Optional<Loan> findActiveByIsbn(String isbn) {
-        return loans.values().stream()
-                .filter(loan -> loan.getIsbn().equals(isbn) && loan.isActive())
-                .findFirst();
+        List<Loan> active = findAllActiveByIsbn(isbn);
+        return active.isEmpty() ? Optional.empty() : Optional.of(active.get(0));
+    }
+
+    public List<Loan> findAllActiveByIsbn(String isbn) {
+        LongHashSet loanKeys = activeLoanKeysByIsbn.get(KeyCodec.ISBN.lookup(isbn));
+        if (loanKeys == null) {
+            return new ArrayList<>();
+        }
+        long[] active = snapshot(loanKeys);
+        Arrays.sort(active);
+        List<Loan> result = new ArrayList<>(active.length);
+        for (long loanKey : active) {
+            Loan loan = loans.get(loanKey);
+            if (loan != null && loan.isActive()) {
+                result.add(loan);
+            }
+        }
+        return result;
+    }
+
+    public Optional<Loan> findActiveByBarcode(String barcode) {
+        return Optional.ofNullable(activeByCopy.get(KeyCodec.COPY_ID.lookup(barcode)));
+    }
+
+    public List<Loan> findOverdue(LocalDate asOf) {
+        List<Loan> overdue = new ArrayList<>();
+        for (LongHashSet loanKeys : activeLoanKeysByDueDate.headMap(asOf, false).values()) {
+            for (Loan loan : resolve(snapshot(loanKeys))) {
+                if (loan.isActive()) {
+                    overdue.add(loan);
+                }
+            }
+        }
+        return overdue;
+    }
+
+    public void forEachActiveDueBetween(LocalDate from, LocalDate to, Consumer<Loan> action) {
+        if (from != null && from.isAfter(to)) {
+            return;
+        }
+        NavigableMap<LocalDate, LongHashSet> due = from == null
+                ? activeLoanKeysByDueDate.headMap(to, true)
+                : activeLoanKeysByDueDate.subMap(from, true, to, true);
+        for (LongHashSet loanKeys : due.values()) {
+            for (long loanKey : snapshot(loanKeys)) {
+                Loan loan = loans.get(loanKey);
+                if (loan != null && loan.isActive()) {
+                    action.accept(loan);
+                }
+            }
+        }
+    }
+
+    public long countOverdue(LocalDate asOf) {
+        long count = 0;
+        for (LongHashSet loanKeys : activeLoanKeysByDueDate.headMap(asOf, false).values()) {
+            synchronized (loanKeys) {
+                count += loanKeys.size();
+            }
+        }
+        return count;
+    }
+
+    public long countActive() {
+        return activeLoans.sum();
+    }
+
+    private static boolean add(LongHashSet keys, long key) {
+        synchronized (keys) {
+            return keys.add(key);
+        }
+    }
+
+    private static boolean remove(LongHashSet keys, long key) {
+        synchronized (keys) {
+            return keys.remove(key);
+        }
+    }
+
+    private Object bucketLock(long key) {
+        return bucketLocks[Long.hashCode(key) & (BUCKET_STRIPES - 1)];
+    }
+
+    private static long[] snapshot(LongHashSet keys) {
+        synchronized (keys) {
+            return keys.toArray();
+        }
+    }
+
+    private List<Loan> resolve(long[] loanKeys) {
+        List<Loan> result = new ArrayList<>(loanKeys.length);
+        for (long loanKey : loanKeys) {
+            Loan loan = loans.get(loanKey);
+            if (loan != null) {
+                result.add(loan);
+            }
+        }
+        return result;
     }
 }
@@ -0,0 +1,55 @@
+package com.airtribe.library.repository;
+
+import com.airtribe.library.util.KeyCodec;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+public record Page<T>(List<T> items, String nextCursor) {
+    public static final int MAX_LIMIT = 1000;
+
+    static <T> Page<T> of(NavigableSet<String> orderedIds, KeyCodec codec, String after, int limit,
+                          Function<String, T> lookup) {
+        if (after != null && codec.lookup(after) == KeyCodec.NO_KEY) {
+            throw new IllegalArgumentException("Unknown page cursor: " + after);
+        }
+        Iterator<String> ids = (after == null ? orderedIds : orderedIds.tailSet(after, false)).iterator();
+        List<T> items = new ArrayList<>(Math.min(limit, MAX_LIMIT));
+        String lastId = null;
+        while (items.size() < limit && ids.hasNext()) {
+            String id = ids.next();
+            T item = lookup.apply(id);
+            if (item != null) {
+                items.add(item);
+                lastId = id;
+            }
+        }
+        return new Page<>(items, ids.hasNext() ? lastId : null);
+    }
+
+    static <T> Page<T> of(NavigableSet<Long> orderedKeys, KeyCodec codec, String after, int limit,
+                          LongFunction<T> lookup) {
+        long afterKey = codec.lookup(after);
+        if (after != null && afterKey == KeyCodec.NO_KEY) {
+            throw new IllegalArgumentException("Unknown page cursor: " + after);
+        }
+        Iterator<Long> keys = (after == null ? orderedKeys : orderedKeys.tailSet(afterKey, false)).iterator();
+        List<T> items = new ArrayList<>(Math.min(limit, MAX_LIMIT));
+        long lastKey = KeyCodec.NO_KEY;
+        while (items.size() < limit && keys.hasNext()) {
+            long key = keys.next();
+            T item = lookup.apply(key);
+            if (item != null) {
+                items.add(item);
+                lastKey = key;
+            }
+        }
+        return new Page<>(items, keys.hasNext() ? codec.decode(lastKey) : null);
+    }
+
+    public static void validateLimit(int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Page limit must be between 1 and " + MAX_LIMIT + ": " + limit);
+        }
+    }
+}
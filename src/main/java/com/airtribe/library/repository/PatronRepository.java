@@ -1,16 +1,35 @@
 package com.airtribe.library.repository;
 
 import com.airtribe.library.domain.Patron;
+import com.airtribe.library.persistence.EntityType;
+import com.airtribe.library.persistence.WriteAheadLog;
+import com.airtribe.library.util.KeyCodec;
 import org.springframework.stereotype.Repository;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
 
 @Repository
 public class PatronRepository {
     private final Map<String, Patron> patrons = new ConcurrentHashMap<>();
+    private final NavigableSet<String> orderedPatronIds = new ConcurrentSkipListSet<>();
+    private final WriteAheadLog writeAheadLog;
+    private final HistorySegmentStore historySegmentStore;
+
+    public PatronRepository(WriteAheadLog writeAheadLog, HistorySegmentStore historySegmentStore) {
+        this.writeAheadLog = writeAheadLog;
+        this.historySegmentStore = historySegmentStore;
+    }
 
     public Patron save(Patron patron) {
-        patrons.put(patron.getPatronId(), patron);
+        patron.compactBorrowingHistory(historySegmentStore::compact);
+        int historySize = patron.borrowingHistoryLog().size();
+        writeAheadLog.recordSave(EntityType.PATRON, patron, () -> {
+            patron.markHistoryLogged(historySize);
+            patrons.put(patron.getPatronId(), patron);
+            orderedPatronIds.add(patron.getPatronId());
+        });
         return patron;
     }
 
@@ -22,7 +41,27 @@ public class PatronRepository {
         return new ArrayList<>(patrons.values());
     }
 
+    public long count() {
+        return patrons.size();
+    }
+
+    public Page<Patron> findPage(String afterPatronId, int limit) {
+        return Page.of(orderedPatronIds, KeyCodec.PATRON_ID, afterPatronId, limit, patrons::get);
+    }
+
+    public void forEachOrdered(Consumer<Patron> action) {
+        for (String patronId : orderedPatronIds) {
+            Patron patron = patrons.get(patronId);
+            if (patron != null) {
+                action.accept(patron);
+            }
+        }
+    }
+
     public void delete(String patronId) {
-        patrons.remove(patronId);
+        writeAheadLog.recordDelete(EntityType.PATRON, patronId, () -> {
+            patrons.remove(patronId);
+            orderedPatronIds.remove(patronId);
+        });
     }
 }
@@ -2,32 +2,133 @@ package com.airtribe.library.repository;
 
 import com.airtribe.library.domain.Reservation;
 import com.airtribe.library.domain.ReservationStatus;
+import com.airtribe.library.persistence.EntityType;
+import com.airtribe.library.persistence.WriteAheadLog;
+import com.airtribe.library.util.ConcurrentLongObjectMap;
+import com.airtribe.library.util.KeyCodec;
 import org.springframework.stereotype.Repository;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
 
 @Repository
 public class ReservationRepository {
-    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+    private static final Comparator<Reservation> QUEUE_ORDER = Comparator
+            .comparing(Reservation::getReservationDate)
+            .thenComparingLong(Reservation::reservationKey);
+
+    private final ConcurrentLongObjectMap<Reservation> reservations = new ConcurrentLongObjectMap<>();
+    private final NavigableSet<Long> orderedReservationKeys = new ConcurrentSkipListSet<>();
+    private final ConcurrentLongObjectMap<Queue> activeQueues = new ConcurrentLongObjectMap<>();
+    private final WriteAheadLog writeAheadLog;
+    private final BranchInventory branchInventory;
+
+    public ReservationRepository(WriteAheadLog writeAheadLog, BranchInventory branchInventory) {
+        this.writeAheadLog = writeAheadLog;
+        this.branchInventory = branchInventory;
+    }
 
     public Reservation save(Reservation reservation) {
-        reservations.put(reservation.getReservationId(), reservation);
+        writeAheadLog.recordSave(EntityType.RESERVATION, reservation, () -> index(reservation));
         return reservation;
     }
 
+    private void index(Reservation reservation) {
+        synchronized (reservation) {
+            if (reservations.put(reservation.reservationKey(), reservation) == null) {
+                orderedReservationKeys.add(reservation.reservationKey());
+            }
+            if (reservation.getStatus() == ReservationStatus.ACTIVE) {
+                activeQueues.compute(reservation.isbnKey(), queue -> {
+                    Queue target = queue != null ? queue : new Queue();
+                    if (target.waiting.add(reservation)) {
+                        target.size++;
+                    }
+                    branchInventory.recordHolds(reservation.getIsbn(), target.size);
+                    return target;
+                });
+            } else {
+                activeQueues.computeIfPresent(reservation.isbnKey(), queue -> {
+                    if (queue.waiting.remove(reservation)) {
+                        queue.size--;
+                    }
+                    branchInventory.recordHolds(reservation.getIsbn(), queue.size);
+                    return queue.size == 0 ? null : queue;
+                });
+            }
+        }
+    }
+
     public Optional<Reservation> findById(String reservationId) {
-        return Optional.ofNullable(reservations.get(reservationId));
+        return Optional.ofNullable(reservations.get(KeyCodec.RESERVATION_ID.lookup(reservationId)));
     }
 
     public List<Reservation> findAll() {
-        return new ArrayList<>(reservations.values());
+        return reservations.values();
+    }
+
+    public long count() {
+        return reservations.size();
+    }
+
+    public Page<Reservation> findPage(String afterReservationId, int limit) {
+        return Page.of(orderedReservationKeys, KeyCodec.RESERVATION_ID, afterReservationId, limit, reservations::get);
+    }
+
+    public void forEachOrdered(Consumer<Reservation> action) {
+        for (long reservationKey : orderedReservationKeys) {
+            Reservation reservation = reservations.get(reservationKey);
+            if (reservation != null) {
+                action.accept(reservation);
+            }
+        }
     }
 
     public List<Reservation> findActiveByIsbn(String isbn) {
-        return reservations.values().stream()
-                .filter(r -> r.getIsbn().equals(isbn) && r.getStatus() == ReservationStatus.ACTIVE)
-                .sorted(Comparator.comparing(Reservation::getReservationDate))
-                .collect(Collectors.toList());
+        Queue queue = activeQueues.get(KeyCodec.ISBN.lookup(isbn));
+        return queue == null ? new ArrayList<>() : new ArrayList<>(queue.waiting);
+    }
+
+    public Optional<Reservation> findNextActiveByIsbn(String isbn) {
+        Queue queue = activeQueues.get(KeyCodec.ISBN.lookup(isbn));
+        if (queue == null) {
+            return Optional.empty();
+        }
+        Iterator<Reservation> head = queue.waiting.iterator();
+        return head.hasNext() ? Optional.of(head.next()) : Optional.empty();
+    }
+
+    public List<Reservation> findNextActiveByIsbn(String isbn, int limit) {
+        Queue queue = activeQueues.get(KeyCodec.ISBN.lookup(isbn));
+        List<Reservation> next = new ArrayList<>(Math.min(limit, 16));
+        if (queue != null) {
+            Iterator<Reservation> head = queue.waiting.iterator();
+            while (next.size() < limit && head.hasNext()) {
+                next.add(head.next());
+            }
+        }
+        return next;
+    }
+
+    public int findQueuePosition(Reservation reservation) {
+        Queue queue = activeQueues.get(reservation.isbnKey());
+        if (queue == null || !queue.waiting.contains(reservation)) {
+            return 0;
+        }
+        return queue.waiting.headSet(reservation, false).size() + 1;
+    }
+
+    public int countActiveByIsbn(String isbn) {
+        Queue queue = activeQueues.get(KeyCodec.ISBN.lookup(isbn));
+        return queue == null ? 0 : queue.size;
+    }
+
+    public int countActiveQueues() {
+        return (int) activeQueues.size();
+    }
+
+    private static final class Queue {
+        private final NavigableSet<Reservation> waiting = new ConcurrentSkipListSet<>(QUEUE_ORDER);
+        private volatile int size;
     }
 }
@@ -0,0 +1,233 @@
+package com.airtribe.library.service;
+
+import com.airtribe.library.domain.Book;
+import com.airtribe.library.domain.Branch;
+import com.airtribe.library.domain.Copy;
+import com.airtribe.library.patterns.EntityFactory;
+import com.airtribe.library.persistence.WriteAheadLog;
+import com.airtribe.library.repository.BookRepository;
+import com.airtribe.library.repository.BookSearchIndex;
+import com.airtribe.library.repository.CopyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+
+@Service
+public class BookImportService {
+    private static final Logger logger = LoggerFactory.getLogger(BookImportService.class);
+    private static final List<String> CSV_COLUMNS = List.of("isbn", "title", "author", "publicationyear");
+
+    public enum Format { NDJSON, CSV }
+
+    private final BookRepository bookRepository;
+    private final CopyRepository copyRepository;
+    private final BookSearchIndex searchIndex;
+    private final BranchService branchService;
+    private final EntityFactory entityFactory;
+    private final StripedLocks locks;
+    private final WriteAheadLog writeAheadLog;
+    private final ObjectReader rowReader;
+    private final int batchSize;
+    private final int maxReportedErrors;
+
+    public BookImportService(BookRepository bookRepository, CopyRepository copyRepository, BookSearchIndex searchIndex,
+                             BranchService branchService, EntityFactory entityFactory, StripedLocks locks,
+                             WriteAheadLog writeAheadLog, ObjectMapper objectMapper,
+                             @Value("${library.import.batch-size:1000}") int batchSize,
+                             @Value("${library.import.max-reported-errors:100}") int maxReportedErrors) {
+        this.bookRepository = bookRepository;
+        this.copyRepository = copyRepository;
+        this.searchIndex = searchIndex;
+        this.branchService = branchService;
+        this.entityFactory = entityFactory;
+        this.locks = locks;
+        this.writeAheadLog = writeAheadLog;
+        this.rowReader = objectMapper.readerFor(BookRow.class);
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public ImportResult importBooks(InputStream input, Format format, String branchId) throws IOException {
+        Branch branch = branchId == null ? null : branchService.getBranch(branchId);
+        ImportResult result = new ImportResult(maxReportedErrors);
+        List<Book> batch = new ArrayList<>(batchSize);
+        List<Long> batchLines = new ArrayList<>(batchSize);
+        Set<String> batchIsbns = new HashSet<>();
+        long started = System.nanoTime();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        long lineNumber = 0;
+        String line;
+        if (format == Format.CSV) {
+            String header = reader.readLine();
+            lineNumber++;
+            if (header == null || !CSV_COLUMNS.equals(parseCsv(header.toLowerCase(Locale.ROOT)))) {
+                throw new IllegalArgumentException("CSV header must be: isbn,title,author,publicationYear");
+            }
+        }
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                BookRow row = format == Format.CSV ? csvRow(line) : rowReader.readValue(line);
+                String error = validate(row, batchIsbns);
+                if (error != null) {
+                    result.recordError(lineNumber, error);
+                    continue;
+                }
+                batch.add(entityFactory.createBook(row.isbn, row.title, row.author, row.publicationYear));
+                batchLines.add(lineNumber);
+                batchIsbns.add(row.isbn);
+            } catch (JacksonException | IllegalArgumentException e) {
+                result.recordError(lineNumber, "Malformed row: " + e.getMessage());
+                continue;
+            }
+            if (batch.size() >= batchSize) {
+                flush(batch, batchLines, branch, result);
+                batchIsbns.clear();
+            }
+        }
+        flush(batch, batchLines, branch, result);
+
+        logger.info("Bulk import finished: imported={}, failed={}, branch={}, took={}ms",
+                result.getImported(), result.getFailed(), branchId, (System.nanoTime() - started) / 1_000_000);
+        return result;
+    }
+
+    private void flush(List<Book> batch, List<Long> lines, Branch branch, ImportResult result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Lock> held = locks.forIsbns(batchIsbns(batch));
+        StripedLocks.lockAll(held);
+        try {
+            List<Book> fresh = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                Book book = batch.get(i);
+                if (bookRepository.exists(book.getIsbn())) {
+                    result.recordError(lines.get(i), "Book already exists: " + book.getIsbn());
+                } else {
+                    fresh.add(book);
+                }
+            }
+            if (!fresh.isEmpty()) {
+                String branchId = branch == null ? null : branch.getBranchId();
+                List<Copy> copies = new ArrayList<>(fresh.size());
+                for (Book book : fresh) {
+                    copies.add(entityFactory.createCopy(book.getIsbn(), branchId));
+                }
+                if (branch != null) {
+                    branchService.assignNewBooksToBranch(fresh, copies, branch);
+                } else {
+                    writeAheadLog.atomically(() -> {
+                        bookRepository.saveAll(fresh);
+                        copyRepository.saveAll(copies);
+                        return copies;
+                    });
+                }
+                searchIndex.indexAll(fresh);
+                result.recordImported(fresh.size());
+            }
+        } finally {
+            StripedLocks.unlockAll(held);
+        }
+        batch.clear();
+        lines.clear();
+    }
+
+    private static List<String> batchIsbns(List<Book> batch) {
+        List<String> isbns = new ArrayList<>(batch.size());
+        for (Book book : batch) {
+            isbns.add(book.getIsbn());
+        }
+        return isbns;
+    }
+
+    private String validate(BookRow row, Set<String> batchIsbns) {
+        if (row == null || isBlank(row.isbn)) {
+            return "ISBN is required";
+        }
+        if (isBlank(row.title)) {
+            return "Title is required";
+        }
+        if (isBlank(row.author)) {
+            return "Author is required";
+        }
+        if (row.publicationYear <= 0) {
+            return "Publication year must be positive";
+        }
+        if (batchIsbns.contains(row.isbn) || bookRepository.exists(row.isbn)) {
+            return "Book already exists: " + row.isbn;
+        }
+        return null;
+    }
+
+    private static BookRow csvRow(String line) {
+        List<String> fields = parseCsv(line);
+        if (fields.size() != CSV_COLUMNS.size()) {
+            throw new IllegalArgumentException("expected " + CSV_COLUMNS.size() + " columns, found " + fields.size());
+        }
+        BookRow row = new BookRow();
+        row.isbn = fields.get(0).trim();
+        row.title = fields.get(1);
+        row.author = fields.get(2);
+        try {
+            row.publicationYear = Integer.parseInt(fields.get(3).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid publication year: " + fields.get(3));
+        }
+        return row;
+    }
+
+    static List<String> parseCsv(String line) {
+        List<String> fields = new ArrayList<>(CSV_COLUMNS.size());
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    static class BookRow {
+        public String isbn;
+        public String title;
+        public String author;
+        public int publicationYear;
+    }
+}
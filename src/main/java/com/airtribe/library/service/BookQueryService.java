@@ -0,0 +1,264 @@
+package com.airtribe.library.service;
+
+import com.airtribe.library.domain.Book;
+import com.airtribe.library.domain.BookStatus;
+import com.airtribe.library.domain.Branch;
+import com.airtribe.library.exception.BranchNotFoundException;
+import com.airtribe.library.metrics.MetricsRegistry;
+import com.airtribe.library.metrics.OperationMetrics;
+import com.airtribe.library.repository.*;
+import com.airtribe.library.util.KeyCodec;
+import com.airtribe.library.util.PersistentLongSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+@Service
+public class BookQueryService {
+    private static final Logger logger = LoggerFactory.getLogger(BookQueryService.class);
+    private static final double MIN_SELECTIVITY = 1e-9;
+
+    private final BookRepository bookRepository;
+    private final BranchRepository branchRepository;
+    private final CopyRepository copyRepository;
+    private final BookSearchIndex searchIndex;
+    private final OperationMetrics queryMetrics;
+
+    public BookQueryService(BookRepository bookRepository, BranchRepository branchRepository,
+                            CopyRepository copyRepository, BookSearchIndex searchIndex, MetricsRegistry metrics) {
+        this.bookRepository = bookRepository;
+        this.branchRepository = branchRepository;
+        this.copyRepository = copyRepository;
+        this.searchIndex = searchIndex;
+        this.queryMetrics = metrics.operation("books.query");
+    }
+
+    public QueryResult query(BookQuery query) {
+        long started = System.nanoTime();
+        try {
+            QueryResult result = execute(query);
+            queryMetrics.recordSuccess(started);
+            return result;
+        } catch (RuntimeException e) {
+            queryMetrics.recordFailure(started);
+            throw e;
+        }
+    }
+
+    private QueryResult execute(BookQuery query) {
+        int limit = query.limit();
+        Page.validateLimit(limit);
+        Sort sort = Sort.parse(query.sort());
+        BookStatus status = parseStatus(query.status());
+        String title = blankToNull(query.title());
+        String author = blankToNull(query.author());
+        String isbn = blankToNull(query.isbn());
+        int fromYear = query.yearFrom() == null ? Integer.MIN_VALUE : query.yearFrom();
+        int toYear = query.yearTo() == null ? Integer.MAX_VALUE : query.yearTo();
+        if (fromYear > toYear) {
+            throw new IllegalArgumentException("Invalid year range: " + fromYear + " to " + toYear);
+        }
+        String branchId = blankToNull(query.branchId());
+        Branch branch = branchId == null ? null : branchRepository.findById(branchId)
+                .orElseThrow(() -> new BranchNotFoundException("Branch not found: " + branchId));
+
+        Predicate<Book> filter = book -> (isbn == null || isbn.equals(book.getIsbn()))
+                && (title == null || BookSearchIndex.matches(book.getTitle(), title))
+                && (author == null || BookSearchIndex.matches(book.getAuthor(), author))
+                && book.getPublicationYear() >= fromYear && book.getPublicationYear() <= toYear
+                && (status == null || book.getStatus() == status)
+                && (branch == null || branch.bookIsbnKeys().contains(KeyCodec.ISBN.lookup(book.getIsbn())))
+                && (status != BookStatus.AVAILABLE || branch == null
+                        || copyRepository.hasAvailableAt(book.getIsbn(), branchId));
+
+        List<Source> sources = new ArrayList<>();
+        if (isbn != null) {
+            sources.add(new Source("isbn", 1, null, visitor -> {
+                if (bookRepository.exists(isbn)) {
+                    visitor.test(isbn);
+                }
+            }, 0, () -> isbn::equals));
+        }
+        if (searchIndex.isReady()) {
+            if (title != null) {
+                sources.add(textSource("title-index", BookSearchIndex.Field.TITLE, title));
+            }
+            if (author != null) {
+                sources.add(textSource("author-index", BookSearchIndex.Field.AUTHOR, author));
+            }
+        }
+        if (query.yearFrom() != null || query.yearTo() != null) {
+            boolean descending = sort == Sort.YEAR_DESC;
+            sources.add(new Source("year-range", bookRepository.countByYear(fromYear, toYear),
+                    descending ? Sort.YEAR_DESC : Sort.YEAR,
+                    visitor -> bookRepository.scanIsbnsByYear(fromYear, toYear, descending, visitor), 0,
+                    () -> candidate -> bookRepository.isPublishedBetween(candidate, fromYear, toYear)));
+        }
+        if (status != null) {
+            sources.add(new Source("status", bookRepository.countByStatus(status), null,
+                    visitor -> bookRepository.scanIsbnsByStatus(status, visitor), 0,
+                    () -> candidate -> bookRepository.hasStatus(candidate, status)));
+        }
+        if (branch != null) {
+            PersistentLongSet held = branch.bookIsbnKeys();
+            sources.add(new Source("branch", held.size(), null, visitor -> {
+                for (String candidate : held.asStrings(KeyCodec.ISBN)) {
+                    if (!visitor.test(candidate)) {
+                        return;
+                    }
+                }
+            }, 0, () -> candidate -> held.contains(KeyCodec.ISBN.lookup(candidate))));
+        }
+        long total = Math.max(1, bookRepository.count());
+        sources.add(new Source("catalogue", total, Sort.ISBN, bookRepository::scanIsbnsOrdered, 0, null));
+
+        Source driver = choose(sources, sort, limit, total);
+        List<Predicate<String>> probes = new ArrayList<>();
+        sources.stream()
+                .filter(source -> source != driver && source.probe() != null && source.probeCost() <= driver.estimate())
+                .sorted(Comparator.comparingLong(Source::estimate))
+                .forEach(source -> probes.add(source.probe().get()));
+        boolean ordered = driver.order() == sort;
+        long[] counts = new long[2];
+        Predicate<String> candidates = candidate -> {
+            counts[0]++;
+            for (Predicate<String> probe : probes) {
+                if (!probe.test(candidate)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+        List<Book> items;
+        if (ordered) {
+            List<Book> matches = new ArrayList<>(Math.min(limit, 64));
+            driver.scan().accept(candidate -> {
+                Book book = candidates.test(candidate) ? load(candidate, counts) : null;
+                if (book != null && filter.test(book)) {
+                    matches.add(book);
+                }
+                return matches.size() < limit;
+            });
+            items = matches;
+        } else {
+            PriorityQueue<Book> top = new PriorityQueue<>(sort.comparator().reversed());
+            driver.scan().accept(candidate -> {
+                Book book = candidates.test(candidate) ? load(candidate, counts) : null;
+                if (book != null && filter.test(book)) {
+                    top.offer(book);
+                    if (top.size() > limit) {
+                        top.poll();
+                    }
+                }
+                return true;
+            });
+            items = new ArrayList<>(top);
+            items.sort(sort.comparator());
+        }
+        logger.debug("Book query driven by {} (estimate {}, ordered {}, {} key probes): examined {}, loaded {}, returned {}",
+                driver.name(), driver.estimate(), ordered, probes.size(), counts[0], counts[1], items.size());
+        return new QueryResult(items, driver.name(), ordered, driver.estimate(), counts[0], counts[1]);
+    }
+
+    private Book load(String isbn, long[] counts) {
+        Book book = bookRepository.findByIsbn(isbn).orElse(null);
+        if (book != null) {
+            counts[1]++;
+        }
+        return book;
+    }
+
+    private Source textSource(String name, BookSearchIndex.Field field, String text) {
+        long estimate = searchIndex.estimate(field, text);
+        return new Source(name, estimate, null, visitor -> {
+            for (Book book : searchIndex.match(field, text)) {
+                if (!visitor.test(book.getIsbn())) {
+                    return;
+                }
+            }
+        }, estimate, () -> searchIndex.matchIsbns(field, text)::contains);
+    }
+
+    private static Source choose(List<Source> sources, Sort sort, int limit, long total) {
+        Source best = null;
+        double bestCost = Double.MAX_VALUE;
+        for (Source candidate : sources) {
+            double residual = 1.0;
+            for (Source other : sources) {
+                if (other != candidate && !"catalogue".equals(other.name())) {
+                    residual *= Math.min(1.0, (double) other.estimate() / total);
+                }
+            }
+            double cost = candidate.order() == sort
+                    ? Math.min(candidate.estimate(), limit / Math.max(residual, MIN_SELECTIVITY))
+                    : candidate.estimate();
+            if (cost < bestCost) {
+                best = candidate;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    private static BookStatus parseStatus(String status) {
+        if (status == null || status.isBlank()) {
+            return null;
+        }
+        try {
+            return BookStatus.valueOf(status.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid book status: " + status);
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    public enum Sort {
+        ISBN(Comparator.comparing(Book::getIsbn)),
+        TITLE(Comparator.comparing(Book::getTitle, Comparator.nullsLast(Comparator.<String>naturalOrder()))
+                .thenComparing(Book::getIsbn)),
+        YEAR(Comparator.comparingInt(Book::getPublicationYear).thenComparing(Book::getIsbn)),
+        YEAR_DESC(Comparator.comparingInt(Book::getPublicationYear).reversed().thenComparing(Book::getIsbn));
+
+        private final Comparator<Book> comparator;
+
+        Sort(Comparator<Book> comparator) {
+            this.comparator = comparator;
+        }
+
+        public Comparator<Book> comparator() {
+            return comparator;
+        }
+
+        static Sort parse(String sort) {
+            if (sort == null || sort.isBlank()) {
+                return ISBN;
+            }
+            return switch (sort.trim().toLowerCase(Locale.ROOT)) {
+                case "isbn" -> ISBN;
+                case "title" -> TITLE;
+                case "year" -> YEAR;
+                case "-year" -> YEAR_DESC;
+                default -> throw new IllegalArgumentException("Invalid sort: " + sort);
+            };
+        }
+    }
+
+    public record BookQuery(String title, String author, String isbn, Integer yearFrom, Integer yearTo,
+                            String status, String branchId, String sort, int limit) {
+    }
+
+    public record QueryResult(List<Book> items, String driver, boolean ordered, long estimated, long examined,
+                              long loaded) {
+    }
+
+    private record Source(String name, long estimate, Sort order, Consumer<Predicate<String>> scan,
+                          long probeCost, Supplier<Predicate<String>> probe) {
+    }
+}
@@ -1,47 +1,166 @@
 package com.airtribe.library.service;
 
+import com.airtribe.library.audit.AuditEventType;
+import com.airtribe.library.audit.AuditLog;
 import com.airtribe.library.domain.Book;
+import com.airtribe.library.domain.BookStatus;
+import com.airtribe.library.domain.Branch;
+import com.airtribe.library.domain.Copy;
 import com.airtribe.library.exception.BookNotFoundException;
+import com.airtribe.library.exception.BranchNotFoundException;
+import com.airtribe.library.metrics.Histogram;
+import com.airtribe.library.metrics.MetricsRegistry;
+import com.airtribe.library.metrics.OperationMetrics;
 import com.airtribe.library.patterns.*;
 import com.airtribe.library.repository.BookRepository;
+import com.airtribe.library.repository.BookSearchIndex;
+import com.airtribe.library.repository.BranchRepository;
+import com.airtribe.library.repository.CopyRepository;
+import com.airtribe.library.repository.Page;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 
 @Service
 public class BookService {
     private static final Logger logger = LoggerFactory.getLogger(BookService.class);
     private final BookRepository bookRepository;
+    private final CopyRepository copyRepository;
+    private final BranchRepository branchRepository;
     private final EntityFactory entityFactory;
+    private final BookSearchIndex searchIndex;
+    private final SearchResultCache searchCache;
+    private final boolean indexedSearch;
+    private final StripedLocks locks;
+    private final AuditLog auditLog;
+    private final OperationMetrics searchMetrics;
+    private final Histogram searchResultSizes;
 
-    public BookService(BookRepository bookRepository, EntityFactory entityFactory) {
+    public BookService(BookRepository bookRepository, CopyRepository copyRepository, BranchRepository branchRepository,
+                       EntityFactory entityFactory, BookSearchIndex searchIndex, SearchResultCache searchCache,
+                       @Value("${library.search.mode:indexed}") String searchMode, StripedLocks locks,
+                       MetricsRegistry metrics, AuditLog auditLog) {
         this.bookRepository = bookRepository;
+        this.copyRepository = copyRepository;
+        this.branchRepository = branchRepository;
         this.entityFactory = entityFactory;
+        this.searchIndex = searchIndex;
+        this.searchCache = searchCache;
+        this.indexedSearch = !"scan".equalsIgnoreCase(searchMode);
+        this.locks = locks;
+        this.auditLog = auditLog;
+        this.searchMetrics = metrics.operation("books.search");
+        this.searchResultSizes = metrics.histogram("books.search.results");
     }
 
     public Book addBook(String isbn, String title, String author, int publicationYear) {
-        logger.info("Adding book: ISBN={}, Title={}", isbn, title);
+        logger.debug("Adding book: ISBN={}, Title={}", isbn, title);
         Book book = entityFactory.createBook(isbn, title, author, publicationYear);
-        return bookRepository.save(book);
+        Lock isbnLock = locks.forIsbn(isbn);
+        isbnLock.lock();
+        try {
+            bookRepository.save(book);
+            copyRepository.save(entityFactory.createCopy(isbn, null));
+            searchIndex.index(book);
+        } finally {
+            isbnLock.unlock();
+        }
+        auditLog.record(AuditEventType.BOOK_ADDED, isbn, null, null);
+        return book;
+    }
+
+    public List<Copy> addCopies(String isbn, String branchId, int count) {
+        logger.debug("Adding {} copies of {} to branch {}", count, isbn, branchId);
+        if (count <= 0) {
+            throw new IllegalArgumentException("Copy count must be positive: " + count);
+        }
+        Book book = getBook(isbn);
+        Branch branch = branchId == null ? null : branchRepository.findById(branchId)
+                .orElseThrow(() -> new BranchNotFoundException("Branch not found: " + branchId));
+
+        Lock isbnLock = locks.forIsbn(isbn);
+        isbnLock.lock();
+        try {
+            List<Copy> copies = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                copies.add(entityFactory.createCopy(isbn, branchId));
+            }
+            copyRepository.saveAll(copies);
+            if (branch != null && !branch.getBookIsbns().contains(isbn)) {
+                branch.addBook(isbn);
+                branchRepository.save(branch);
+            }
+            if (book.getStatus() != BookStatus.AVAILABLE) {
+                book.setStatus(BookStatus.AVAILABLE);
+                bookRepository.save(book);
+            }
+            auditLog.record(AuditEventType.COPIES_ADDED, isbn, null, branchId);
+            return copies;
+        } finally {
+            isbnLock.unlock();
+        }
+    }
+
+    public List<Copy> getCopies(String isbn) {
+        getBook(isbn);
+        return copyRepository.findByIsbn(isbn);
+    }
+
+    public CopyRepository.Availability getAvailability(String isbn) {
+        getBook(isbn);
+        return copyRepository.availability(isbn);
     }
 
     public Book updateBook(String isbn, String title, String author, int publicationYear) {
-        logger.info("Updating book: ISBN={}", isbn);
-        Book book = bookRepository.findByIsbn(isbn)
-                .orElseThrow(() -> new BookNotFoundException("Book not found: " + isbn));
-        book.setTitle(title);
-        book.setAuthor(author);
-        book.setPublicationYear(publicationYear);
-        return bookRepository.save(book);
+        logger.debug("Updating book: ISBN={}", isbn);
+        Lock isbnLock = locks.forIsbn(isbn);
+        isbnLock.lock();
+        try {
+            Book book = getBook(isbn);
+            String previousTitle = book.getTitle();
+            String previousAuthor = book.getAuthor();
+            int previousYear = book.getPublicationYear();
+            book.setTitle(title);
+            book.setAuthor(author);
+            book.setPublicationYear(publicationYear);
+            try {
+                bookRepository.save(book);
+            } catch (RuntimeException e) {
+                book.setTitle(previousTitle);
+                book.setAuthor(previousAuthor);
+                book.setPublicationYear(previousYear);
+                throw e;
+            }
+            searchIndex.index(book);
+            auditLog.record(AuditEventType.BOOK_UPDATED, isbn, null, null);
+            return book;
+        } finally {
+            isbnLock.unlock();
+        }
     }
 
     public void removeBook(String isbn) {
-        logger.info("Removing book: ISBN={}", isbn);
-        if (!bookRepository.exists(isbn)) {
-            throw new BookNotFoundException("Book not found: " + isbn);
+        logger.debug("Removing book: ISBN={}", isbn);
+        Lock isbnLock = locks.forIsbn(isbn);
+        isbnLock.lock();
+        try {
+            if (!bookRepository.exists(isbn)) {
+                throw new BookNotFoundException("Book not found: " + isbn);
+            }
+            bookRepository.delete(isbn);
+            for (Copy copy : copyRepository.findByIsbn(isbn)) {
+                copyRepository.delete(copy.getBarcode());
+            }
+            searchIndex.remove(isbn);
+        } finally {
+            isbnLock.unlock();
         }
-        bookRepository.delete(isbn);
+        auditLog.record(AuditEventType.BOOK_REMOVED, isbn, null, null);
     }
 
     public Book getBook(String isbn) {
@@ -53,14 +172,60 @@ public class BookService {
         return bookRepository.findAll();
     }
 
+    public long getCatalogueVersion() {
+        return bookRepository.version();
+    }
+
+    public Page<Book> getBookPage(String cursor, int limit) {
+        Page.validateLimit(limit);
+        return bookRepository.findPage(cursor, limit);
+    }
+
+    public void streamBooks(Consumer<Book> sink) {
+        bookRepository.forEachOrdered(sink);
+    }
+
     public List<Book> searchBooks(String searchType, String query) {
-        logger.info("Searching books by {}: {}", searchType, query);
+        return searchPage(searchType, query, 0, Integer.MAX_VALUE);
+    }
+
+    public List<Book> searchBooks(String searchType, String query, int page, int size) {
+        if (size > Page.MAX_LIMIT) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + Page.MAX_LIMIT + ": " + size);
+        }
+        return searchPage(searchType, query, page, size);
+    }
+
+    private List<Book> searchPage(String searchType, String query, int page, int size) {
+        long started = System.nanoTime();
+        try {
+            boolean indexed = indexedSearch && searchIndex.isReady();
+            List<Book> results = searchCache.get(indexed, searchType, query, page, size,
+                    () -> search(indexed, searchType, query, page, size));
+            searchMetrics.recordSuccess(started);
+            searchResultSizes.record(results.size());
+            auditLog.recordRead(AuditEventType.SEARCH, null, searchType, query, results.size());
+            return results;
+        } catch (RuntimeException e) {
+            searchMetrics.recordFailure(started);
+            throw e;
+        }
+    }
+
+    private List<Book> search(boolean indexed, String searchType, String query, int page, int size) {
+        logger.debug("Searching books by {}: {}", searchType, query);
+        if (page < 0 || size <= 0 || (long) page * size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid page request: page=" + page + ", size=" + size);
+        }
         SearchStrategy strategy = switch (searchType.toLowerCase()) {
-            case "title" -> new TitleSearchStrategy();
-            case "author" -> new AuthorSearchStrategy();
-            case "isbn" -> new ISBNSearchStrategy();
+            case "title" -> indexed ? new IndexedSearchStrategy(searchIndex, BookSearchIndex.Field.TITLE)
+                    : new TitleSearchStrategy();
+            case "author" -> indexed ? new IndexedSearchStrategy(searchIndex, BookSearchIndex.Field.AUTHOR)
+                    : new AuthorSearchStrategy();
+            case "isbn" -> indexed ? new IndexedSearchStrategy(searchIndex, BookSearchIndex.Field.ISBN)
+                    : new ISBNSearchStrategy();
             default -> throw new IllegalArgumentException("Invalid search type: " + searchType);
         };
-        return strategy.search(bookRepository.findAll(), query);
+        return strategy.search(bookRepository::findAll, query, page, size);
     }
 }
@@ -1,32 +1,59 @@
 package com.airtribe.library.service;
 
+import com.airtribe.library.audit.AuditEventType;
+import com.airtribe.library.audit.AuditLog;
 import com.airtribe.library.domain.*;
 import com.airtribe.library.exception.*;
+import com.airtribe.library.metrics.MetricsRegistry;
+import com.airtribe.library.metrics.OperationMetrics;
 import com.airtribe.library.patterns.EntityFactory;
+import com.airtribe.library.persistence.WriteAheadLog;
 import com.airtribe.library.repository.*;
+import com.airtribe.library.util.KeyCodec;
+import com.airtribe.library.util.PersistentLongSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 
 @Service
 public class BranchService {
     private static final Logger logger = LoggerFactory.getLogger(BranchService.class);
     private final BranchRepository branchRepository;
     private final BookRepository bookRepository;
+    private final CopyRepository copyRepository;
+    private final BranchInventory branchInventory;
     private final EntityFactory entityFactory;
+    private final StripedLocks locks;
+    private final WriteAheadLog writeAheadLog;
+    private final AuditLog auditLog;
+    private final OperationMetrics transferMetrics;
 
-    public BranchService(BranchRepository branchRepository, BookRepository bookRepository,
-                         EntityFactory entityFactory) {
+    public BranchService(BranchRepository branchRepository, BookRepository bookRepository, CopyRepository copyRepository,
+                         BranchInventory branchInventory, EntityFactory entityFactory, StripedLocks locks, MetricsRegistry metrics,
+                         WriteAheadLog writeAheadLog, AuditLog auditLog) {
         this.branchRepository = branchRepository;
         this.bookRepository = bookRepository;
+        this.copyRepository = copyRepository;
+        this.branchInventory = branchInventory;
         this.entityFactory = entityFactory;
+        this.locks = locks;
+        this.writeAheadLog = writeAheadLog;
+        this.auditLog = auditLog;
+        this.transferMetrics = metrics.operation("branches.transfer");
     }
 
     public Branch createBranch(String name, String location) {
-        logger.info("Creating branch: Name={}, Location={}", name, location);
+        logger.debug("Creating branch: Name={}, Location={}", name, location);
         Branch branch = entityFactory.createBranch(name, location);
-        return branchRepository.save(branch);
+        branchRepository.save(branch);
+        auditLog.record(AuditEventType.BRANCH_CREATED, null, null, branch.getBranchId());
+        return branch;
     }
 
     public Branch getBranch(String branchId) {
@@ -38,43 +65,204 @@ public class BranchService {
         return branchRepository.findAll();
     }
 
+    public Page<Branch> getBranchPage(String cursor, int limit) {
+        Page.validateLimit(limit);
+        return branchRepository.findPage(cursor, limit);
+    }
+
+    public Page<String> getBranchBooksPage(String branchId, String cursor, int limit) {
+        Page.validateLimit(limit);
+        PersistentLongSet holdings = getBranch(branchId).bookIsbnKeys();
+        long[] keys;
+        if (cursor == null) {
+            keys = holdings.first(limit + 1);
+        } else {
+            long after = KeyCodec.ISBN.lookup(cursor);
+            if (after == KeyCodec.NO_KEY) {
+                throw new IllegalArgumentException("Unknown page cursor: " + cursor);
+            }
+            keys = holdings.after(after, limit + 1);
+        }
+        boolean more = keys.length > limit;
+        List<String> isbns = KeyCodec.ISBN.decodeAll(more ? Arrays.copyOf(keys, limit) : keys);
+        return new Page<>(isbns, more ? isbns.get(limit - 1) : null);
+    }
+
+    public BranchInventory.BranchStats getBranchStats(String branchId) {
+        getBranch(branchId);
+        return branchInventory.stats(branchId);
+    }
+
+    public InventorySummary getInventorySummary() {
+        List<BranchInventory.BranchStats> branches = new ArrayList<>();
+        long[] totals = new long[4];
+        branchRepository.forEachOrdered(branch -> {
+            BranchInventory.BranchStats stats = branchInventory.stats(branch.getBranchId());
+            branches.add(stats);
+            totals[0] += stats.total();
+            totals[1] += stats.available();
+            totals[2] += stats.borrowed();
+            totals[3] += stats.reserved();
+        });
+        return new InventorySummary(totals[0], totals[1], totals[2], totals[3], branches);
+    }
+
+    public void streamBranches(Consumer<Branch> sink) {
+        branchRepository.forEachOrdered(sink);
+    }
+
     public void assignBookToBranch(String isbn, String branchId) {
-        logger.info("Assigning book {} to branch {}", isbn, branchId);
+        logger.debug("Assigning book {} to branch {}", isbn, branchId);
         
         Book book = bookRepository.findByIsbn(isbn)
                 .orElseThrow(() -> new BookNotFoundException("Book not found: " + isbn));
         
         Branch branch = getBranch(branchId);
 
-        if (book.getBranchId() != null) {
-            Branch oldBranch = getBranch(book.getBranchId());
-            oldBranch.removeBook(isbn);
-            branchRepository.save(oldBranch);
+        Lock isbnLock = locks.forIsbn(isbn);
+        isbnLock.lock();
+        try {
+            String previousBranchId = book.getBranchId();
+            Branch oldBranch = previousBranchId == null ? null : getBranch(previousBranchId);
+            List<Copy> moved = copyRepository.findByIsbn(isbn).stream()
+                    .filter(copy -> Objects.equals(previousBranchId, copy.getBranchId()))
+                    .toList();
+            boolean held = branch.getBookIsbns().contains(isbn);
+            try {
+                writeAheadLog.atomically(() -> {
+                    if (oldBranch != null) {
+                        oldBranch.removeBook(isbn);
+                        branchRepository.save(oldBranch);
+                    }
+                    for (Copy copy : moved) {
+                        copy.setBranchId(branchId);
+                        copyRepository.save(copy);
+                    }
+                    book.setBranchId(branchId);
+                    bookRepository.save(book);
+                    branch.addBook(isbn);
+                    return branchRepository.save(branch);
+                });
+            } catch (RuntimeException e) {
+                if (!held) {
+                    branch.removeBook(isbn);
+                }
+                if (oldBranch != null) {
+                    oldBranch.addBook(isbn);
+                }
+                moved.forEach(copy -> copy.setBranchId(previousBranchId));
+                book.setBranchId(previousBranchId);
+                throw e;
+            }
+            auditLog.record(AuditEventType.BOOK_ASSIGNED, isbn, null, branchId);
+        } finally {
+            isbnLock.unlock();
         }
+        logger.debug("Book assigned successfully");
+    }
 
-        book.setBranchId(branchId);
-        bookRepository.save(book);
-
-        branch.addBook(isbn);
-        branchRepository.save(branch);
-        logger.info("Book assigned successfully");
+    public void assignNewBooksToBranch(List<Book> books, List<Copy> copies, Branch branch) {
+        Lock branchLock = locks.forBranch(branch.getBranchId());
+        branchLock.lock();
+        try {
+            List<String> added = new ArrayList<>(books.size());
+            for (Book book : books) {
+                book.setBranchId(branch.getBranchId());
+                if (!branch.getBookIsbns().contains(book.getIsbn())) {
+                    added.add(book.getIsbn());
+                }
+            }
+            try {
+                writeAheadLog.atomically(() -> {
+                    bookRepository.saveAll(books);
+                    copyRepository.saveAll(copies);
+                    added.forEach(branch::addBook);
+                    return branchRepository.save(branch);
+                });
+            } catch (RuntimeException e) {
+                added.forEach(branch::removeBook);
+                throw e;
+            }
+        } finally {
+            branchLock.unlock();
+        }
     }
 
     public void transferBook(String isbn, String fromBranchId, String toBranchId) {
-        logger.info("Transferring book {} from {} to {}", isbn, fromBranchId, toBranchId);
+        long started = System.nanoTime();
+        try {
+            transfer(isbn, fromBranchId, toBranchId);
+            transferMetrics.recordSuccess(started);
+        } catch (RuntimeException e) {
+            transferMetrics.recordFailure(started);
+            throw e;
+        }
+    }
+
+    private void transfer(String isbn, String fromBranchId, String toBranchId) {
+        logger.debug("Transferring book {} from {} to {}", isbn, fromBranchId, toBranchId);
         
         Book book = bookRepository.findByIsbn(isbn)
                 .orElseThrow(() -> new BookNotFoundException("Book not found: " + isbn));
 
-        if (!fromBranchId.equals(book.getBranchId())) {
-            throw new IllegalArgumentException("Book is not in the source branch");
-        }
+        Lock isbnLock = locks.forIsbn(isbn);
+        isbnLock.lock();
+        try {
+            List<Copy> atSource = copyRepository.findByIsbn(isbn).stream()
+                    .filter(copy -> fromBranchId.equals(copy.getBranchId()))
+                    .toList();
+            if (atSource.isEmpty()) {
+                throw new IllegalArgumentException("Book is not in the source branch");
+            }
+            Copy copy = atSource.stream()
+                    .filter(Copy::isAvailable)
+                    .findFirst()
+                    .orElseThrow(() -> new BookNotAvailableException("Cannot transfer borrowed book"));
+            Branch target = getBranch(toBranchId);
+            Branch source = atSource.size() == 1 ? getBranch(fromBranchId) : null;
+            boolean retitled = source != null && fromBranchId.equals(book.getBranchId());
+            boolean held = target.getBookIsbns().contains(isbn) && (source == null || !fromBranchId.equals(toBranchId));
 
-        if (book.getStatus() != BookStatus.AVAILABLE) {
-            throw new BookNotAvailableException("Cannot transfer borrowed book");
+            try {
+                writeAheadLog.atomically(() -> {
+                    copy.setBranchId(toBranchId);
+                    copyRepository.save(copy);
+                    if (source != null) {
+                        source.removeBook(isbn);
+                        branchRepository.save(source);
+                        if (retitled) {
+                            book.setBranchId(toBranchId);
+                            bookRepository.save(book);
+                        }
+                    }
+                    if (!held) {
+                        target.addBook(isbn);
+                        branchRepository.save(target);
+                    }
+                    return copy;
+                });
+            } catch (RuntimeException e) {
+                copy.setBranchId(fromBranchId);
+                if (source != null) {
+                    source.addBook(isbn);
+                }
+                if (retitled) {
+                    book.setBranchId(fromBranchId);
+                }
+                if (!held) {
+                    target.removeBook(isbn);
+                }
+                throw e;
+            }
+            auditLog.record(AuditEventType.TRANSFER, isbn, null,
+                    fromBranchId + "->" + toBranchId + " " + copy.getBarcode());
+        } finally {
+            isbnLock.unlock();
         }
+        logger.debug("Book transferred successfully");
+    }
 
-        assignBookToBranch(isbn, toBranchId);
-        logger.info("Book transferred successfully");
+    public record InventorySummary(long total, long available, long borrowed, long reserved,
+                                   List<BranchInventory.BranchStats> branches) {
     }
 }
@@ -0,0 +1,34 @@
+package com.airtribe.library.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImportResult {
+    private final int maxReportedErrors;
+    private long imported;
+    private long failed;
+    private final List<RowError> errors = new ArrayList<>();
+
+    public ImportResult(int maxReportedErrors) {
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public long getImported() { return imported; }
+    public long getFailed() { return failed; }
+    public List<RowError> getErrors() { return errors; }
+    public boolean isErrorsTruncated() { return failed > errors.size(); }
+
+    void recordImported(int count) {
+        imported += count;
+    }
+
+    void recordError(long line, String message) {
+        failed++;
+        if (errors.size() < maxReportedErrors) {
+            errors.add(new RowError(line, message));
+        }
+    }
+
+    public record RowError(long line, String message) {
+    }
+}
@@ -1,36 +1,83 @@
 package com.airtribe.library.service;
 
+import com.airtribe.library.audit.AuditEventType;
+import com.airtribe.library.audit.AuditLog;
 import com.airtribe.library.domain.*;
 import com.airtribe.library.exception.*;
+import com.airtribe.library.metrics.MetricsRegistry;
+import com.airtribe.library.metrics.OperationMetrics;
 import com.airtribe.library.patterns.EntityFactory;
+import com.airtribe.library.persistence.WriteAheadLog;
 import com.airtribe.library.repository.*;
+import com.airtribe.library.util.HistoryLog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import java.time.LocalDate;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
 
 @Service
 public class LoanService {
     private static final Logger logger = LoggerFactory.getLogger(LoanService.class);
     private final LoanRepository loanRepository;
     private final BookRepository bookRepository;
+    private final CopyRepository copyRepository;
     private final PatronRepository patronRepository;
     private final EntityFactory entityFactory;
     private final ReservationService reservationService;
+    private final RecommendationService recommendationService;
+    private final StripedLocks locks;
+    private final WriteAheadLog writeAheadLog;
+    private final AuditLog auditLog;
+    private final OperationMetrics checkoutMetrics;
+    private final OperationMetrics returnMetrics;
+    private final OperationMetrics batchCheckoutMetrics;
+    private final OperationMetrics batchReturnMetrics;
+    private final int maxBatchSize;
 
-    public LoanService(LoanRepository loanRepository, BookRepository bookRepository,
+    public LoanService(LoanRepository loanRepository, BookRepository bookRepository, CopyRepository copyRepository,
                        PatronRepository patronRepository, EntityFactory entityFactory,
-                       ReservationService reservationService) {
+                       ReservationService reservationService, RecommendationService recommendationService,
+                       StripedLocks locks, WriteAheadLog writeAheadLog, MetricsRegistry metrics, AuditLog auditLog,
+                       @Value("${library.loans.max-batch-size:100}") int maxBatchSize) {
         this.loanRepository = loanRepository;
         this.bookRepository = bookRepository;
+        this.copyRepository = copyRepository;
         this.patronRepository = patronRepository;
         this.entityFactory = entityFactory;
         this.reservationService = reservationService;
+        this.recommendationService = recommendationService;
+        this.locks = locks;
+        this.writeAheadLog = writeAheadLog;
+        this.auditLog = auditLog;
+        this.checkoutMetrics = metrics.operation("loans.checkout");
+        this.returnMetrics = metrics.operation("loans.return");
+        this.batchCheckoutMetrics = metrics.operation("loans.checkout-batch");
+        this.batchReturnMetrics = metrics.operation("loans.return-batch");
+        this.maxBatchSize = maxBatchSize;
     }
 
     public Loan checkoutBook(String isbn, String patronId) {
-        logger.info("Checkout request: ISBN={}, PatronID={}", isbn, patronId);
+        return checkoutBook(isbn, patronId, null);
+    }
+
+    public Loan checkoutBook(String isbn, String patronId, String branchId) {
+        long started = System.nanoTime();
+        try {
+            Loan loan = checkout(isbn, patronId, branchId);
+            checkoutMetrics.recordSuccess(started);
+            return loan;
+        } catch (RuntimeException e) {
+            checkoutMetrics.recordFailure(started);
+            throw e;
+        }
+    }
+
+    private Loan checkout(String isbn, String patronId, String branchId) {
+        logger.debug("Checkout request: ISBN={}, PatronID={}, Branch={}", isbn, patronId, branchId);
         
         Book book = bookRepository.findByIsbn(isbn)
                 .orElseThrow(() -> new BookNotFoundException("Book not found: " + isbn));
@@ -38,48 +85,435 @@ public class LoanService {
         Patron patron = patronRepository.findById(patronId)
                 .orElseThrow(() -> new PatronNotFoundException("Patron not found: " + patronId));
 
-        if (book.getStatus() != BookStatus.AVAILABLE) {
-            throw new BookNotAvailableException("Book is not available: " + isbn);
+        Lock isbnLock = locks.forIsbn(isbn);
+        Lock patronLock = locks.forPatron(patronId);
+        isbnLock.lock();
+        patronLock.lock();
+        try {
+            if (patron.getCurrentBorrowedBooks().contains(isbn)) {
+                throw new BookNotAvailableException("Patron already has a copy of: " + isbn);
+            }
+            Copy copy = copyRepository.findAvailable(isbn, branchId)
+                    .orElseThrow(() -> new BookNotAvailableException("Book is not available: " + isbn));
+
+            BookStatus previousStatus = book.getStatus();
+            HistoryLog previousHistory = patron.borrowingHistoryLog();
+            Loan loan;
+            try {
+                loan = writeAheadLog.atomically(() -> {
+                    copy.setStatus(BookStatus.BORROWED);
+                    patron.borrowBook(isbn);
+                    patron.addToBorrowingHistory(isbn);
+                    copyRepository.save(copy);
+                    updateStatus(book, copyRepository.hasAvailableExcept(isbn, copy));
+                    patronRepository.save(patron);
+                    return loanRepository.save(entityFactory.createLoan(isbn, patronId, copy.getBarcode()));
+                });
+            } catch (RuntimeException e) {
+                copy.setStatus(BookStatus.AVAILABLE);
+                book.setStatus(previousStatus);
+                patron.returnBook(isbn);
+                patron.restoreBorrowingHistory(previousHistory);
+                throw e;
+            }
+            recommendationService.recordCheckout(patron, book);
+            auditLog.record(AuditEventType.CHECKOUT, isbn, patronId, loan.getLoanId());
+            logger.debug("Book checked out successfully: LoanID={}, Copy={}", loan.getLoanId(), copy.getBarcode());
+            return loan;
+        } finally {
+            patronLock.unlock();
+            isbnLock.unlock();
+        }
+    }
+
+    public void returnBook(String isbn) {
+        long started = System.nanoTime();
+        try {
+            returnLoan(isbn, () -> {
+                List<Loan> active = loanRepository.findAllActiveByIsbn(isbn);
+                if (active.isEmpty()) {
+                    throw new BookNotFoundException("No active loan found for ISBN: " + isbn);
+                }
+                if (active.size() > 1) {
+                    throw new AmbiguousReturnException(active.size() + " copies of " + isbn
+                            + " are on loan; return by barcode");
+                }
+                return active.get(0);
+            });
+            returnMetrics.recordSuccess(started);
+        } catch (RuntimeException e) {
+            returnMetrics.recordFailure(started);
+            throw e;
+        }
+    }
+
+    public void returnCopy(String barcode) {
+        long started = System.nanoTime();
+        try {
+            Copy copy = copyRepository.findByBarcode(barcode)
+                    .orElseThrow(() -> new BookNotFoundException("Copy not found: " + barcode));
+            returnLoan(copy.getIsbn(), () -> loanRepository.findActiveByBarcode(barcode)
+                    .orElseThrow(() -> new BookNotFoundException("No active loan found for copy: " + barcode)));
+            returnMetrics.recordSuccess(started);
+        } catch (RuntimeException e) {
+            returnMetrics.recordFailure(started);
+            throw e;
         }
+    }
+
+    private void returnLoan(String isbn, Supplier<Loan> activeLoan) {
+        logger.debug("Return request: ISBN={}", isbn);
+
+        Lock isbnLock = locks.forIsbn(isbn);
+        isbnLock.lock();
+        try {
+            Loan loan = activeLoan.get();
 
-        book.setStatus(BookStatus.BORROWED);
-        bookRepository.save(book);
+            Book book = bookRepository.findByIsbn(isbn)
+                    .orElseThrow(() -> new BookNotFoundException("Book not found: " + isbn));
 
-        patron.borrowBook(isbn);
-        patron.addToBorrowingHistory(isbn);
-        patronRepository.save(patron);
+            Patron patron = patronRepository.findById(loan.getPatronId())
+                    .orElseThrow(() -> new PatronNotFoundException("Patron not found: " + loan.getPatronId()));
 
-        Loan loan = entityFactory.createLoan(isbn, patronId);
-        logger.info("Book checked out successfully: LoanID={}", loan.getLoanId());
-        return loanRepository.save(loan);
+            Lock patronLock = locks.forPatron(patron.getPatronId());
+            patronLock.lock();
+            try {
+                writeAheadLog.atomically(() -> {
+                    loan.setReturnDate(LocalDate.now());
+                    loanRepository.save(loan);
+
+                    patron.returnBook(isbn);
+                    patronRepository.save(patron);
+
+                    Optional<Copy> copy = loanedCopy(loan);
+                    copy.ifPresent(returned -> {
+                        returned.setStatus(BookStatus.AVAILABLE);
+                        copyRepository.save(returned);
+                    });
+                    updateStatus(book, copy.isPresent() || copyRepository.hasAvailable(isbn));
+                    return loan;
+                });
+                auditLog.record(AuditEventType.RETURN, isbn, patron.getPatronId(), loan.getLoanId());
+            } finally {
+                patronLock.unlock();
+            }
+
+            reservationService.notifyNextReservation(isbn);
+        } finally {
+            isbnLock.unlock();
+        }
+        logger.debug("Book returned successfully: ISBN={}", isbn);
     }
 
-    public void returnBook(String isbn) {
-        logger.info("Return request: ISBN={}", isbn);
-        
-        Loan loan = loanRepository.findActiveByIsbn(isbn)
-                .orElseThrow(() -> new BookNotFoundException("No active loan found for ISBN: " + isbn));
+    public BatchResult checkoutBatch(String patronId, List<String> isbns, String branchId) {
+        long started = System.nanoTime();
+        try {
+            BatchResult result = checkoutAll(patronId, isbns, branchId);
+            batchCheckoutMetrics.recordSuccess(started);
+            return result;
+        } catch (RuntimeException e) {
+            batchCheckoutMetrics.recordFailure(started);
+            throw e;
+        }
+    }
 
-        Book book = bookRepository.findByIsbn(isbn)
-                .orElseThrow(() -> new BookNotFoundException("Book not found: " + isbn));
+    private BatchResult checkoutAll(String patronId, List<String> isbns, String branchId) {
+        validateBatchSize(isbns);
+        Patron patron = patronRepository.findById(patronId)
+                .orElseThrow(() -> new PatronNotFoundException("Patron not found: " + patronId));
+
+        BatchItem[] results = new BatchItem[isbns.size()];
+        Map<String, Book> books = new HashMap<>();
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < results.length; i++) {
+            String isbn = isbns.get(i);
+            if (isbn == null || isbn.isBlank()) {
+                results[i] = BatchItem.failed(isbn, "ISBN is required");
+            } else if (!seen.add(isbn)) {
+                results[i] = BatchItem.failed(isbn, "Duplicate item in batch");
+            } else {
+                Optional<Book> book = bookRepository.findByIsbn(isbn);
+                if (book.isPresent()) {
+                    books.put(isbn, book.get());
+                } else {
+                    results[i] = BatchItem.failed(isbn, "Book not found: " + isbn);
+                }
+            }
+        }
+
+        List<Lock> held = new ArrayList<>(locks.forIsbns(books.keySet()));
+        held.add(locks.forPatron(patronId));
+        StripedLocks.lockAll(held);
+        try {
+            List<Copy> copies = new ArrayList<>();
+            List<Integer> lent = new ArrayList<>();
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] != null) {
+                    continue;
+                }
+                String isbn = isbns.get(i);
+                if (patron.getCurrentBorrowedBooks().contains(isbn)) {
+                    results[i] = BatchItem.failed(isbn, "Patron already has a copy of: " + isbn);
+                    continue;
+                }
+                Optional<Copy> available = copyRepository.findAvailable(isbn, branchId);
+                if (available.isEmpty()) {
+                    results[i] = BatchItem.failed(isbn, "Book is not available: " + isbn);
+                    continue;
+                }
+                copies.add(available.get());
+                lent.add(i);
+            }
+            if (!copies.isEmpty()) {
+                Map<String, BookStatus> previousStatuses = new HashMap<>();
+                for (Copy copy : copies) {
+                    previousStatuses.put(copy.getIsbn(), books.get(copy.getIsbn()).getStatus());
+                }
+                HistoryLog previousHistory = patron.borrowingHistoryLog();
+                List<Loan> loans;
+                try {
+                    loans = writeAheadLog.atomically(() -> {
+                        List<Loan> created = new ArrayList<>(copies.size());
+                        for (Copy copy : copies) {
+                            copy.setStatus(BookStatus.BORROWED);
+                            patron.borrowBook(copy.getIsbn());
+                            patron.addToBorrowingHistory(copy.getIsbn());
+                            created.add(entityFactory.createLoan(copy.getIsbn(), patronId, copy.getBarcode()));
+                        }
+                        copyRepository.saveAll(copies);
+                        for (Copy copy : copies) {
+                            updateStatus(books.get(copy.getIsbn()),
+                                    copyRepository.hasAvailableExcept(copy.getIsbn(), copy));
+                        }
+                        patronRepository.save(patron);
+                        loanRepository.saveAll(created);
+                        return created;
+                    });
+                } catch (RuntimeException e) {
+                    for (Copy copy : copies) {
+                        copy.setStatus(BookStatus.AVAILABLE);
+                        books.get(copy.getIsbn()).setStatus(previousStatuses.get(copy.getIsbn()));
+                        patron.returnBook(copy.getIsbn());
+                    }
+                    patron.restoreBorrowingHistory(previousHistory);
+                    throw e;
+                }
+                for (int j = 0; j < loans.size(); j++) {
+                    results[lent.get(j)] = BatchItem.of(loans.get(j).getIsbn(), loans.get(j));
+                }
+                for (Loan loan : loans) {
+                    recommendationService.recordCheckout(patron, books.get(loan.getIsbn()));
+                    auditLog.record(AuditEventType.CHECKOUT, loan.getIsbn(), patronId, loan.getLoanId());
+                }
+            }
+        } finally {
+            StripedLocks.unlockAll(held);
+        }
+        BatchResult result = BatchResult.of(results);
+        logger.debug("Batch checkout for {}: {} lent, {} failed", patronId, result.succeeded(), result.failed());
+        return result;
+    }
+
+    public BatchResult returnBatch(List<String> barcodes, List<String> isbns) {
+        long started = System.nanoTime();
+        try {
+            BatchResult result = returnAll(barcodes == null ? List.of() : barcodes, isbns == null ? List.of() : isbns);
+            batchReturnMetrics.recordSuccess(started);
+            return result;
+        } catch (RuntimeException e) {
+            batchReturnMetrics.recordFailure(started);
+            throw e;
+        }
+    }
+
+    private BatchResult returnAll(List<String> barcodes, List<String> isbns) {
+        int size = barcodes.size() + isbns.size();
+        validateBatchSize(size);
+
+        BatchItem[] results = new BatchItem[size];
+        String[] items = new String[size];
+        String[] itemIsbns = new String[size];
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < barcodes.size(); i++) {
+            String barcode = barcodes.get(i);
+            items[i] = barcode;
+            if (barcode == null || barcode.isBlank()) {
+                results[i] = BatchItem.failed(barcode, "Barcode is required");
+            } else if (!seen.add(barcode)) {
+                results[i] = BatchItem.failed(barcode, "Duplicate item in batch");
+            } else {
+                Optional<Copy> copy = copyRepository.findByBarcode(barcode);
+                if (copy.isPresent()) {
+                    itemIsbns[i] = copy.get().getIsbn();
+                } else {
+                    results[i] = BatchItem.failed(barcode, "Copy not found: " + barcode);
+                }
+            }
+        }
+        for (int i = barcodes.size(); i < size; i++) {
+            String isbn = isbns.get(i - barcodes.size());
+            items[i] = isbn;
+            if (isbn == null || isbn.isBlank()) {
+                results[i] = BatchItem.failed(isbn, "ISBN is required");
+            } else {
+                itemIsbns[i] = isbn;
+            }
+        }
 
-        Patron patron = patronRepository.findById(loan.getPatronId())
-                .orElseThrow(() -> new PatronNotFoundException("Patron not found: " + loan.getPatronId()));
+        Set<String> touchedIsbns = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            if (results[i] == null) {
+                touchedIsbns.add(itemIsbns[i]);
+            }
+        }
+        List<Lock> isbnLocks = locks.forIsbns(touchedIsbns);
+        StripedLocks.lockAll(isbnLocks);
+        try {
+            Loan[] loans = new Loan[size];
+            Set<Loan> claimed = new HashSet<>();
+            Map<String, Patron> patrons = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                if (results[i] != null) {
+                    continue;
+                }
+                Loan loan;
+                if (i < barcodes.size()) {
+                    loan = loanRepository.findActiveByBarcode(items[i]).filter(Loan::isActive).orElse(null);
+                } else {
+                    List<Loan> active = loanRepository.findAllActiveByIsbn(items[i]);
+                    if (active.size() > 1) {
+                        results[i] = BatchItem.failed(items[i], active.size() + " copies of " + items[i]
+                                + " are on loan; return by barcode");
+                        continue;
+                    }
+                    loan = active.isEmpty() ? null : active.get(0);
+                }
+                if (loan == null || !claimed.add(loan)) {
+                    results[i] = BatchItem.failed(items[i], "No active loan found for: " + items[i]);
+                    continue;
+                }
+                Optional<Patron> patron = patronRepository.findById(loan.getPatronId());
+                if (patron.isEmpty()) {
+                    claimed.remove(loan);
+                    results[i] = BatchItem.failed(items[i], "Patron not found: " + loan.getPatronId());
+                    continue;
+                }
+                patrons.put(loan.getPatronId(), patron.get());
+                loans[i] = loan;
+            }
 
-        loan.setReturnDate(LocalDate.now());
-        loanRepository.save(loan);
+            Map<String, Integer> returnedCopies = new LinkedHashMap<>();
+            List<Lock> patronLocks = locks.forPatrons(patrons.keySet());
+            StripedLocks.lockAll(patronLocks);
+            try {
+                LocalDate today = LocalDate.now();
+                List<Loan> returned = new ArrayList<>();
+                List<Copy> copies = new ArrayList<>();
+                Set<String> availableAgain = new HashSet<>();
+                for (int i = 0; i < size; i++) {
+                    Loan loan = loans[i];
+                    if (loan == null) {
+                        continue;
+                    }
+                    loan.setReturnDate(today);
+                    returned.add(loan);
+                    patrons.get(loan.getPatronId()).returnBook(loan.getIsbn());
+                    loanedCopy(loan).ifPresent(copy -> {
+                        copy.setStatus(BookStatus.AVAILABLE);
+                        copies.add(copy);
+                        availableAgain.add(copy.getIsbn());
+                    });
+                    returnedCopies.merge(loan.getIsbn(), 1, Integer::sum);
+                    results[i] = BatchItem.of(items[i], loan);
+                }
+                if (!returned.isEmpty()) {
+                    writeAheadLog.atomically(() -> {
+                        loanRepository.saveAll(returned);
+                        for (Patron patron : patrons.values()) {
+                            patronRepository.save(patron);
+                        }
+                        copyRepository.saveAll(copies);
+                        for (String isbn : returnedCopies.keySet()) {
+                            bookRepository.findByIsbn(isbn).ifPresent(book -> updateStatus(book,
+                                    availableAgain.contains(isbn) || copyRepository.hasAvailable(isbn)));
+                        }
+                        return returned;
+                    });
+                    for (Loan loan : returned) {
+                        auditLog.record(AuditEventType.RETURN, loan.getIsbn(), loan.getPatronId(), loan.getLoanId());
+                    }
+                }
+            } finally {
+                StripedLocks.unlockAll(patronLocks);
+            }
 
-        patron.returnBook(isbn);
-        patronRepository.save(patron);
+            reservationService.notifyNextReservations(returnedCopies);
+        } finally {
+            StripedLocks.unlockAll(isbnLocks);
+        }
+        BatchResult result = BatchResult.of(results);
+        logger.debug("Batch return: {} returned, {} failed", result.succeeded(), result.failed());
+        return result;
+    }
 
-        book.setStatus(BookStatus.AVAILABLE);
-        bookRepository.save(book);
+    private void validateBatchSize(List<String> items) {
+        if (items == null) {
+            throw new IllegalArgumentException("Batch items are required");
+        }
+        validateBatchSize(items.size());
+    }
 
-        reservationService.notifyNextReservation(isbn);
-        logger.info("Book returned successfully: ISBN={}", isbn);
+    private void validateBatchSize(int size) {
+        if (size == 0 || size > maxBatchSize) {
+            throw new IllegalArgumentException("Batch must contain between 1 and " + maxBatchSize + " items: " + size);
+        }
+    }
+
+    private Optional<Copy> loanedCopy(Loan loan) {
+        if (loan.getBarcode() != null) {
+            return copyRepository.findByBarcode(loan.getBarcode());
+        }
+        return copyRepository.findByIsbn(loan.getIsbn()).stream()
+                .filter(copy -> copy.getStatus() == BookStatus.BORROWED)
+                .filter(copy -> loanRepository.findActiveByBarcode(copy.getBarcode()).isEmpty())
+                .findFirst();
+    }
+
+    private void updateStatus(Book book, boolean available) {
+        BookStatus status = available ? BookStatus.AVAILABLE : BookStatus.BORROWED;
+        if (book.getStatus() != status) {
+            book.setStatus(status);
+            bookRepository.save(book);
+        }
     }
 
     public List<Loan> getPatronLoans(String patronId) {
         return loanRepository.findByPatronId(patronId);
     }
+
+    public List<Loan> getOverdueLoans() {
+        return loanRepository.findOverdue(LocalDate.now());
+    }
+
+    public record BatchResult(int succeeded, int failed, List<BatchItem> items) {
+        static BatchResult of(BatchItem[] items) {
+            int succeeded = 0;
+            for (BatchItem item : items) {
+                if (item.succeeded()) {
+                    succeeded++;
+                }
+            }
+            return new BatchResult(succeeded, items.length - succeeded, List.of(items));
+        }
+    }
+
+    public record BatchItem(String item, boolean succeeded, String loanId, String barcode, String error) {
+        static BatchItem of(String item, Loan loan) {
+            return new BatchItem(item, true, loan.getLoanId(), loan.getBarcode(), null);
+        }
+
+        static BatchItem failed(String item, String error) {
+            return new BatchItem(item, false, null, null, error);
+        }
+    }
 }
@@ -0,0 +1,164 @@
+package com.airtribe.library.service;
+
+import com.airtribe.library.domain.*;
+import com.airtribe.library.exception.PatronNotFoundException;
+import com.airtribe.library.metrics.MetricsRegistry;
+import com.airtribe.library.metrics.OperationMetrics;
+import com.airtribe.library.patterns.NotificationService;
+import com.airtribe.library.patterns.PatronObserver;
+import com.airtribe.library.repository.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class OverdueService {
+    private static final Logger logger = LoggerFactory.getLogger(OverdueService.class);
+    private static final long NOTIFY_TIMEOUT_MILLIS = 10_000;
+
+    private final LoanRepository loanRepository;
+    private final PatronRepository patronRepository;
+    private final NotificationService notificationService;
+    private final long finePerDay;
+    private final long maxFinePerLoan;
+    private final int[] reminderDays;
+    private final long scanIntervalMinutes;
+    private final OperationMetrics scanMetrics;
+    private LocalDate lastScanned;
+    private ScheduledExecutorService scheduler;
+
+    public OverdueService(LoanRepository loanRepository, PatronRepository patronRepository,
+                          NotificationService notificationService, MetricsRegistry metrics,
+                          @Value("${library.fines.per-day:5}") long finePerDay,
+                          @Value("${library.fines.max-per-loan:200}") long maxFinePerLoan,
+                          @Value("${library.overdue.reminder-days:1,7,14,30}") int[] reminderDays,
+                          @Value("${library.overdue.scan-interval-minutes:60}") long scanIntervalMinutes) {
+        this.loanRepository = loanRepository;
+        this.patronRepository = patronRepository;
+        this.notificationService = notificationService;
+        this.finePerDay = finePerDay;
+        this.maxFinePerLoan = maxFinePerLoan;
+        this.reminderDays = Arrays.stream(reminderDays).filter(days -> days > 0).sorted().distinct().toArray();
+        this.scanIntervalMinutes = scanIntervalMinutes;
+        this.scanMetrics = metrics.operation("loans.overdue-scan");
+        metrics.gauge("loans.overdue", () -> loanRepository.countOverdue(LocalDate.now()));
+    }
+
+    @PostConstruct
+    public void start() {
+        if (scanIntervalMinutes <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "overdue-scanner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::scanQuietly, scanIntervalMinutes, scanIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public synchronized ScanResult runScan(LocalDate today) {
+        if (lastScanned != null && !today.isAfter(lastScanned)) {
+            return new ScanResult(today, 0, 0, 0);
+        }
+        long started = System.nanoTime();
+        Map<String, List<String>> noticesByPatron = new HashMap<>();
+        List<Loan> reminded = new ArrayList<>();
+        for (int level = reminderDays.length; level > 0; level--) {
+            int reached = level;
+            int days = reminderDays[level - 1];
+            LocalDate dueFrom = lastScanned == null ? null : lastScanned.plusDays(1).minusDays(days);
+            loanRepository.forEachActiveDueBetween(dueFrom, today.minusDays(days), loan -> {
+                if (loan.remindersSent() >= reached) {
+                    return;
+                }
+                loan.markReminded(reached);
+                reminded.add(loan);
+                noticesByPatron.computeIfAbsent(loan.getPatronId(), id -> new ArrayList<>())
+                        .add(loan.getIsbn() + " (" + ChronoUnit.DAYS.between(loan.getDueDate(), today)
+                                + " days overdue, fine " + fineFor(loan, today) + ")");
+            });
+        }
+
+        int notified = 0;
+        for (Map.Entry<String, List<String>> entry : noticesByPatron.entrySet()) {
+            Optional<Patron> patron = patronRepository.findById(entry.getKey());
+            if (patron.isEmpty()) {
+                continue;
+            }
+            String message = "Overdue: " + String.join("; ", entry.getValue());
+            if (notificationService.notifyObservers(entry.getKey(), message, NOTIFY_TIMEOUT_MILLIS,
+                    new PatronObserver(entry.getKey(), patron.get().getEmail()))) {
+                notified++;
+            }
+        }
+        loanRepository.saveAll(reminded);
+        lastScanned = today;
+        scanMetrics.recordSuccess(started);
+        logger.info("Overdue scan for {}: {} loans across {} patrons noticed, {} notified in {} ms",
+                today, reminded.size(), noticesByPatron.size(), notified, (System.nanoTime() - started) / 1_000_000);
+        return new ScanResult(today, reminded.size(), noticesByPatron.size(), notified);
+    }
+
+    public long fineFor(Loan loan, LocalDate asOf) {
+        LocalDate end = loan.getReturnDate() != null ? loan.getReturnDate() : asOf;
+        long daysOverdue = ChronoUnit.DAYS.between(loan.getDueDate(), end);
+        if (daysOverdue <= 0) {
+            return 0;
+        }
+        return Math.min(daysOverdue * finePerDay, maxFinePerLoan);
+    }
+
+    public FineSummary getFines(String patronId) {
+        patronRepository.findById(patronId)
+                .orElseThrow(() -> new PatronNotFoundException("Patron not found: " + patronId));
+        LocalDate today = LocalDate.now();
+        List<LoanFine> fines = new ArrayList<>();
+        long total = 0;
+        for (Loan loan : loanRepository.findByPatronId(patronId)) {
+            long fine = fineFor(loan, today);
+            if (fine > 0) {
+                LocalDate end = loan.getReturnDate() != null ? loan.getReturnDate() : today;
+                fines.add(new LoanFine(loan.getLoanId(), loan.getIsbn(), loan.getDueDate(), loan.getReturnDate(),
+                        ChronoUnit.DAYS.between(loan.getDueDate(), end), fine));
+                total += fine;
+            }
+        }
+        fines.sort(Comparator.comparing(LoanFine::dueDate).thenComparing(LoanFine::loanId));
+        return new FineSummary(patronId, total, fines);
+    }
+
+    private void scanQuietly() {
+        try {
+            runScan(LocalDate.now());
+        } catch (RuntimeException e) {
+            logger.error("Overdue scan failed", e);
+        }
+    }
+
+    public record ScanResult(LocalDate date, int loansNoticed, int patrons, int patronsNotified) {
+    }
+
+    public record FineSummary(String patronId, long total, List<LoanFine> loans) {
+    }
+
+    public record LoanFine(String loanId, String isbn, LocalDate dueDate, LocalDate returnDate, long daysOverdue,
+                           long fine) {
+    }
+}
@@ -1,38 +1,52 @@
 package com.airtribe.library.service;
 
+import com.airtribe.library.audit.AuditEventType;
+import com.airtribe.library.audit.AuditLog;
 import com.airtribe.library.domain.Patron;
 import com.airtribe.library.exception.PatronNotFoundException;
 import com.airtribe.library.patterns.EntityFactory;
+import com.airtribe.library.repository.Page;
 import com.airtribe.library.repository.PatronRepository;
+import com.airtribe.library.util.HistoryLog;
+import com.airtribe.library.util.KeyCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class PatronService {
     private static final Logger logger = LoggerFactory.getLogger(PatronService.class);
     private final PatronRepository patronRepository;
     private final EntityFactory entityFactory;
+    private final AuditLog auditLog;
 
-    public PatronService(PatronRepository patronRepository, EntityFactory entityFactory) {
+    public PatronService(PatronRepository patronRepository, EntityFactory entityFactory, AuditLog auditLog) {
         this.patronRepository = patronRepository;
         this.entityFactory = entityFactory;
+        this.auditLog = auditLog;
     }
 
     public Patron addPatron(String name, String email) {
-        logger.info("Adding patron: Name={}, Email={}", name, email);
+        logger.debug("Adding patron: Name={}, Email={}", name, email);
         Patron patron = entityFactory.createPatron(name, email);
-        return patronRepository.save(patron);
+        patronRepository.save(patron);
+        auditLog.record(AuditEventType.PATRON_REGISTERED, null, patron.getPatronId(), null);
+        return patron;
     }
 
     public Patron updatePatron(String patronId, String name, String email) {
-        logger.info("Updating patron: ID={}", patronId);
+        logger.debug("Updating patron: ID={}", patronId);
         Patron patron = patronRepository.findById(patronId)
                 .orElseThrow(() -> new PatronNotFoundException("Patron not found: " + patronId));
         patron.setName(name);
         patron.setEmail(email);
-        return patronRepository.save(patron);
+        patronRepository.save(patron);
+        auditLog.record(AuditEventType.PATRON_UPDATED, null, patronId, null);
+        return patron;
     }
 
     public Patron getPatron(String patronId) {
@@ -44,8 +58,62 @@ public class PatronService {
         return patronRepository.findAll();
     }
 
+    public Page<Patron> getPatronPage(String cursor, int limit) {
+        Page.validateLimit(limit);
+        return patronRepository.findPage(cursor, limit);
+    }
+
+    public void streamPatrons(Consumer<Patron> sink) {
+        patronRepository.forEachOrdered(sink);
+    }
+
     public List<String> getBorrowingHistory(String patronId) {
         Patron patron = getPatron(patronId);
         return patron.getBorrowingHistory();
     }
+
+    public Page<String> getBorrowingHistoryPage(String patronId, String cursor, int limit) {
+        Page.validateLimit(limit);
+        HistoryLog history = getPatron(patronId).borrowingHistoryLog();
+        int from = cursor == null ? 0 : parsePosition(cursor);
+        long[] keys = history.slice(from, limit);
+        int next = from + keys.length;
+        return new Page<>(KeyCodec.ISBN.decodeAll(keys), next < history.size() ? Integer.toString(next) : null);
+    }
+
+    public Page<HistoryEntry> getBorrowingHistoryBetween(String patronId, LocalDate from, LocalDate to, String cursor,
+                                                         int limit) {
+        Page.validateLimit(limit);
+        if (to != null && to.isBefore(from)) {
+            throw new IllegalArgumentException("History range ends before it starts: " + from + " to " + to);
+        }
+        HistoryLog history = getPatron(patronId).borrowingHistoryLog();
+        int start = cursor == null ? 0 : parsePosition(cursor);
+        List<HistoryEntry> entries = new ArrayList<>(Math.min(limit, 64));
+        int[] last = {-1};
+        int matched = history.scan(start, (int) from.toEpochDay(), to == null ? Integer.MAX_VALUE : (int) to.toEpochDay(),
+                limit + 1, (position, key, day) -> {
+                    if (entries.size() < limit) {
+                        entries.add(new HistoryEntry(KeyCodec.ISBN.decode(key), LocalDate.ofEpochDay(day)));
+                        last[0] = position;
+                    }
+                });
+        return new Page<>(entries, matched > limit ? Integer.toString(last[0] + 1) : null);
+    }
+
+    private static int parsePosition(String cursor) {
+        int position;
+        try {
+            position = Integer.parseInt(cursor);
+        } catch (NumberFormatException e) {
+            position = -1;
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException("Invalid history cursor: " + cursor);
+        }
+        return position;
+    }
+
+    public record HistoryEntry(String isbn, LocalDate borrowedOn) {
+    }
 }
@@ -1,55 +1,246 @@
 package com.airtribe.library.service;
 
+import com.airtribe.library.audit.AuditEventType;
+import com.airtribe.library.audit.AuditLog;
 import com.airtribe.library.domain.*;
+import com.airtribe.library.metrics.MetricsRegistry;
+import com.airtribe.library.metrics.OperationMetrics;
 import com.airtribe.library.repository.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class RecommendationService {
     private static final Logger logger = LoggerFactory.getLogger(RecommendationService.class);
+    private static final int MAX_RECOMMENDATIONS = 5;
+    private static final int CO_BORROW_NEIGHBOURS = 10;
+
     private final PatronRepository patronRepository;
     private final BookRepository bookRepository;
+    private final long coBorrowIntervalSeconds;
+    private final int maxHistory;
+    private final OperationMetrics recommendMetrics;
+    private final AuditLog auditLog;
+    private final Map<String, AuthorProfile> profiles = new ConcurrentHashMap<>();
+    private final Map<String, CachedRecommendations> cache = new ConcurrentHashMap<>();
+    private final AtomicLong modelVersion = new AtomicLong();
+    private volatile Map<String, List<String>> coBorrowed = Map.of();
+    private ScheduledExecutorService scheduler;
 
-    public RecommendationService(PatronRepository patronRepository, BookRepository bookRepository) {
+    public RecommendationService(PatronRepository patronRepository, BookRepository bookRepository,
+                                 @Value("${library.recommendations.co-borrow-interval-seconds:300}") long coBorrowIntervalSeconds,
+                                 @Value("${library.recommendations.max-history:50}") int maxHistory,
+                                 MetricsRegistry metrics, AuditLog auditLog) {
         this.patronRepository = patronRepository;
         this.bookRepository = bookRepository;
+        this.coBorrowIntervalSeconds = coBorrowIntervalSeconds;
+        this.maxHistory = maxHistory;
+        this.recommendMetrics = metrics.operation("recommendations.get");
+        this.auditLog = auditLog;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (coBorrowIntervalSeconds <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "co-borrow-model");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, coBorrowIntervalSeconds,
+                coBorrowIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
     }
 
     public List<Book> getRecommendations(String patronId) {
-        logger.info("Generating recommendations for patron: {}", patronId);
-        
+        long started = System.nanoTime();
+        try {
+            List<Book> recommendations = recommendFor(patronId);
+            recommendMetrics.recordSuccess(started);
+            auditLog.recordRead(AuditEventType.RECOMMENDATIONS, patronId, null, null, recommendations.size());
+            return recommendations;
+        } catch (RuntimeException e) {
+            recommendMetrics.recordFailure(started);
+            throw e;
+        }
+    }
+
+    private List<Book> recommendFor(String patronId) {
+        logger.debug("Generating recommendations for patron: {}", patronId);
+
         Patron patron = patronRepository.findById(patronId)
                 .orElseThrow(() -> new RuntimeException("Patron not found: " + patronId));
 
-        List<String> borrowedIsbns = patron.getBorrowingHistory();
-        if (borrowedIsbns.isEmpty()) {
-            return Collections.emptyList();
+        AuthorProfile profile = profiles.computeIfAbsent(patronId, id -> buildProfile(patron));
+        long model = modelVersion.get();
+        CachedRecommendations cached = cache.get(patronId);
+        if (cached != null && cached.isCurrent(profile.version(), model) && allStillCatalogued(cached.books())) {
+            return cached.books();
         }
 
-        Map<String, Integer> authorFrequency = new HashMap<>();
-        for (String isbn : borrowedIsbns) {
-            bookRepository.findByIsbn(isbn).ifPresent(book -> 
-                authorFrequency.merge(book.getAuthor(), 1, Integer::sum)
-            );
-        }
+        List<Book> recommendations = List.copyOf(recommend(profile));
+        cache.put(patronId, new CachedRecommendations(profile.version(), model, recommendations));
+        return recommendations;
+    }
 
-        String favoriteAuthor = authorFrequency.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
+    public void recordCheckout(Patron patron, Book book) {
+        profiles.compute(patron.getPatronId(), (id, profile) -> {
+            if (profile == null) {
+                return buildProfile(patron);
+            }
+            profile.record(book.getIsbn(), book.getAuthor());
+            return profile;
+        });
+        cache.remove(patron.getPatronId());
+    }
+
+    public void refreshCoBorrowModel() {
+        long began = System.nanoTime();
+        Map<String, Map<String, Integer>> pairCounts = new HashMap<>();
+        long[] patrons = new long[1];
+        patronRepository.forEachOrdered(patron -> {
+            List<String> history = patron.getBorrowingHistory();
+            Set<String> recent = new LinkedHashSet<>();
+            for (int i = history.size() - 1; i >= 0 && recent.size() < maxHistory; i--) {
+                recent.add(history.get(i));
+            }
+            if (recent.size() < 2) {
+                return;
+            }
+            patrons[0]++;
+            for (String isbn : recent) {
+                Map<String, Integer> counts = pairCounts.computeIfAbsent(isbn, k -> new HashMap<>());
+                for (String other : recent) {
+                    if (!other.equals(isbn)) {
+                        counts.merge(other, 1, Integer::sum);
+                    }
+                }
+            }
+        });
+
+        Map<String, List<String>> model = new HashMap<>(pairCounts.size() * 2);
+        pairCounts.forEach((isbn, counts) -> model.put(isbn, counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(CO_BORROW_NEIGHBOURS)
                 .map(Map.Entry::getKey)
-                .orElse(null);
+                .toList()));
+        coBorrowed = Collections.unmodifiableMap(model);
+        modelVersion.incrementAndGet();
+        cache.clear();
+        logger.info("Co-borrow model refreshed: {} titles from {} patrons in {} ms",
+                model.size(), patrons[0], (System.nanoTime() - began) / 1_000_000);
+    }
+
+    private void refreshQuietly() {
+        try {
+            refreshCoBorrowModel();
+        } catch (RuntimeException e) {
+            logger.error("Co-borrow model refresh failed", e);
+        }
+    }
+
+    private AuthorProfile buildProfile(Patron patron) {
+        AuthorProfile profile = new AuthorProfile(maxHistory);
+        for (String isbn : patron.getBorrowingHistory()) {
+            profile.record(isbn, bookRepository.findByIsbn(isbn).map(Book::getAuthor).orElse(null));
+        }
+        return profile;
+    }
+
+    private List<Book> recommend(AuthorProfile profile) {
+        Map<String, List<String>> neighbours = coBorrowed;
+        synchronized (profile) {
+            List<Book> recommendations = new ArrayList<>(MAX_RECOMMENDATIONS);
+            Set<String> chosen = new HashSet<>();
+            for (Book book : bookRepository.findByAuthor(profile.favoriteAuthor)) {
+                if (recommendations.size() == MAX_RECOMMENDATIONS) {
+                    return recommendations;
+                }
+                if (!profile.borrowedIsbns.contains(book.getIsbn()) && chosen.add(book.getIsbn())) {
+                    recommendations.add(book);
+                }
+            }
+            Iterator<String> recent = profile.recentIsbns.descendingIterator();
+            while (recent.hasNext() && recommendations.size() < MAX_RECOMMENDATIONS) {
+                for (String isbn : neighbours.getOrDefault(recent.next(), List.of())) {
+                    if (recommendations.size() == MAX_RECOMMENDATIONS) {
+                        break;
+                    }
+                    if (!profile.borrowedIsbns.contains(isbn) && chosen.add(isbn)) {
+                        bookRepository.findByIsbn(isbn).ifPresent(recommendations::add);
+                    }
+                }
+            }
+            return recommendations;
+        }
+    }
+
+    private boolean allStillCatalogued(List<Book> books) {
+        for (Book book : books) {
+            if (!bookRepository.exists(book.getIsbn())) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        if (favoriteAuthor == null) {
-            return Collections.emptyList();
+    private record CachedRecommendations(long profileVersion, long modelVersion, List<Book> books) {
+        boolean isCurrent(long currentProfileVersion, long currentModelVersion) {
+            return profileVersion == currentProfileVersion && modelVersion == currentModelVersion;
         }
+    }
 
-        return bookRepository.findAll().stream()
-                .filter(book -> book.getAuthor().equals(favoriteAuthor))
-                .filter(book -> !borrowedIsbns.contains(book.getIsbn()))
-                .limit(5)
-                .collect(Collectors.toList());
+    private static final class AuthorProfile {
+        private final int maxRecent;
+        private final Map<String, Integer> authorCounts = new HashMap<>();
+        private final Set<String> borrowedIsbns = new HashSet<>();
+        private final ArrayDeque<String> recentIsbns = new ArrayDeque<>();
+        private String favoriteAuthor;
+        private int favoriteCount;
+        private long version;
+
+        AuthorProfile(int maxRecent) {
+            this.maxRecent = maxRecent;
+        }
+
+        synchronized void record(String isbn, String author) {
+            borrowedIsbns.add(isbn);
+            recentIsbns.remove(isbn);
+            recentIsbns.addLast(isbn);
+            if (recentIsbns.size() > maxRecent) {
+                recentIsbns.removeFirst();
+            }
+            if (author != null) {
+                int count = authorCounts.merge(author, 1, Integer::sum);
+                if (count > favoriteCount || (count == favoriteCount && author.compareTo(favoriteAuthor) < 0)) {
+                    favoriteAuthor = author;
+                    favoriteCount = count;
+                }
+            }
+            version++;
+        }
+
+        synchronized long version() {
+            return version;
+        }
     }
 }
@@ -1,13 +1,19 @@
 package com.airtribe.library.service;
 
+import com.airtribe.library.audit.AuditEventType;
+import com.airtribe.library.audit.AuditLog;
 import com.airtribe.library.domain.*;
 import com.airtribe.library.exception.*;
+import com.airtribe.library.metrics.MetricsRegistry;
+import com.airtribe.library.metrics.OperationMetrics;
 import com.airtribe.library.patterns.*;
 import com.airtribe.library.repository.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
 
 @Service
 public class ReservationService {
@@ -17,20 +23,39 @@ public class ReservationService {
     private final PatronRepository patronRepository;
     private final EntityFactory entityFactory;
     private final NotificationService notificationService;
-    private final Map<String, PatronObserver> patronObservers = new HashMap<>();
+    private final StripedLocks locks;
+    private final AuditLog auditLog;
+    private final OperationMetrics reserveMetrics;
+    private final Map<String, PatronObserver> patronObservers = new ConcurrentHashMap<>();
 
     public ReservationService(ReservationRepository reservationRepository, BookRepository bookRepository,
                               PatronRepository patronRepository, EntityFactory entityFactory,
-                              NotificationService notificationService) {
+                              NotificationService notificationService, StripedLocks locks,
+                              MetricsRegistry metrics, AuditLog auditLog) {
         this.reservationRepository = reservationRepository;
         this.bookRepository = bookRepository;
         this.patronRepository = patronRepository;
         this.entityFactory = entityFactory;
         this.notificationService = notificationService;
+        this.locks = locks;
+        this.auditLog = auditLog;
+        this.reserveMetrics = metrics.operation("reservations.reserve");
     }
 
     public Reservation reserveBook(String isbn, String patronId) {
-        logger.info("Reservation request: ISBN={}, PatronID={}", isbn, patronId);
+        long started = System.nanoTime();
+        try {
+            Reservation reservation = reserve(isbn, patronId);
+            reserveMetrics.recordSuccess(started);
+            return reservation;
+        } catch (RuntimeException e) {
+            reserveMetrics.recordFailure(started);
+            throw e;
+        }
+    }
+
+    private Reservation reserve(String isbn, String patronId) {
+        logger.debug("Reservation request: ISBN={}, PatronID={}", isbn, patronId);
         
         Book book = bookRepository.findByIsbn(isbn)
                 .orElseThrow(() -> new BookNotFoundException("Book not found: " + isbn));
@@ -38,34 +63,112 @@ public class ReservationService {
         Patron patron = patronRepository.findById(patronId)
                 .orElseThrow(() -> new PatronNotFoundException("Patron not found: " + patronId));
 
-        if (book.getStatus() == BookStatus.AVAILABLE) {
-            throw new IllegalArgumentException("Book is available, no need to reserve");
-        }
+        Lock isbnLock = locks.forIsbn(isbn);
+        isbnLock.lock();
+        try {
+            if (book.getStatus() == BookStatus.AVAILABLE) {
+                throw new IllegalArgumentException("Book is available, no need to reserve");
+            }
 
-        Reservation reservation = entityFactory.createReservation(isbn, patronId);
-        
-        PatronObserver observer = patronObservers.computeIfAbsent(patronId,
-                id -> new PatronObserver(patronId, patron.getEmail()));
-        notificationService.attach(observer);
+            Reservation reservation = entityFactory.createReservation(isbn, patronId);
+
+            PatronObserver observer = patronObservers.computeIfAbsent(patronId,
+                    id -> new PatronObserver(patronId, patron.getEmail()));
+            notificationService.attach(patronId, observer);
 
-        logger.info("Book reserved successfully: ReservationID={}", reservation.getReservationId());
-        return reservationRepository.save(reservation);
+            reservationRepository.save(reservation);
+            auditLog.record(AuditEventType.RESERVE, isbn, patronId, reservation.getReservationId());
+            logger.debug("Book reserved successfully: ReservationID={}", reservation.getReservationId());
+            return reservation;
+        } finally {
+            isbnLock.unlock();
+        }
     }
 
     public void notifyNextReservation(String isbn) {
-        List<Reservation> activeReservations = reservationRepository.findActiveByIsbn(isbn);
-        if (!activeReservations.isEmpty()) {
-            Reservation nextReservation = activeReservations.get(0);
-            String message = String.format("Book %s is now available for your reservation", isbn);
-            
-            PatronObserver observer = patronObservers.get(nextReservation.getPatronId());
-            if (observer != null) {
-                notificationService.notifyObservers(message);
+        reservationRepository.findNextActiveByIsbn(isbn).ifPresent(nextReservation -> {
+            String message = "Book " + isbn + " is now available for your reservation";
+            if (notifyPatron(nextReservation.getPatronId(), message)) {
+                fulfil(nextReservation);
+            } else {
+                logger.warn("Reservation {} stays active: notice to patron {} was not accepted",
+                        nextReservation.getReservationId(), nextReservation.getPatronId());
+            }
+        });
+    }
+
+    public int notifyNextReservations(Map<String, Integer> returnedCopies) {
+        Map<String, List<Reservation>> availableByPatron = new LinkedHashMap<>();
+        returnedCopies.forEach((isbn, copies) -> {
+            for (Reservation reservation : reservationRepository.findNextActiveByIsbn(isbn, copies)) {
+                availableByPatron.computeIfAbsent(reservation.getPatronId(), id -> new ArrayList<>()).add(reservation);
+            }
+        });
+        int notified = 0;
+        for (Map.Entry<String, List<Reservation>> entry : availableByPatron.entrySet()) {
+            List<Reservation> reservations = entry.getValue();
+            String message = reservations.size() == 1
+                    ? "Book " + reservations.get(0).getIsbn() + " is now available for your reservation"
+                    : "Books " + String.join(", ", reservations.stream().map(Reservation::getIsbn).toList())
+                            + " are now available for your reservations";
+            if (notifyPatron(entry.getKey(), message)) {
+                reservations.forEach(this::fulfil);
+                notified++;
+            } else {
+                logger.warn("{} reservations of patron {} stay active: notice was not accepted",
+                        reservations.size(), entry.getKey());
             }
-            
-            nextReservation.setStatus(ReservationStatus.FULFILLED);
-            reservationRepository.save(nextReservation);
         }
+        return notified;
+    }
+
+    private boolean notifyPatron(String patronId, String message) {
+        PatronObserver fallback = patronRepository.findById(patronId)
+                .map(patron -> new PatronObserver(patronId, patron.getEmail()))
+                .orElse(null);
+        return notificationService.notifyObservers(patronId, message, fallback);
+    }
+
+    private void fulfil(Reservation reservation) {
+        reservation.setStatus(ReservationStatus.FULFILLED);
+        reservationRepository.save(reservation);
+        auditLog.record(AuditEventType.RESERVATION_FULFILLED, reservation.getIsbn(), reservation.getPatronId(),
+                reservation.getReservationId());
+    }
+
+    public void cancelReservation(String reservationId) {
+        logger.debug("Cancelling reservation: ReservationID={}", reservationId);
+        Reservation reservation = getReservation(reservationId);
+        Lock isbnLock = locks.forIsbn(reservation.getIsbn());
+        isbnLock.lock();
+        try {
+            if (reservation.getStatus() != ReservationStatus.ACTIVE) {
+                throw new IllegalArgumentException("Reservation is not active: " + reservationId);
+            }
+            reservation.setStatus(ReservationStatus.CANCELLED);
+            reservationRepository.save(reservation);
+            auditLog.record(AuditEventType.RESERVATION_CANCELLED, reservation.getIsbn(), reservation.getPatronId(),
+                    reservationId);
+        } finally {
+            isbnLock.unlock();
+        }
+    }
+
+    public int getQueuePosition(String reservationId) {
+        Reservation reservation = getReservation(reservationId);
+        if (reservation.getStatus() != ReservationStatus.ACTIVE) {
+            throw new IllegalArgumentException("Reservation is not active: " + reservationId);
+        }
+        return reservationRepository.findQueuePosition(reservation);
+    }
+
+    public int getQueueLength(String isbn) {
+        return reservationRepository.countActiveByIsbn(isbn);
+    }
+
+    public Reservation getReservation(String reservationId) {
+        return reservationRepository.findById(reservationId)
+                .orElseThrow(() -> new ReservationNotFoundException("Reservation not found: " + reservationId));
     }
 
     public List<Reservation> getReservationsByBook(String isbn) {
@@ -0,0 +1,204 @@
+package com.airtribe.library.service;
+
+import com.airtribe.library.domain.Book;
+import com.airtribe.library.metrics.MetricsRegistry;
+import com.airtribe.library.repository.BookSearchIndex;
+import com.airtribe.library.repository.Page;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+@Component
+public class SearchResultCache {
+    private static final int MAX_PRECISE_CHANGES = 64;
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final int maxCachedPage;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public SearchResultCache(BookSearchIndex searchIndex, MetricsRegistry metrics,
+                             @Value("${library.search.cache-max-results:65536}") int maxResults) {
+        int stripeResults = Math.max(0, maxResults) / STRIPES;
+        this.maxCachedPage = Math.min(Page.MAX_LIMIT, stripeResults / 4);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeResults);
+        }
+        searchIndex.subscribe(this::invalidate);
+        metrics.gauge("books.search.cache-hits", hits::sum);
+        metrics.gauge("books.search.cache-misses", misses::sum);
+        metrics.gauge("books.search.cache-invalidations", invalidations::sum);
+        metrics.gauge("books.search.cache-entries", this::size);
+        metrics.gauge("books.search.cache-results", this::cachedResults);
+    }
+
+    public List<Book> get(boolean indexed, String searchType, String query, int page, int size,
+                          Supplier<List<Book>> search) {
+        if (size > maxCachedPage) {
+            return search.get();
+        }
+        String type = searchType.toLowerCase(Locale.ROOT);
+        Key key = new Key(indexed, type, "isbn".equals(type) ? query : normalize(query), page, size);
+        Stripe stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+        Entry ticket = new Entry();
+        List<Book> cached = stripe.lookup(key, ticket);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        List<Book> results = null;
+        try {
+            results = Collections.unmodifiableList(new ArrayList<>(search.get()));
+            return results;
+        } finally {
+            stripe.settle(key, ticket, results);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    public long cachedResults() {
+        long results = 0;
+        for (Stripe stripe : stripes) {
+            results += stripe.results();
+        }
+        return results;
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    private void invalidate(List<BookSearchIndex.Change> changes) {
+        if (changes.size() > MAX_PRECISE_CHANGES) {
+            for (Stripe stripe : stripes) {
+                invalidations.add(stripe.clear());
+            }
+            return;
+        }
+        for (Stripe stripe : stripes) {
+            invalidations.add(stripe.invalidate(changes));
+        }
+    }
+
+    private static boolean affects(Key key, BookSearchIndex.Change change) {
+        return switch (key.type()) {
+            case "title" -> matches(change.previousTitle(), key.query()) || matches(change.title(), key.query());
+            case "author" -> matches(change.previousAuthor(), key.query()) || matches(change.author(), key.query());
+            case "isbn" -> change.isbn().equals(key.query());
+            default -> true;
+        };
+    }
+
+    private static boolean matches(String normalizedValue, String normalizedQuery) {
+        return normalizedValue != null && normalizedValue.contains(normalizedQuery);
+    }
+
+    private static String normalize(String query) {
+        return query == null ? "" : query.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Stripe {
+        private final int maxResults;
+        private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private int results;
+
+        Stripe(int maxResults) {
+            this.maxResults = maxResults;
+        }
+
+        synchronized List<Book> lookup(Key key, Entry ticket) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.results != null) {
+                return entry.results;
+            }
+            remove(key);
+            entries.put(key, ticket);
+            return null;
+        }
+
+        synchronized void settle(Key key, Entry ticket, List<Book> settled) {
+            if (entries.get(key) != ticket) {
+                return;
+            }
+            if (settled == null || ticket.invalidated) {
+                entries.remove(key);
+                return;
+            }
+            ticket.results = settled;
+            ticket.weight = Math.max(1, settled.size());
+            results += ticket.weight;
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (results > maxResults && eldest.hasNext()) {
+                Entry evicted = eldest.next();
+                evicted.invalidated = true;
+                results -= evicted.weight;
+                eldest.remove();
+            }
+        }
+
+        synchronized int invalidate(List<BookSearchIndex.Change> changes) {
+            int invalidated = 0;
+            Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Key, Entry> cached = iterator.next();
+                for (BookSearchIndex.Change change : changes) {
+                    if (affects(cached.getKey(), change)) {
+                        cached.getValue().invalidated = true;
+                        results -= cached.getValue().weight;
+                        iterator.remove();
+                        invalidated++;
+                        break;
+                    }
+                }
+            }
+            return invalidated;
+        }
+
+        synchronized int clear() {
+            int cleared = entries.size();
+            entries.values().forEach(entry -> entry.invalidated = true);
+            entries.clear();
+            results = 0;
+            return cleared;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        synchronized int results() {
+            return results;
+        }
+
+        private void remove(Key key) {
+            Entry previous = entries.remove(key);
+            if (previous != null) {
+                previous.invalidated = true;
+                results -= previous.weight;
+            }
+        }
+    }
+
+    private record Key(boolean indexed, String type, String query, int page, int size) {
+    }
+
+    private static final class Entry {
+        private List<Book> results;
+        private int weight;
+        private boolean invalidated;
+    }
+}
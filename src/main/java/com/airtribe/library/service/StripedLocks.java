@@ -0,0 +1,84 @@
+package com.airtribe.library.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Component
+public class StripedLocks {
+    private final Lock[] isbnLocks;
+    private final Lock[] patronLocks;
+    private final Lock[] branchLocks;
+    private final int mask;
+
+    public StripedLocks(@Value("${library.locks.stripes:1024}") int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.isbnLocks = newStripes(size);
+        this.patronLocks = newStripes(size);
+        this.branchLocks = newStripes(size);
+        this.mask = size - 1;
+    }
+
+    public Lock forIsbn(String isbn) {
+        return isbnLocks[stripe(isbn)];
+    }
+
+    public Lock forPatron(String patronId) {
+        return patronLocks[stripe(patronId)];
+    }
+
+    public Lock forBranch(String branchId) {
+        return branchLocks[stripe(branchId)];
+    }
+
+    public List<Lock> forIsbns(Collection<String> isbns) {
+        return ordered(isbnLocks, isbns);
+    }
+
+    public List<Lock> forPatrons(Collection<String> patronIds) {
+        return ordered(patronLocks, patronIds);
+    }
+
+    public static void lockAll(List<Lock> ordered) {
+        for (int i = 0; i < ordered.size(); i++) {
+            try {
+                ordered.get(i).lock();
+            } catch (RuntimeException e) {
+                unlockAll(ordered.subList(0, i));
+                throw e;
+            }
+        }
+    }
+
+    public static void unlockAll(List<Lock> ordered) {
+        for (int i = ordered.size() - 1; i >= 0; i--) {
+            ordered.get(i).unlock();
+        }
+    }
+
+    int stripe(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private List<Lock> ordered(Lock[] stripes, Collection<String> keys) {
+        int[] indexes = keys.stream().mapToInt(this::stripe).sorted().distinct().toArray();
+        List<Lock> ordered = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            ordered.add(stripes[index]);
+        }
+        return ordered;
+    }
+
+    private static Lock[] newStripes(int size) {
+        Lock[] locks = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+}
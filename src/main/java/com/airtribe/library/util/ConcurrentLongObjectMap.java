@@ -0,0 +1,121 @@
+package com.airtribe.library.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.function.UnaryOperator;
+
+public final class ConcurrentLongObjectMap<V> {
+    private static final int SEGMENTS = 64;
+
+    private final LongObjectHashMap<V>[] segments;
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongObjectMap() {
+        segments = new LongObjectHashMap[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new LongObjectHashMap<>();
+        }
+    }
+
+    public V get(long key) {
+        LongObjectHashMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    public V put(long key, V value) {
+        LongObjectHashMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.put(key, value);
+        }
+    }
+
+    public V computeIfAbsent(long key, LongFunction<? extends V> factory) {
+        LongObjectHashMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.computeIfAbsent(key, factory);
+        }
+    }
+
+    public V compute(long key, UnaryOperator<V> remapping) {
+        LongObjectHashMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            V updated = remapping.apply(segment.get(key));
+            if (updated == null) {
+                segment.remove(key);
+            } else {
+                segment.put(key, updated);
+            }
+            return updated;
+        }
+    }
+
+    public V computeIfPresent(long key, UnaryOperator<V> remapping) {
+        LongObjectHashMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            V current = segment.get(key);
+            if (current == null) {
+                return null;
+            }
+            V updated = remapping.apply(current);
+            if (updated == null) {
+                segment.remove(key);
+            } else if (updated != current) {
+                segment.put(key, updated);
+            }
+            return updated;
+        }
+    }
+
+    public V remove(long key) {
+        LongObjectHashMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.remove(key);
+        }
+    }
+
+    public boolean remove(long key, V expected) {
+        LongObjectHashMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            if (segment.get(key) != expected) {
+                return false;
+            }
+            segment.remove(key);
+            return true;
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (LongObjectHashMap<V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public List<V> values() {
+        List<V> values = new ArrayList<>();
+        forEachValue(values::add);
+        return values;
+    }
+
+    public void forEachValue(Consumer<? super V> action) {
+        for (LongObjectHashMap<V> segment : segments) {
+            List<V> snapshot;
+            synchronized (segment) {
+                snapshot = new ArrayList<>(segment.size());
+                segment.forEachValue(snapshot::add);
+            }
+            snapshot.forEach(action);
+        }
+    }
+
+    private LongObjectHashMap<V> segmentFor(long key) {
+        return segments[(Hashing.mix(key) >>> 26) & (SEGMENTS - 1)];
+    }
+}
@@ -0,0 +1,37 @@
+package com.airtribe.library.util;
+
+final class Hashing {
+
+    private Hashing() {
+    }
+
+    static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    static void shiftBack(long[] keys, Object[] values, int removed) {
+        int mask = keys.length - 1;
+        int gap = removed;
+        int slot = removed;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == KeyCodec.NO_KEY) {
+                break;
+            }
+            int home = mix(key) & mask;
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = key;
+                if (values != null) {
+                    values[gap] = values[slot];
+                }
+                gap = slot;
+            }
+        }
+        keys[gap] = KeyCodec.NO_KEY;
+        if (values != null) {
+            values[gap] = null;
+        }
+    }
+}
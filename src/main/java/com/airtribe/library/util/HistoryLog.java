@@ -0,0 +1,472 @@
+package com.airtribe.library.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+public final class HistoryLog {
+    public static final int NO_DAY = Integer.MIN_VALUE;
+    public static final HistoryLog EMPTY = new HistoryLog(new Segment[0], 0, new long[0], new int[0], new AtomicInteger(), 0);
+
+    private final Segment[] segments;
+    private final int sealed;
+    private final long[] keys;
+    private final int[] days;
+    private final AtomicInteger claimed;
+    private final int hotSize;
+
+    private HistoryLog(Segment[] segments, int sealed, long[] keys, int[] days, AtomicInteger claimed, int hotSize) {
+        this.segments = segments;
+        this.sealed = sealed;
+        this.keys = keys;
+        this.days = days;
+        this.claimed = claimed;
+        this.hotSize = hotSize;
+    }
+
+    public HistoryLog with(long key, int day) {
+        if (hotSize < keys.length && claimed.compareAndSet(hotSize, hotSize + 1)) {
+            keys[hotSize] = key;
+            days[hotSize] = day;
+            return new HistoryLog(segments, sealed, keys, days, claimed, hotSize + 1);
+        }
+        int capacity = Math.max(8, hotSize + (hotSize >> 1) + 1);
+        long[] grownKeys = Arrays.copyOf(keys, capacity);
+        int[] grownDays = Arrays.copyOf(days, capacity);
+        grownKeys[hotSize] = key;
+        grownDays[hotSize] = day;
+        return new HistoryLog(segments, sealed, grownKeys, grownDays, new AtomicInteger(hotSize + 1), hotSize + 1);
+    }
+
+    public HistoryLog compact(int hotEntries, int warmSegments, ColdStore coldStore) {
+        boolean seal = hotSize >= Math.max(1, hotEntries);
+        int resident = seal ? 1 : 0;
+        for (Segment segment : segments) {
+            if (!segment.isSpilled()) {
+                resident++;
+            }
+        }
+        int toSpill = coldStore == null ? 0 : Math.max(0, resident - Math.max(0, warmSegments));
+        if (!seal && toSpill == 0) {
+            return this;
+        }
+        Segment[] next = Arrays.copyOf(segments, segments.length + (seal ? 1 : 0));
+        if (seal) {
+            next[segments.length] = Segment.encode(sealed, keys, days, 0, hotSize);
+        }
+        for (int i = 0; i < next.length && toSpill > 0; i++) {
+            if (!next[i].isSpilled()) {
+                next[i] = next[i].spill(coldStore);
+                toSpill--;
+            }
+        }
+        return seal
+                ? new HistoryLog(next, sealed + hotSize, new long[0], new int[0], new AtomicInteger(), 0)
+                : new HistoryLog(next, sealed, keys, days, claimed, hotSize);
+    }
+
+    public long get(int index) {
+        checkIndex(index);
+        if (index >= sealed) {
+            return keys[index - sealed];
+        }
+        Segment segment = segments[segmentFor(index)];
+        return segment.decodeKeys()[index - segment.start];
+    }
+
+    public int size() {
+        return sealed + hotSize;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int segmentCount() {
+        return segments.length;
+    }
+
+    public int spilledSegmentCount() {
+        int spilled = 0;
+        for (Segment segment : segments) {
+            if (segment.isSpilled()) {
+                spilled++;
+            }
+        }
+        return spilled;
+    }
+
+    public void forEach(LongConsumer action) {
+        for (Segment segment : segments) {
+            for (long key : segment.decodeKeys()) {
+                action.accept(key);
+            }
+        }
+        for (int i = 0; i < hotSize; i++) {
+            action.accept(keys[i]);
+        }
+    }
+
+    public long[] slice(int from, int limit) {
+        int start = Math.min(Math.max(0, from), size());
+        long[] slice = new long[Math.min(limit, size() - start)];
+        int filled = 0;
+        for (int s = start < sealed ? segmentFor(start) : segments.length; s < segments.length && filled < slice.length; s++) {
+            Segment segment = segments[s];
+            long[] decoded = segment.decodeKeys();
+            int offset = start + filled - segment.start;
+            int take = Math.min(decoded.length - offset, slice.length - filled);
+            System.arraycopy(decoded, offset, slice, filled, take);
+            filled += take;
+        }
+        if (filled < slice.length) {
+            System.arraycopy(keys, start + filled - sealed, slice, filled, slice.length - filled);
+        }
+        return slice;
+    }
+
+    public int scan(int from, int fromDay, int toDay, int limit, EntryConsumer consumer) {
+        int start = Math.min(Math.max(0, from), size());
+        int matched = 0;
+        for (int s = start < sealed ? segmentFor(start) : segments.length; s < segments.length && matched < limit; s++) {
+            Segment segment = segments[s];
+            if (segment.maxDay < fromDay || segment.minDay > toDay) {
+                continue;
+            }
+            long[] segmentKeys = new long[segment.count];
+            int[] segmentDays = new int[segment.count];
+            segment.decode(segmentKeys, segmentDays);
+            for (int i = Math.max(0, start - segment.start); i < segment.count && matched < limit; i++) {
+                if (segmentDays[i] >= fromDay && segmentDays[i] <= toDay) {
+                    consumer.accept(segment.start + i, segmentKeys[i], segmentDays[i]);
+                    matched++;
+                }
+            }
+        }
+        for (int i = Math.max(0, start - sealed); i < hotSize && matched < limit; i++) {
+            if (days[i] >= fromDay && days[i] <= toDay) {
+                consumer.accept(sealed + i, keys[i], days[i]);
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    public HistoryLog appendFrom(HistoryLog tail, int from) {
+        HistoryLog[] appended = {this};
+        tail.scan(from, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                (position, key, day) -> appended[0] = appended[0].with(key, day));
+        return appended[0];
+    }
+
+    public List<String> asStrings(KeyCodec codec) {
+        return new StringView(this, codec);
+    }
+
+    public void writeTo(DataOutput out, KeyCodec codec) throws IOException {
+        out.writeInt(segments.length);
+        for (Segment segment : segments) {
+            if (segment.portable) {
+                writeHeader(out, segment.count, segment.minDay, segment.maxDay, true);
+                byte[] bytes = segment.bytes();
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            } else {
+                long[] segmentKeys = new long[segment.count];
+                int[] segmentDays = new int[segment.count];
+                segment.decode(segmentKeys, segmentDays);
+                writeEntries(out, segmentKeys, segmentDays, segment.count, codec);
+            }
+        }
+        writeEntries(out, keys, days, hotSize, codec);
+    }
+
+    public void writeTailTo(DataOutput out, int from, KeyCodec codec) throws IOException {
+        int start = Math.min(Math.max(0, from), size());
+        long[] tailKeys = new long[size() - start];
+        int[] tailDays = new int[tailKeys.length];
+        scan(start, Integer.MIN_VALUE, Integer.MAX_VALUE, tailKeys.length, (position, key, day) -> {
+            tailKeys[position - start] = key;
+            tailDays[position - start] = day;
+        });
+        out.writeInt(0);
+        writeEntries(out, tailKeys, tailDays, tailKeys.length, codec);
+    }
+
+    public static HistoryLog readFrom(DataInput in, KeyCodec codec) throws IOException {
+        Segment[] segments = new Segment[in.readInt()];
+        int sealed = 0;
+        for (int i = 0; i < segments.length; i++) {
+            int count = in.readInt();
+            int minDay = in.readInt();
+            int maxDay = in.readInt();
+            if (in.readBoolean()) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                segments[i] = new Resident(sealed, count, minDay, maxDay, true, bytes);
+            } else {
+                long[] segmentKeys = new long[count];
+                int[] segmentDays = new int[count];
+                readEntries(in, segmentKeys, segmentDays, count, codec);
+                segments[i] = Segment.encode(sealed, segmentKeys, segmentDays, 0, count);
+            }
+            sealed += count;
+        }
+        int hotSize = in.readInt();
+        in.readInt();
+        in.readInt();
+        boolean portable = in.readBoolean();
+        long[] keys = new long[hotSize];
+        int[] days = new int[hotSize];
+        if (portable) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            Segment.decode(bytes, keys, days, hotSize);
+        } else {
+            readEntries(in, keys, days, hotSize, codec);
+        }
+        return new HistoryLog(segments, sealed, keys, days, new AtomicInteger(hotSize), hotSize);
+    }
+
+    private static void writeEntries(DataOutput out, long[] keys, int[] days, int count, KeyCodec codec)
+            throws IOException {
+        Segment block = Segment.encode(0, keys, days, 0, count);
+        writeHeader(out, count, block.minDay, block.maxDay, block.portable);
+        if (block.portable) {
+            byte[] bytes = block.bytes();
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            out.writeUTF(codec.decode(keys[i]));
+            out.writeInt(days[i]);
+        }
+    }
+
+    private static void readEntries(DataInput in, long[] keys, int[] days, int count, KeyCodec codec)
+            throws IOException {
+        for (int i = 0; i < count; i++) {
+            keys[i] = codec.encode(in.readUTF());
+            days[i] = in.readInt();
+        }
+    }
+
+    private static void writeHeader(DataOutput out, int count, int minDay, int maxDay, boolean portable)
+            throws IOException {
+        out.writeInt(count);
+        out.writeInt(minDay);
+        out.writeInt(maxDay);
+        out.writeBoolean(portable);
+    }
+
+    private int segmentFor(int index) {
+        int low = 0;
+        int high = segments.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (segments[mid].start <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size());
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int position, long key, int day);
+    }
+
+    public interface ColdStore {
+        long append(byte[] data);
+
+        byte[] read(long position, int length);
+    }
+
+    private abstract static class Segment {
+        final int start;
+        final int count;
+        final int minDay;
+        final int maxDay;
+        final boolean portable;
+
+        Segment(int start, int count, int minDay, int maxDay, boolean portable) {
+            this.start = start;
+            this.count = count;
+            this.minDay = minDay;
+            this.maxDay = maxDay;
+            this.portable = portable;
+        }
+
+        abstract byte[] bytes();
+
+        abstract boolean isSpilled();
+
+        Segment spill(ColdStore coldStore) {
+            byte[] bytes = bytes();
+            return new Spilled(start, count, minDay, maxDay, portable, coldStore, coldStore.append(bytes), bytes.length);
+        }
+
+        long[] decodeKeys() {
+            long[] decoded = new long[count];
+            decode(decoded, new int[count]);
+            return decoded;
+        }
+
+        void decode(long[] keys, int[] days) {
+            decode(bytes(), keys, days, count);
+        }
+
+        static Segment encode(int start, long[] keys, int[] days, int from, int count) {
+            byte[] buffer = new byte[Math.max(16, count * 8)];
+            int length = 0;
+            long previousKey = 0;
+            long previousDay = 0;
+            int minDay = Integer.MAX_VALUE;
+            int maxDay = Integer.MIN_VALUE;
+            boolean portable = true;
+            for (int i = from; i < from + count; i++) {
+                if (buffer.length - length < 20) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                length = writeVarLong(buffer, length, zigZag(keys[i] - previousKey));
+                length = writeVarLong(buffer, length, zigZag(days[i] - previousDay));
+                previousKey = keys[i];
+                previousDay = days[i];
+                minDay = Math.min(minDay, days[i]);
+                maxDay = Math.max(maxDay, days[i]);
+                portable &= keys[i] >= 0;
+            }
+            return new Resident(start, count, minDay, maxDay, portable, Arrays.copyOf(buffer, length));
+        }
+
+        static void decode(byte[] bytes, long[] keys, int[] days, int count) {
+            int[] position = new int[1];
+            long key = 0;
+            long day = 0;
+            for (int i = 0; i < count; i++) {
+                key += unZigZag(readVarLong(bytes, position));
+                day += unZigZag(readVarLong(bytes, position));
+                keys[i] = key;
+                days[i] = (int) day;
+            }
+        }
+
+        private static long zigZag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+
+        private static long unZigZag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private static int writeVarLong(byte[] buffer, int position, long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+            return position;
+        }
+
+        private static long readVarLong(byte[] bytes, int[] position) {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position[0]++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    private static final class Resident extends Segment {
+        private final byte[] bytes;
+
+        Resident(int start, int count, int minDay, int maxDay, boolean portable, byte[] bytes) {
+            super(start, count, minDay, maxDay, portable);
+            this.bytes = bytes;
+        }
+
+        @Override
+        byte[] bytes() {
+            return bytes;
+        }
+
+        @Override
+        boolean isSpilled() {
+            return false;
+        }
+    }
+
+    private static final class Spilled extends Segment {
+        private final ColdStore coldStore;
+        private final long position;
+        private final int length;
+
+        Spilled(int start, int count, int minDay, int maxDay, boolean portable, ColdStore coldStore, long position,
+                int length) {
+            super(start, count, minDay, maxDay, portable);
+            this.coldStore = coldStore;
+            this.position = position;
+            this.length = length;
+        }
+
+        @Override
+        byte[] bytes() {
+            return coldStore.read(position, length);
+        }
+
+        @Override
+        boolean isSpilled() {
+            return true;
+        }
+    }
+
+    private static final class StringView extends AbstractList<String> implements RandomAccess {
+        private final HistoryLog log;
+        private final KeyCodec codec;
+        private int cachedSegment = -1;
+        private long[] cachedKeys;
+
+        StringView(HistoryLog log, KeyCodec codec) {
+            this.log = log;
+            this.codec = codec;
+        }
+
+        @Override
+        public String get(int index) {
+            log.checkIndex(index);
+            if (index >= log.sealed) {
+                return codec.decode(log.keys[index - log.sealed]);
+            }
+            int segment = log.segmentFor(index);
+            if (segment != cachedSegment) {
+                cachedKeys = log.segments[segment].decodeKeys();
+                cachedSegment = segment;
+            }
+            return codec.decode(cachedKeys[index - log.segments[segment].start]);
+        }
+
+        @Override
+        public int size() {
+            return log.size();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.airtribe.library.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class KeyCodec {
+    public static final long NO_KEY = -1L;
+    public static final KeyCodec ISBN = new KeyCodec('\0');
+    public static final KeyCodec PATRON_ID = new KeyCodec('P');
+    public static final KeyCodec LOAN_ID = new KeyCodec('L');
+    public static final KeyCodec RESERVATION_ID = new KeyCodec('R');
+    public static final KeyCodec BRANCH_ID = new KeyCodec('B');
+    public static final KeyCodec COPY_ID = new KeyCodec('C');
+
+    private static final long DICTIONARY_TAG = Long.MIN_VALUE;
+    private static final int MAX_ISBN_DIGITS = 13;
+    private static final int ISBN_VALUE_BITS = 44;
+    private static final int ISBN_MASK_BITS = 12;
+    private static final int MAX_ID_DIGITS = 15;
+    private static final int ID_VALUE_BITS = 59;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final char prefix;
+    private final Map<String, Long> dictionary = new ConcurrentHashMap<>();
+    private volatile String[] entries = new String[16];
+    private int entryCount;
+
+    private KeyCodec(char prefix) {
+        this.prefix = prefix;
+    }
+
+    public long encode(String value) {
+        if (value == null) {
+            return NO_KEY;
+        }
+        long packed = prefix == '\0' ? packIsbn(value) : packId(value);
+        return packed >= 0 ? packed : intern(value);
+    }
+
+    public long lookup(String value) {
+        if (value == null) {
+            return NO_KEY;
+        }
+        long packed = prefix == '\0' ? packIsbn(value) : packId(value);
+        if (packed >= 0) {
+            return packed;
+        }
+        Long key = dictionary.get(value);
+        return key == null ? NO_KEY : key;
+    }
+
+    public String decode(long key) {
+        if (key == NO_KEY) {
+            return null;
+        }
+        if (key < 0) {
+            return entries[(int) (key & ~DICTIONARY_TAG)];
+        }
+        return prefix == '\0' ? unpackIsbn(key) : unpackId(key);
+    }
+
+    public List<String> decodeAll(long[] keys) {
+        List<String> values = new ArrayList<>(keys.length);
+        for (long key : keys) {
+            values.add(decode(key));
+        }
+        return values;
+    }
+
+    public int dictionarySize() {
+        return dictionary.size();
+    }
+
+    public static long dictionaryEntries() {
+        return (long) ISBN.dictionarySize() + PATRON_ID.dictionarySize() + LOAN_ID.dictionarySize()
+                + RESERVATION_ID.dictionarySize() + BRANCH_ID.dictionarySize() + COPY_ID.dictionarySize();
+    }
+
+    private long packIsbn(String value) {
+        int length = value.length();
+        if (length == 0 || length > MAX_ISBN_DIGITS + ISBN_MASK_BITS) {
+            return NO_KEY;
+        }
+        long digits = 0;
+        long mask = 0;
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (count == MAX_ISBN_DIGITS) {
+                    return NO_KEY;
+                }
+                digits = digits * 10 + (c - '0');
+                count++;
+            } else if (c == '-' && count > 0 && count <= ISBN_MASK_BITS && i + 1 < length
+                    && value.charAt(i + 1) != '-') {
+                mask |= 1L << (count - 1);
+            } else {
+                return NO_KEY;
+            }
+        }
+        return ((long) count << (ISBN_VALUE_BITS + ISBN_MASK_BITS)) | (mask << ISBN_VALUE_BITS) | digits;
+    }
+
+    private static String unpackIsbn(long key) {
+        int count = (int) (key >>> (ISBN_VALUE_BITS + ISBN_MASK_BITS));
+        long mask = (key >>> ISBN_VALUE_BITS) & ((1L << ISBN_MASK_BITS) - 1);
+        long digits = key & ((1L << ISBN_VALUE_BITS) - 1);
+        char[] chars = new char[count + Long.bitCount(mask)];
+        int position = chars.length;
+        for (int i = count - 1; i >= 0; i--) {
+            if (i < count - 1 && (mask & (1L << i)) != 0) {
+                chars[--position] = '-';
+            }
+            chars[--position] = (char) ('0' + digits % 10);
+            digits /= 10;
+        }
+        return new String(chars);
+    }
+
+    private long packId(String value) {
+        int length = value.length();
+        if (length < 2 || length > MAX_ID_DIGITS + 1 || value.charAt(0) != prefix) {
+            return NO_KEY;
+        }
+        long digits = 0;
+        for (int i = 1; i < length; i++) {
+            char c = value.charAt(i);
+            int nibble = c >= '0' && c <= '9' ? c - '0' : c >= 'a' && c <= 'f' ? c - 'a' + 10 : -1;
+            if (nibble < 0) {
+                return NO_KEY;
+            }
+            digits = (digits << 4) | nibble;
+        }
+        if (digits >>> ID_VALUE_BITS != 0) {
+            return NO_KEY;
+        }
+        return ((long) (length - 1) << ID_VALUE_BITS) | digits;
+    }
+
+    private String unpackId(long key) {
+        int count = (int) (key >>> ID_VALUE_BITS);
+        long digits = key & ((1L << ID_VALUE_BITS) - 1);
+        char[] chars = new char[count + 1];
+        chars[0] = prefix;
+        for (int i = count; i >= 1; i--) {
+            chars[i] = HEX[(int) (digits & 0xf)];
+            digits >>>= 4;
+        }
+        return new String(chars);
+    }
+
+    private long intern(String value) {
+        Long key = dictionary.get(value);
+        if (key != null) {
+            return key;
+        }
+        synchronized (this) {
+            key = dictionary.get(value);
+            if (key == null) {
+                String[] current = entries;
+                if (entryCount == current.length) {
+                    current = Arrays.copyOf(current, entryCount * 2);
+                }
+                current[entryCount] = value;
+                entries = current;
+                key = DICTIONARY_TAG | entryCount++;
+                dictionary.put(value, key);
+            }
+            return key;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.airtribe.library.util;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+public final class LongHashSet {
+    private static final int MIN_CAPACITY = 4;
+
+    private long[] keys;
+    private int size;
+
+    public LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongHashSet(int expectedSize) {
+        keys = emptyTable(tableSizeFor(expectedSize));
+    }
+
+    public boolean add(long key) {
+        checkKey(key);
+        int slot = slot(keys, key);
+        if (keys[slot] == key) {
+            return false;
+        }
+        keys[slot] = key;
+        if (++size > keys.length * 3 / 4) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    public boolean remove(long key) {
+        if (key == KeyCodec.NO_KEY) {
+            return false;
+        }
+        int slot = slot(keys, key);
+        if (keys[slot] != key) {
+            return false;
+        }
+        Hashing.shiftBack(keys, null, slot);
+        size--;
+        return true;
+    }
+
+    public boolean contains(long key) {
+        return key != KeyCodec.NO_KEY && keys[slot(keys, key)] == key;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(LongConsumer action) {
+        for (long key : keys) {
+            if (key != KeyCodec.NO_KEY) {
+                action.accept(key);
+            }
+        }
+    }
+
+    public long[] toArray() {
+        long[] result = new long[size];
+        int i = 0;
+        for (long key : keys) {
+            if (key != KeyCodec.NO_KEY) {
+                result[i++] = key;
+            }
+        }
+        return result;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = keys;
+        keys = emptyTable(capacity);
+        for (long key : old) {
+            if (key != KeyCodec.NO_KEY) {
+                keys[slot(keys, key)] = key;
+            }
+        }
+    }
+
+    private static int slot(long[] table, long key) {
+        int mask = table.length - 1;
+        int slot = Hashing.mix(key) & mask;
+        while (table[slot] != KeyCodec.NO_KEY && table[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    static long[] emptyTable(int capacity) {
+        long[] table = new long[capacity];
+        Arrays.fill(table, KeyCodec.NO_KEY);
+        return table;
+    }
+
+    static int tableSizeFor(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize * 4 / 3 + 1) - 1) << 1;
+        return Math.max(MIN_CAPACITY, capacity);
+    }
+
+    static void checkKey(long key) {
+        if (key == KeyCodec.NO_KEY) {
+            throw new IllegalArgumentException("Reserved key: " + key);
+        }
+    }
+}
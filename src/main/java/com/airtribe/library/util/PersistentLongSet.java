@@ -0,0 +1,185 @@
+package com.airtribe.library.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+public final class PersistentLongSet {
+    public static final PersistentLongSet EMPTY = new PersistentLongSet(new long[0][], 0);
+    private static final int MAX_CHUNK = 256;
+
+    private final long[][] chunks;
+    private final int size;
+
+    private PersistentLongSet(long[][] chunks, int size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    public PersistentLongSet with(long key) {
+        if (chunks.length == 0) {
+            return new PersistentLongSet(new long[][]{{key}}, 1);
+        }
+        int c = chunkFor(key);
+        long[] chunk = chunks[c];
+        int position = Arrays.binarySearch(chunk, key);
+        if (position >= 0) {
+            return this;
+        }
+        int insert = -position - 1;
+        long[] grown = new long[chunk.length + 1];
+        System.arraycopy(chunk, 0, grown, 0, insert);
+        grown[insert] = key;
+        System.arraycopy(chunk, insert, grown, insert + 1, chunk.length - insert);
+        long[][] directory;
+        if (grown.length <= MAX_CHUNK) {
+            directory = chunks.clone();
+            directory[c] = grown;
+        } else {
+            int half = grown.length / 2;
+            directory = new long[chunks.length + 1][];
+            System.arraycopy(chunks, 0, directory, 0, c);
+            directory[c] = Arrays.copyOfRange(grown, 0, half);
+            directory[c + 1] = Arrays.copyOfRange(grown, half, grown.length);
+            System.arraycopy(chunks, c + 1, directory, c + 2, chunks.length - c - 1);
+        }
+        return new PersistentLongSet(directory, size + 1);
+    }
+
+    public PersistentLongSet without(long key) {
+        if (chunks.length == 0) {
+            return this;
+        }
+        int c = chunkFor(key);
+        long[] chunk = chunks[c];
+        int position = Arrays.binarySearch(chunk, key);
+        if (position < 0) {
+            return this;
+        }
+        long[][] directory;
+        if (chunk.length == 1) {
+            directory = new long[chunks.length - 1][];
+            System.arraycopy(chunks, 0, directory, 0, c);
+            System.arraycopy(chunks, c + 1, directory, c, chunks.length - c - 1);
+        } else {
+            long[] shrunk = new long[chunk.length - 1];
+            System.arraycopy(chunk, 0, shrunk, 0, position);
+            System.arraycopy(chunk, position + 1, shrunk, position, chunk.length - position - 1);
+            directory = chunks.clone();
+            directory[c] = shrunk;
+        }
+        return new PersistentLongSet(directory, size - 1);
+    }
+
+    public boolean contains(long key) {
+        return chunks.length > 0 && Arrays.binarySearch(chunks[chunkFor(key)], key) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(LongConsumer action) {
+        for (long[] chunk : chunks) {
+            for (long key : chunk) {
+                action.accept(key);
+            }
+        }
+    }
+
+    public long[] first(int limit) {
+        return collect(0, 0, limit);
+    }
+
+    public long[] after(long key, int limit) {
+        if (chunks.length == 0) {
+            return new long[0];
+        }
+        int c = chunkFor(key);
+        int position = Arrays.binarySearch(chunks[c], key);
+        int from = position >= 0 ? position + 1 : -position - 1;
+        return collect(c, from, limit);
+    }
+
+    public Set<String> asStrings(KeyCodec codec) {
+        return new StringView(this, codec);
+    }
+
+    private long[] collect(int chunk, int from, int limit) {
+        long[] result = new long[Math.min(limit, size)];
+        int count = 0;
+        for (int c = chunk; c < chunks.length && count < result.length; c++, from = 0) {
+            int take = Math.min(chunks[c].length - from, result.length - count);
+            System.arraycopy(chunks[c], from, result, count, take);
+            count += take;
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private int chunkFor(long key) {
+        int low = 0;
+        int high = chunks.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (chunks[middle][0] <= key) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private static final class StringView extends AbstractSet<String> {
+        private final PersistentLongSet keys;
+        private final KeyCodec codec;
+
+        StringView(PersistentLongSet keys, KeyCodec codec) {
+            this.keys = keys;
+            this.codec = codec;
+        }
+
+        @Override
+        public boolean contains(Object value) {
+            return value instanceof String string && keys.contains(codec.lookup(string));
+        }
+
+        @Override
+        public int size() {
+            return keys.size;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<>() {
+                private int chunk;
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return chunk < keys.chunks.length;
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    long key = keys.chunks[chunk][index];
+                    if (++index == keys.chunks[chunk].length) {
+                        chunk++;
+                        index = 0;
+                    }
+                    return codec.decode(key);
+                }
+            };
+        }
+    }
+}
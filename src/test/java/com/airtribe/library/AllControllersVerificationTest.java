@@ -1,10 +1,43 @@
 package com.airtribe.library;
 
+import com.airtribe.library.controller.BookController;
+import com.airtribe.library.controller.BranchController;
+import com.airtribe.library.controller.ConcurrencyLimitInterceptor;
+import com.airtribe.library.controller.SerializedResponseCache;
+import com.airtribe.library.domain.Loan;
+import com.airtribe.library.metrics.MetricsRegistry;
+import com.airtribe.library.metrics.OperationMetrics;
+import com.airtribe.library.repository.LoanRepository;
+import com.airtribe.library.repository.Page;
 import com.airtribe.library.service.*;
+import com.sun.management.ThreadMXBean;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.request.ServletWebRequest;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -19,6 +52,15 @@ class AllControllersVerificationTest {
     @Autowired private BranchService branchService;
     @Autowired private ReservationService reservationService;
     @Autowired private RecommendationService recommendationService;
+    @Autowired private BookImportService bookImportService;
+    @Autowired @Qualifier("searchConcurrencyLimiter") private ConcurrencyLimitInterceptor searchLimiter;
+    @Autowired private MetricsRegistry metricsRegistry;
+    @Autowired private BookController bookController;
+    @Autowired private BranchController branchController;
+    @Autowired private SerializedResponseCache responseCache;
+    @Autowired private LoanRepository loanRepository;
+    @Autowired private WebApplicationContext webApplicationContext;
+    @Autowired private ObjectMapper objectMapper;
 
     private static String patronId;
     private static String branchId;
@@ -32,6 +74,8 @@ class AllControllersVerificationTest {
         assertEquals(1, bookService.searchBooks("author", "Arundhati").size());
         bookService.updateBook("978-8129135728", "Updated Title", "Arundhati Roy", 1997);
         assertEquals("Updated Title", bookService.getBook("978-8129135728").getTitle());
+        assertEquals(1, bookService.searchBooks("title", "updated").size());
+        assertTrue(bookService.searchBooks("title", "small things").isEmpty());
     }
 
     @Test
@@ -44,6 +88,9 @@ class AllControllersVerificationTest {
         patronService.updatePatron(patronId, "Rajesh Singh", "rajesh.singh@gmail.com");
         assertEquals("Rajesh Singh", patronService.getPatron(patronId).getName());
         assertNotNull(patronService.getBorrowingHistory(patronId));
+        JsonNode json = objectMapper.valueToTree(patronService.getPatron(patronId));
+        assertFalse(json.has("borrowingHistory"));
+        assertTrue(json.has("currentBorrowedBooks"));
     }
 
     @Test
@@ -52,7 +99,9 @@ class AllControllersVerificationTest {
         var loan = loanService.checkoutBook("978-8129135728", patronId);
         assertNotNull(loan);
         assertEquals(1, loanService.getPatronLoans(patronId).size());
+        assertTrue(loanService.getOverdueLoans().isEmpty());
         loanService.returnBook("978-8129135728");
+        assertEquals(1, loanService.getPatronLoans(patronId).size());
     }
 
     @Test
@@ -95,6 +144,7 @@ class AllControllersVerificationTest {
     void verifyDeleteOperation() {
         bookService.addBook("978-0000000000", "Test Book", "Test Author", 2020);
         bookService.removeBook("978-0000000000");
+        assertTrue(bookService.searchBooks("title", "Test Book").isEmpty());
         assertThrows(Exception.class, () -> bookService.getBook("978-0000000000"));
     }
 
@@ -104,4 +154,287 @@ class AllControllersVerificationTest {
         assertThrows(Exception.class, () -> bookService.getBook("invalid-isbn"));
         assertThrows(Exception.class, () -> patronService.getPatron("invalid-id"));
     }
+
+    @Test
+    @Order(10)
+    void verifyBulkImport() throws Exception {
+        String ndjson = """
+                {"isbn":"978-0143031031","title":"Train to Pakistan","author":"Khushwant Singh","publicationYear":1956}
+                {"isbn":"978-8129135728","title":"Duplicate","author":"Arundhati Roy","publicationYear":1997}
+                {"isbn":"978-0143419327","title":"","author":"Aravind Adiga","publicationYear":2008}
+                not json
+                """;
+        var ndjsonResult = bookImportService.importBooks(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), BookImportService.Format.NDJSON, branchId);
+        assertEquals(1, ndjsonResult.getImported());
+        assertEquals(3, ndjsonResult.getFailed());
+        assertEquals(2, ndjsonResult.getErrors().get(0).line());
+        assertTrue(branchService.getBranch(branchId).getBookIsbns().contains("978-0143031031"));
+
+        String csv = """
+                isbn,title,author,publicationYear
+                978-0143065883,"Midnight's Children, Revisited",Salman Rushdie,1981
+                978-0143424062,A Suitable Boy,Vikram Seth,nineteen
+                """;
+        var csvResult = bookImportService.importBooks(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), BookImportService.Format.CSV, null);
+        assertEquals(1, csvResult.getImported());
+        assertEquals(1, csvResult.getFailed());
+        assertEquals("Midnight's Children, Revisited", bookService.getBook("978-0143065883").getTitle());
+        assertEquals(1, bookService.searchBooks("title", "revisited").size());
+
+        String racing = """
+                {"isbn":"978-0143102090","title":"Godan","author":"Munshi Premchand","publicationYear":1936}
+                {"isbn":"978-0143416173","title":"Raag Darbari","author":"Shrilal Shukla","publicationYear":1968}
+                """;
+        InputStream body = new ByteArrayInputStream(racing.getBytes(StandardCharsets.UTF_8)) {
+            private boolean added;
+
+            @Override
+            public synchronized int read(byte[] buffer, int offset, int length) {
+                int read = super.read(buffer, offset, length);
+                if (read < 0 && !added) {
+                    added = true;
+                    bookService.addBook("978-0143416173", "Raag Darbari", "Shrilal Shukla", 1968);
+                }
+                return read;
+            }
+        };
+        var racingResult = bookImportService.importBooks(body, BookImportService.Format.NDJSON, null);
+        assertEquals(1, racingResult.getImported());
+        assertEquals(1, racingResult.getFailed());
+        assertEquals(2, racingResult.getErrors().get(0).line());
+        assertEquals(1, bookService.getCopies("978-0143416173").size());
+    }
+
+    @Test
+    @Order(11)
+    void verifyConcurrencyLimitSheds() throws Exception {
+        List<MockHttpServletRequest> inFlight = new ArrayList<>();
+        for (int i = 0; i < searchLimiter.getMaxConcurrent(); i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/books/search");
+            assertTrue(searchLimiter.preHandle(request, new MockHttpServletResponse(), null));
+            inFlight.add(request);
+        }
+        assertTrue(searchLimiter.preHandle(inFlight.get(0), new MockHttpServletResponse(), null));
+        assertEquals(searchLimiter.getMaxConcurrent(), searchLimiter.getInFlight());
+
+        MockHttpServletResponse shed = new MockHttpServletResponse();
+        assertFalse(searchLimiter.preHandle(new MockHttpServletRequest("GET", "/api/books/search"), shed, null));
+        assertEquals(429, shed.getStatus());
+        assertEquals("1", shed.getHeader("Retry-After"));
+        assertTrue(shed.getContentAsString().contains("search"));
+        assertEquals(1, searchLimiter.getRejected());
+
+        for (MockHttpServletRequest request : inFlight) {
+            searchLimiter.afterCompletion(request, new MockHttpServletResponse(), null, null);
+        }
+        assertEquals(0, searchLimiter.getInFlight());
+        assertEquals(1, bookService.searchBooks("title", "revisited").size());
+    }
+
+    @Test
+    @Order(12)
+    void verifyMetrics() {
+        MetricsRegistry.MetricsSnapshot snapshot = metricsRegistry.snapshot();
+        OperationMetrics.OperationSnapshot checkouts = snapshot.operations().get("loans.checkout");
+        assertTrue(checkouts.calls() >= 1);
+        assertTrue(checkouts.latencyMicros().p99() <= checkouts.latencyMicros().max());
+        assertTrue(snapshot.operations().get("books.search").calls() >= 3);
+        assertTrue(snapshot.operations().containsKey("recommendations.get"));
+        assertTrue(snapshot.histograms().get("books.search.results").max() >= 1);
+        assertEquals(bookService.getAllBooks().size(), snapshot.gauges().get("repository.books"));
+        assertEquals(1, snapshot.gauges().get("limits.search.rejected"));
+
+        long failedBefore = snapshot.operations().get("loans.return").errors();
+        assertThrows(Exception.class, () -> loanService.returnBook("978-0000000000"));
+        assertEquals(failedBefore + 1, metricsRegistry.snapshot().operations().get("loans.return").errors());
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        OperationMetrics probe = metricsRegistry.operation("test.allocation-probe");
+        probe.recordSuccess(System.nanoTime());
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            probe.recordSuccess(System.nanoTime() - i);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        assertTrue(allocated < 1024, "Metrics recording allocated " + allocated + " bytes");
+    }
+
+    @Test
+    @Order(13)
+    void verifyPagedHoldingsAndHistory() {
+        var branch = branchService.createBranch("Sahitya Sadan Pune", "Pune");
+        var reader = patronService.addPatron("Neha Kulkarni", "neha.kulkarni@gmail.com");
+        for (int i = 0; i < 25; i++) {
+            String isbn = String.format("978-81000%05d", i);
+            bookService.addBook(isbn, "Pune Title " + i, "Pune Author", 2020);
+            branchService.assignBookToBranch(isbn, branch.getBranchId());
+            if (i < 3) {
+                loanService.checkoutBook(isbn, reader.getPatronId());
+            }
+        }
+
+        Set<String> before = branchService.getBranch(branch.getBranchId()).getBookIsbns();
+        List<String> holdings = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Page<String> page = branchService.getBranchBooksPage(branch.getBranchId(), cursor, 10);
+            holdings.addAll(page.items());
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+        assertEquals(3, pages);
+        assertEquals(25, holdings.size());
+        assertEquals("978-8100000000", holdings.get(0));
+        assertTrue(before.containsAll(holdings));
+
+        bookService.addBook("978-8100099999", "Late Arrival", "Pune Author", 2021);
+        branchService.assignBookToBranch("978-8100099999", branch.getBranchId());
+        assertEquals(25, before.size());
+        assertFalse(before.contains("978-8100099999"));
+        assertEquals(26, branchService.getBranch(branch.getBranchId()).getBookIsbns().size());
+
+        Page<String> history = patronService.getBorrowingHistoryPage(reader.getPatronId(), null, 2);
+        assertEquals(List.of("978-8100000000", "978-8100000001"), history.items());
+        assertEquals(List.of("978-8100000002"),
+                patronService.getBorrowingHistoryPage(reader.getPatronId(), history.nextCursor(), 2).items());
+        assertThrows(IllegalArgumentException.class,
+                () -> patronService.getBorrowingHistoryPage(reader.getPatronId(), "-1", 2));
+    }
+
+    @Test
+    @Order(14)
+    void verifyCatalogueETags() {
+        bookService.addBook("978-8126415588", "The God of Small Things", "Arundhati Roy", 1997);
+        var branch = branchService.createBranch("Sahitya Sadan Kochi", "Kochi");
+
+        ResponseEntity<byte[]> first = bookController.getBook("978-8126415588", get(null));
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        String etag = first.getHeaders().getETag();
+        assertNotNull(etag);
+        assertTrue(new String(first.getBody(), StandardCharsets.UTF_8).contains("\"title\":\"The God of Small Things\""));
+        assertSame(first.getBody(), bookController.getBook("978-8126415588", get(null)).getBody());
+        assertEquals(HttpStatus.NOT_MODIFIED, bookController.getBook("978-8126415588", get(etag)).getStatusCode());
+
+        branchService.assignBookToBranch("978-8126415588", branch.getBranchId());
+        ResponseEntity<byte[]> changed = bookController.getBook("978-8126415588", get(etag));
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertNotEquals(etag, changed.getHeaders().getETag());
+        assertTrue(new String(changed.getBody(), StandardCharsets.UTF_8).contains(branch.getBranchId()));
+
+        String settledTag = changed.getHeaders().getETag();
+        bookService.getBook("978-8126415588").setTitle("The God of Small Things (unsaved)");
+        ResponseEntity<byte[]> unsaved = bookController.getBook("978-8126415588", get(settledTag));
+        assertEquals(HttpStatus.OK, unsaved.getStatusCode());
+        assertNull(unsaved.getHeaders().getETag());
+        bookService.updateBook("978-8126415588", "The God of Small Things", "Arundhati Roy", 1997);
+        ResponseEntity<byte[]> saved = bookController.getBook("978-8126415588", get(settledTag));
+        assertEquals(HttpStatus.OK, saved.getStatusCode());
+        assertNotEquals(settledTag, saved.getHeaders().getETag());
+        assertFalse(new String(saved.getBody(), StandardCharsets.UTF_8).contains("unsaved"));
+
+        String catalogue = bookController.getAllBooks(get(null)).getHeaders().getETag();
+        assertEquals(HttpStatus.NOT_MODIFIED, bookController.getAllBooks(get(catalogue)).getStatusCode());
+        bookService.addBook("978-8126415595", "Kochi Stories", "Arundhati Roy", 2001);
+        assertEquals(HttpStatus.OK, bookController.getAllBooks(get(catalogue)).getStatusCode());
+
+        String branchTag = branchController.getBranch(branch.getBranchId(), get(null)).getHeaders().getETag();
+        assertEquals(HttpStatus.NOT_MODIFIED,
+                branchController.getBranch(branch.getBranchId(), get(branchTag)).getStatusCode());
+        branchService.assignBookToBranch("978-8126415595", branch.getBranchId());
+        assertEquals(HttpStatus.OK, branchController.getBranch(branch.getBranchId(), get(branchTag)).getStatusCode());
+        assertTrue(responseCache.size() >= 3);
+        assertTrue(metricsRegistry.snapshot().gauges().get("http-cache.hits") >= 1);
+    }
+
+    @Test
+    @Order(15)
+    void verifyOverdueLoans() {
+        LocalDate today = LocalDate.now();
+        Loan late = new Loan("L0ffff0001", "978-8129135728", patronId, today.minusDays(30), today.minusDays(16));
+        Loan dueToday = new Loan("L0ffff0002", "978-8129135728", patronId, today.minusDays(14), today);
+        loanRepository.save(late);
+        loanRepository.save(dueToday);
+
+        List<String> overdue = loanService.getOverdueLoans().stream().map(Loan::getLoanId).toList();
+        assertTrue(overdue.contains("L0ffff0001"));
+        assertFalse(overdue.contains("L0ffff0002"));
+        assertTrue(loanRepository.findOverdue(today.minusDays(16)).stream()
+                .noneMatch(loan -> loan.getLoanId().equals("L0ffff0001")));
+        assertTrue(loanRepository.findOverdue(today.plusDays(1)).stream()
+                .anyMatch(loan -> loan.getLoanId().equals("L0ffff0002")));
+
+        late.setReturnDate(today);
+        assertTrue(loanService.getOverdueLoans().stream().noneMatch(loan -> loan.getLoanId().equals("L0ffff0001")));
+        loanRepository.save(late);
+        assertTrue(loanService.getOverdueLoans().stream().noneMatch(loan -> loan.getLoanId().equals("L0ffff0001")));
+        dueToday.setReturnDate(today);
+        loanRepository.save(dueToday);
+        assertTrue(loanRepository.findOverdue(today.plusDays(1)).stream()
+                .noneMatch(loan -> loan.getLoanId().startsWith("L0ffff")));
+    }
+
+    @Test
+    @Order(16)
+    void verifyCursorPagesAndStreams() throws Exception {
+        patronService.addPatron("Meera Iyer", "meera.iyer@gmail.com");
+        branchService.createBranch("Sahitya Sadan Chennai", "Anna Salai, Chennai");
+        MockMvc mvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+
+        for (String collection : List.of("patrons", "branches")) {
+            String idField = collection.equals("patrons") ? "patronId" : "branchId";
+            List<String> paged = new ArrayList<>();
+            String cursor = null;
+            do {
+                String url = "/api/" + collection + "?limit=2" + (cursor == null ? "" : "&cursor=" + cursor);
+                JsonNode page = objectMapper.readTree(mvc.perform(MockMvcRequestBuilders.get(url))
+                        .andExpect(MockMvcResultMatchers.status().isOk())
+                        .andReturn().getResponse().getContentAsString());
+                assertTrue(page.get("items").size() <= 2);
+                page.get("items").forEach(item -> paged.add(item.get(idField).asString()));
+                cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asString();
+            } while (cursor != null);
+
+            List<String> streamed = new ArrayList<>();
+            for (String line : ndjson(mvc, "/api/" + collection + "/stream")) {
+                streamed.add(objectMapper.readTree(line).get(idField).asString());
+            }
+            assertTrue(paged.size() >= 2);
+            assertEquals(paged, streamed);
+            assertEquals(paged.stream().sorted().toList(), paged);
+
+            mvc.perform(MockMvcRequestBuilders.get("/api/" + collection + "?limit=2&cursor=Z-not-a-cursor"))
+                    .andExpect(MockMvcResultMatchers.status().isBadRequest());
+            mvc.perform(MockMvcRequestBuilders.get("/api/" + collection + "?limit=0"))
+                    .andExpect(MockMvcResultMatchers.status().isBadRequest());
+        }
+
+        List<String> books = ndjson(mvc, "/api/books/stream");
+        assertEquals(bookService.getAllBooks().size(), books.size());
+        assertEquals(bookService.getBookPage(null, 1).items().get(0).getIsbn(),
+                objectMapper.readTree(books.get(0)).get("isbn").asString());
+        mvc.perform(MockMvcRequestBuilders.get("/api/books?limit=2&cursor=not-an-isbn"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    private static List<String> ndjson(MockMvc mvc, String url) throws Exception {
+        MvcResult started = mvc.perform(MockMvcRequestBuilders.get(url))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        MockHttpServletResponse response = mvc.perform(MockMvcRequestBuilders.asyncDispatch(started))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse();
+        assertTrue(response.getContentType().startsWith("application/x-ndjson"));
+        return response.getContentAsString().lines().filter(line -> !line.isBlank()).toList();
+    }
+
+    private static ServletWebRequest get(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
 }
@@ -0,0 +1,108 @@
+package com.airtribe.library;
+
+import com.airtribe.library.domain.*;
+import com.airtribe.library.exception.BookNotAvailableException;
+import com.airtribe.library.repository.LoanRepository;
+import com.airtribe.library.service.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"logging.level.com.airtribe.library.service=WARN", "logging.level.audit=WARN"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class LoanConcurrencyStressTest {
+    private static final Logger logger = LoggerFactory.getLogger(LoanConcurrencyStressTest.class);
+    private static final int HOT_TITLES = 8;
+    private static final int OPERATIONS = 40_000;
+
+    @Autowired private BookService bookService;
+    @Autowired private PatronService patronService;
+    @Autowired private LoanService loanService;
+    @Autowired private LoanRepository loanRepository;
+
+    @ParameterizedTest
+    @ValueSource(ints = {8, 32, 128})
+    void hotTitlesAreNeverLoanedTwice(int threads) throws Exception {
+        String[] isbns = new String[HOT_TITLES];
+        for (int i = 0; i < HOT_TITLES; i++) {
+            isbns[i] = "978-" + threads + "-HOT-" + i;
+            bookService.addBook(isbns[i], "Hot Title " + i, "Stress Author", 2024);
+        }
+        String[] patronIds = new String[threads];
+        for (int i = 0; i < threads; i++) {
+            patronIds[i] = patronService.addPatron("Stress Patron " + i, "stress" + i + "@example.com").getPatronId();
+        }
+
+        AtomicInteger[] holders = new AtomicInteger[HOT_TITLES];
+        for (int i = 0; i < HOT_TITLES; i++) {
+            holders[i] = new AtomicInteger();
+        }
+        AtomicInteger doubleLoans = new AtomicInteger();
+        AtomicLong checkouts = new AtomicLong();
+        AtomicLong rejections = new AtomicLong();
+        int perThread = OPERATIONS / threads;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String patronId = patronIds[t];
+            futures.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int op = 0; op < perThread; op++) {
+                    int title = random.nextInt(HOT_TITLES);
+                    try {
+                        loanService.checkoutBook(isbns[title], patronId);
+                    } catch (BookNotAvailableException e) {
+                        rejections.incrementAndGet();
+                        continue;
+                    }
+                    checkouts.incrementAndGet();
+                    if (holders[title].incrementAndGet() > 1) {
+                        doubleLoans.incrementAndGet();
+                    }
+                    holders[title].decrementAndGet();
+                    loanService.returnBook(isbns[title]);
+                }
+                return null;
+            }));
+        }
+
+        long loansBefore = loanRepository.count();
+        long began = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        long elapsedNanos = System.nanoTime() - began;
+        pool.shutdown();
+
+        assertEquals(0, doubleLoans.get());
+        assertEquals((long) perThread * threads, checkouts.get() + rejections.get());
+        assertEquals(loansBefore + checkouts.get(), loanRepository.count());
+        for (String patronId : patronIds) {
+            assertTrue(loanService.getPatronLoans(patronId).stream().noneMatch(Loan::isActive));
+            assertTrue(patronService.getPatron(patronId).getCurrentBorrowedBooks().isEmpty());
+        }
+        for (String isbn : isbns) {
+            assertEquals(BookStatus.AVAILABLE, bookService.getBook(isbn).getStatus());
+        }
+
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        logger.info("{} threads: {} checkout attempts ({} loans) in {} ms -> {} attempts/s",
+                threads, checkouts.get() + rejections.get(), checkouts.get(),
+                elapsedNanos / 1_000_000, Math.round((checkouts.get() + rejections.get()) / seconds));
+    }
+}
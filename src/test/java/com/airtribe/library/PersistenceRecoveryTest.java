@@ -0,0 +1,212 @@
+package com.airtribe.library;
+
+import com.airtribe.library.domain.*;
+import com.airtribe.library.exception.BookNotFoundException;
+import com.airtribe.library.persistence.PersistenceManager;
+import com.airtribe.library.persistence.WriteAheadLog;
+import com.airtribe.library.repository.BookRepository;
+import com.airtribe.library.repository.CopyRepository;
+import com.airtribe.library.service.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class PersistenceRecoveryTest {
+
+    @TempDir
+    static Path dataDirectory;
+
+    private static String patronId;
+    private static String branchId;
+    private static String reservationId;
+
+    @Test
+    @Order(1)
+    void testWritesAreLoggedAndSnapshotted() throws Exception {
+        BookService closedBookService;
+        try (ConfigurableApplicationContext context = start()) {
+            BookService bookService = context.getBean(BookService.class);
+            closedBookService = bookService;
+            PatronService patronService = context.getBean(PatronService.class);
+            LoanService loanService = context.getBean(LoanService.class);
+            BranchService branchService = context.getBean(BranchService.class);
+            ReservationService reservationService = context.getBean(ReservationService.class);
+
+            bookService.addBook("978-0143065883", "Midnight's Children", "Salman Rushdie", 1981);
+            bookService.addBook("978-0143424062", "A Suitable Boy", "Vikram Seth", 1993);
+            bookService.addBook("978-0143031031", "Train to Pakistan", "Khushwant Singh", 1956);
+            patronId = patronService.addPatron("Rajesh Kumar", "rajesh@example.com").getPatronId();
+            String priyaId = patronService.addPatron("Priya Sharma", "priya@example.com").getPatronId();
+            branchId = branchService.createBranch("Sahitya Sadan Delhi", "Connaught Place").getBranchId();
+            branchService.assignBookToBranch("978-0143065883", branchId);
+            loanService.checkoutBook("978-0143065883", patronId);
+
+            context.getBean(PersistenceManager.class).snapshot();
+
+            reservationId = reservationService.reserveBook("978-0143065883", priyaId).getReservationId();
+            loanService.checkoutBook("978-0143424062", patronId);
+            loanService.returnBook("978-0143424062");
+            bookService.removeBook("978-0143031031");
+        }
+        assertThrows(IllegalStateException.class,
+                () -> closedBookService.addBook("978-0143039549", "Godan", "Munshi Premchand", 1936));
+
+        try (Stream<Path> files = Files.list(dataDirectory)) {
+            List<String> names = files.map(path -> path.getFileName().toString()).sorted().toList();
+            assertTrue(names.stream().anyMatch(name -> name.startsWith("snapshot-")));
+            assertEquals(1, names.stream().filter(name -> name.startsWith("wal-")).count());
+        }
+    }
+
+    @Test
+    @Order(2)
+    void testRecoveryReplaysLogOverSnapshotAndDropsTornTail() throws Exception {
+        try (Stream<Path> files = Files.list(dataDirectory)) {
+            Path segment = files.filter(path -> path.getFileName().toString().startsWith("wal-")).findFirst().orElseThrow();
+            Files.write(segment, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+        }
+
+        try (ConfigurableApplicationContext context = start()) {
+            BookService bookService = context.getBean(BookService.class);
+            PatronService patronService = context.getBean(PatronService.class);
+            LoanService loanService = context.getBean(LoanService.class);
+            BranchService branchService = context.getBean(BranchService.class);
+            ReservationService reservationService = context.getBean(ReservationService.class);
+
+            assertEquals(2, bookService.getAllBooks().size());
+            assertThrows(BookNotFoundException.class, () -> bookService.getBook("978-0143031031"));
+            assertEquals(BookStatus.BORROWED, bookService.getBook("978-0143065883").getStatus());
+            assertEquals(BookStatus.AVAILABLE, bookService.getBook("978-0143424062").getStatus());
+            assertEquals(branchId, bookService.getBook("978-0143065883").getBranchId());
+            assertTrue(branchService.getBranch(branchId).getBookIsbns().contains("978-0143065883"));
+
+            Patron rajesh = patronService.getPatron(patronId);
+            assertEquals(List.of("978-0143065883", "978-0143424062"), rajesh.getBorrowingHistory());
+            assertEquals(1, rajesh.getCurrentBorrowedBooks().size());
+            assertEquals(2, loanService.getPatronLoans(patronId).size());
+            assertEquals(1, loanService.getPatronLoans(patronId).stream().filter(Loan::isActive).count());
+
+            assertEquals(1, reservationService.getQueuePosition(reservationId));
+            assertEquals(1, bookService.searchBooks("author", "Vikram").size());
+
+            loanService.returnBook("978-0143065883");
+            context.getBean(PersistenceManager.class).snapshot();
+        }
+
+        try (ConfigurableApplicationContext context = start()) {
+            assertTrue(context.getBean(LoanService.class).getPatronLoans(patronId).stream().noneMatch(Loan::isActive));
+            assertEquals(BookStatus.AVAILABLE,
+                    context.getBean(BookService.class).getBook("978-0143065883").getStatus());
+        }
+    }
+
+    @Test
+    @Order(3)
+    void testConcurrentSavesOfOneEntityRecoverLatestState() throws Exception {
+        String concurrentBranchId;
+        try (ConfigurableApplicationContext context = start()) {
+            BookService bookService = context.getBean(BookService.class);
+            BranchService branchService = context.getBean(BranchService.class);
+            concurrentBranchId = branchService.createBranch("Sahitya Sadan Pune", "FC Road").getBranchId();
+            for (int i = 0; i < 200; i++) {
+                bookService.addBook(String.format("978-93-%07d", i), "Pune Title " + i, "Pune Author", 2000);
+            }
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int worker = t;
+                Thread thread = new Thread(() -> {
+                    for (int i = worker; i < 200; i += 8) {
+                        branchService.assignBookToBranch(String.format("978-93-%07d", i), concurrentBranchId);
+                    }
+                });
+                thread.start();
+                workers.add(thread);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            assertEquals(200, branchService.getBranch(concurrentBranchId).getBookIsbns().size());
+        }
+
+        try (ConfigurableApplicationContext context = start()) {
+            assertEquals(200, context.getBean(BranchService.class).getBranch(concurrentBranchId).getBookIsbns().size());
+        }
+    }
+
+    @Test
+    @Order(4)
+    void testMutationsLeaveNoTraceWhenTheLogWriteFails() throws Exception {
+        try (ConfigurableApplicationContext context = start()) {
+            BookService bookService = context.getBean(BookService.class);
+            PatronService patronService = context.getBean(PatronService.class);
+            LoanService loanService = context.getBean(LoanService.class);
+            CopyRepository copyRepository = context.getBean(CopyRepository.class);
+            bookService.addBook("978-0140449136", "Godan", "Munshi Premchand", 1936);
+            bookService.addBook("978-0143416371", "Gitanjali", "Rabindranath Tagore", 1910);
+            String meenaId = patronService.addPatron("Meena Das", "meena@example.com").getPatronId();
+            BranchService branchService = context.getBean(BranchService.class);
+            String puneId = branchService.createBranch("Pune", "Deccan").getBranchId();
+            String delhiId = branchService.createBranch("Delhi", "Daryaganj").getBranchId();
+            branchService.assignBookToBranch("978-0140449136", puneId);
+
+            context.getBean(WriteAheadLog.class).close();
+            assertThrows(IllegalStateException.class, () -> loanService.checkoutBook("978-0140449136", meenaId));
+            assertThrows(IllegalStateException.class, () -> loanService.checkoutBatch(meenaId,
+                    List.of("978-0140449136", "978-0143416371"), null));
+            assertThrows(IllegalStateException.class,
+                    () -> branchService.assignBookToBranch("978-0143416371", delhiId));
+            assertThrows(IllegalStateException.class,
+                    () -> branchService.transferBook("978-0140449136", puneId, delhiId));
+            String row = "{\"isbn\":\"978-0143031031\",\"title\":\"Train to Pakistan\","
+                    + "\"author\":\"Khushwant Singh\",\"publicationYear\":1956}\n";
+            assertThrows(IllegalStateException.class, () -> context.getBean(BookImportService.class).importBooks(
+                    new ByteArrayInputStream(row.getBytes(StandardCharsets.UTF_8)),
+                    BookImportService.Format.NDJSON, delhiId));
+            assertFalse(context.getBean(BookRepository.class).exists("978-0143031031"));
+            assertThrows(IllegalStateException.class,
+                    () -> bookService.updateBook("978-0143416371", "Gitanjali (Song Offerings)", "Tagore", 1912));
+            assertEquals("Gitanjali", bookService.getBook("978-0143416371").getTitle());
+            assertEquals(1910, bookService.getBook("978-0143416371").getPublicationYear());
+            assertEquals(1, bookService.searchBooks("title", "gitanjali").size());
+
+            assertNull(bookService.getBook("978-0143416371").getBranchId());
+            assertEquals(puneId, bookService.getBook("978-0140449136").getBranchId());
+            assertTrue(copyRepository.findByIsbn("978-0140449136").stream()
+                    .allMatch(copy -> puneId.equals(copy.getBranchId())));
+            assertEquals(Set.of("978-0140449136"), branchService.getBranch(puneId).getBookIsbns());
+            assertTrue(branchService.getBranch(delhiId).getBookIsbns().isEmpty());
+
+            for (String isbn : List.of("978-0140449136", "978-0143416371")) {
+                assertEquals(BookStatus.AVAILABLE, bookService.getBook(isbn).getStatus());
+                assertTrue(copyRepository.findByIsbn(isbn).stream()
+                        .allMatch(copy -> copy.getStatus() == BookStatus.AVAILABLE));
+            }
+            Patron meena = patronService.getPatron(meenaId);
+            assertTrue(meena.getCurrentBorrowedBooks().isEmpty());
+            assertTrue(meena.getBorrowingHistory().isEmpty());
+            assertTrue(loanService.getPatronLoans(meenaId).isEmpty());
+        }
+    }
+
+    private static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(LibraryManagementSystemApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--library.persistence.enabled=true",
+                        "--library.persistence.directory=" + dataDirectory,
+                        "--library.persistence.snapshot-interval-seconds=0",
+                        "--logging.level.com.airtribe.library.service=WARN");
+    }
+}
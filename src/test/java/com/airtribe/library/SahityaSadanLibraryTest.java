@@ -1,13 +1,45 @@
 package com.airtribe.library;
 
+import com.airtribe.library.audit.AuditEvent;
+import com.airtribe.library.audit.AuditEventType;
+import com.airtribe.library.audit.AuditLog;
 import com.airtribe.library.domain.*;
+import com.airtribe.library.exception.AmbiguousReturnException;
+import com.airtribe.library.exception.BookNotAvailableException;
+import com.airtribe.library.exception.BookNotFoundException;
+import com.airtribe.library.exception.BranchNotFoundException;
+import com.airtribe.library.metrics.MetricsRegistry;
+import com.airtribe.library.patterns.EntityFactory;
+import com.airtribe.library.patterns.NotificationService;
+import com.airtribe.library.patterns.Observer;
+import com.airtribe.library.patterns.SnowflakeIdGenerator;
+import com.airtribe.library.patterns.TitleSearchStrategy;
+import com.airtribe.library.persistence.EntityCodec;
+import com.airtribe.library.persistence.EntityType;
+import com.airtribe.library.repository.BookRepository;
+import com.airtribe.library.repository.BranchInventory;
+import com.airtribe.library.repository.CopyRepository;
+import com.airtribe.library.repository.LoanRepository;
+import com.airtribe.library.repository.Page;
+import com.airtribe.library.repository.PatronRepository;
+import com.airtribe.library.repository.ReservationRepository;
 import com.airtribe.library.service.*;
+import com.airtribe.library.util.HistoryLog;
+import com.airtribe.library.util.KeyCodec;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -17,11 +49,22 @@ import static org.junit.jupiter.api.Assertions.*;
 class SahityaSadanLibraryTest {
 
     @Autowired private BookService bookService;
+    @Autowired private BookQueryService bookQueryService;
     @Autowired private PatronService patronService;
     @Autowired private LoanService loanService;
     @Autowired private BranchService branchService;
     @Autowired private ReservationService reservationService;
     @Autowired private RecommendationService recommendationService;
+    @Autowired private NotificationService notificationService;
+    @Autowired private AuditLog auditLog;
+    @Autowired private OverdueService overdueService;
+    @Autowired private LoanRepository loanRepository;
+    @Autowired private PatronRepository patronRepository;
+    @Autowired private ReservationRepository reservationRepository;
+    @Autowired private BookRepository bookRepository;
+    @Autowired private EntityFactory entityFactory;
+    @Autowired private StripedLocks locks;
+    @Autowired private MetricsRegistry metrics;
 
     private static String rajeshPatronId;
     private static String priyaPatronId;
@@ -41,6 +84,14 @@ class SahityaSadanLibraryTest {
 
         List<Book> books = bookService.getAllBooks();
         assertEquals(6, books.size());
+
+        Page<Book> firstPage = bookService.getBookPage(null, 4);
+        assertEquals(4, firstPage.items().size());
+        assertEquals("978-0143031031", firstPage.items().get(0).getIsbn());
+        Page<Book> lastPage = bookService.getBookPage(firstPage.nextCursor(), 4);
+        assertEquals(2, lastPage.items().size());
+        assertNull(lastPage.nextCursor());
+        assertThrows(IllegalArgumentException.class, () -> bookService.getBookPage(null, 0));
     }
 
     @Test
@@ -55,6 +106,27 @@ class SahityaSadanLibraryTest {
 
         List<Book> isbnSearch = bookService.searchBooks("isbn", "978-8129135728");
         assertEquals(1, isbnSearch.size());
+
+        List<Book> firstPage = bookService.searchBooks("title", "the", 0, 2);
+        List<Book> secondPage = bookService.searchBooks("title", "the", 1, 2);
+        assertEquals(2, firstPage.size());
+        assertEquals(1, secondPage.size());
+        assertEquals("The God of Small Things", firstPage.get(0).getTitle());
+
+        List<Book> prefixSearch = bookService.searchBooks("author", "ki");
+        assertEquals(1, prefixSearch.size());
+        assertEquals("Kiran Desai", prefixSearch.get(0).getAuthor());
+
+        Set<Book> midWord = new HashSet<>(bookService.searchBooks("title", "an"));
+        assertEquals(new HashSet<>(new TitleSearchStrategy().search(bookService.getAllBooks(), "an")), midWord);
+        assertEquals(2, midWord.size());
+        assertEquals(new HashSet<>(new TitleSearchStrategy().search(bookService.getAllBooks(), "w")),
+                new HashSet<>(bookService.searchBooks("title", "w")));
+
+        assertThrows(IllegalArgumentException.class, () -> bookService.searchBooks("title", "the", -1, 10));
+        assertThrows(IllegalArgumentException.class, () -> bookService.searchBooks("title", "the", 0, 1001));
+        assertThrows(IllegalArgumentException.class,
+                () -> bookService.searchBooks("title", "the", Integer.MAX_VALUE, 1000));
     }
 
     @Test
@@ -165,16 +237,39 @@ class SahityaSadanLibraryTest {
 
     @Test
     @Order(11)
-    void testMultipleReservations() {
+    void testMultipleReservations() throws InterruptedException {
         loanService.checkoutBook("978-0143031031", rajeshPatronId);
+        RecordingObserver priyaInbox = new RecordingObserver(0);
+        RecordingObserver anilInbox = new RecordingObserver(1);
+        notificationService.attach(priyaPatronId, priyaInbox);
+        notificationService.attach(anilPatronId, anilInbox);
 
-        reservationService.reserveBook("978-0143031031", priyaPatronId);
-        reservationService.reserveBook("978-0143031031", anilPatronId);
+        Reservation first = reservationService.reserveBook("978-0143031031", priyaPatronId);
+        Reservation second = reservationService.reserveBook("978-0143031031", anilPatronId);
 
         List<Reservation> reservations = reservationService.getReservationsByBook("978-0143031031");
         assertEquals(2, reservations.size());
+        assertEquals(first.getReservationId(), reservations.get(0).getReservationId());
+        assertEquals(1, reservationService.getQueuePosition(first.getReservationId()));
+        assertEquals(2, reservationService.getQueuePosition(second.getReservationId()));
+
+        reservationService.cancelReservation(first.getReservationId());
+        assertEquals(ReservationStatus.CANCELLED, reservationService.getReservation(first.getReservationId()).getStatus());
+        assertEquals(1, reservationService.getQueuePosition(second.getReservationId()));
 
         loanService.returnBook("978-0143031031");
+        assertEquals(ReservationStatus.FULFILLED, reservationService.getReservation(second.getReservationId()).getStatus());
+        assertTrue(reservationService.getReservationsByBook("978-0143031031").isEmpty());
+
+        assertTrue(notificationService.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(List.of("Book 978-0143031031 is now available for your reservation"), anilInbox.received);
+        assertTrue(priyaInbox.received.isEmpty());
+        NotificationService.ChannelStats recording = notificationService.getStats().channels().get("recording");
+        assertEquals(1, recording.delivered());
+        assertEquals(1, recording.retried());
+        assertEquals(0, recording.failed());
+        notificationService.detach(priyaPatronId, priyaInbox);
+        notificationService.detach(anilPatronId, anilInbox);
     }
 
     @Test
@@ -188,6 +283,27 @@ class SahityaSadanLibraryTest {
 
         List<Book> recommendations = recommendationService.getRecommendations(anilPatronId);
         assertNotNull(recommendations);
+
+        bookService.addBook("978-0143031161", "Hullabaloo in the Guava Orchard", "Kiran Desai", 1998);
+        String sunitaPatronId = patronService.addPatron("Sunita Rao", "sunita.rao@example.com").getPatronId();
+        loanService.checkoutBook("978-0143419334", sunitaPatronId);
+        loanService.returnBook("978-0143419334");
+
+        List<String> byAuthor = recommendationService.getRecommendations(sunitaPatronId).stream()
+                .map(Book::getIsbn).toList();
+        assertEquals(List.of("978-0143031161"), byAuthor);
+
+        recommendationService.refreshCoBorrowModel();
+        List<String> withCoBorrow = recommendationService.getRecommendations(sunitaPatronId).stream()
+                .map(Book::getIsbn).toList();
+        assertEquals("978-0143031161", withCoBorrow.get(0));
+        assertTrue(withCoBorrow.contains("978-0143419327"));
+        assertFalse(withCoBorrow.contains("978-0143419334"));
+
+        loanService.checkoutBook("978-0143031161", sunitaPatronId);
+        loanService.returnBook("978-0143031161");
+        assertFalse(recommendationService.getRecommendations(sunitaPatronId).stream()
+                .anyMatch(book -> book.getIsbn().equals("978-0143031161")));
     }
 
     @Test
@@ -211,7 +327,9 @@ class SahityaSadanLibraryTest {
 
     @Test
     @Order(15)
-    void testCompleteWorkflow() {
+    void testCompleteWorkflow() throws InterruptedException {
+        List<AuditEvent> events = new CopyOnWriteArrayList<>();
+        auditLog.subscribe(events::add);
         bookService.addBook("978-0143440345", "The Palace of Illusions", "Chitra Banerjee Divakaruni", 2008);
         
         Patron deepak = patronService.addPatron("Deepak Mehta", "deepak.mehta@gmail.com");
@@ -229,5 +347,507 @@ class SahityaSadanLibraryTest {
 
         Book book = bookService.getBook("978-0143440345");
         assertEquals(BookStatus.AVAILABLE, book.getStatus());
+
+        assertTrue(auditLog.awaitDrained(5, TimeUnit.SECONDS));
+        assertEquals(List.of(AuditEventType.BOOK_ADDED, AuditEventType.PATRON_REGISTERED, AuditEventType.BOOK_ASSIGNED,
+                        AuditEventType.CHECKOUT, AuditEventType.RETURN),
+                events.stream().map(AuditEvent::event).toList());
+        AuditEvent checkout = events.get(3);
+        assertEquals("978-0143440345", checkout.isbn());
+        assertEquals(deepakId, checkout.patronId());
+        assertEquals(loan.getLoanId(), checkout.reference());
+        assertEquals(loan.getLoanId(), events.get(4).reference());
+        assertTrue(events.get(3).sequence() < events.get(4).sequence());
+        assertEquals(0, auditLog.getDropped());
+    }
+
+    @Test
+    @Order(16)
+    void testOverdueScanAndFines() throws InterruptedException {
+        Patron meera = patronService.addPatron("Meera Iyer", "meera.iyer@gmail.com");
+        String meeraId = meera.getPatronId();
+        RecordingObserver meeraInbox = new RecordingObserver(0);
+        notificationService.attach(meeraId, meeraInbox);
+        LocalDate today = LocalDate.now();
+        loanRepository.save(new Loan("L-OVERDUE-1", "978-9000000001", meeraId, today.minusDays(15), today.minusDays(1)));
+        loanRepository.save(new Loan("L-OVERDUE-7", "978-9000000007", meeraId, today.minusDays(21), today.minusDays(7)));
+        loanRepository.save(new Loan("L-OVERDUE-3", "978-9000000003", meeraId, today.minusDays(17), today.minusDays(3)));
+        Loan returnedLate = new Loan("L-RETURNED", "978-9000000009", meeraId, today.minusDays(30), today.minusDays(16));
+        returnedLate.setReturnDate(today.minusDays(12));
+        loanRepository.save(returnedLate);
+        String arjunId = patronService.addPatron("Arjun Nair", "arjun.nair@gmail.com").getPatronId();
+        loanRepository.save(new Loan("L-OVERDUE-40", "978-9000000040", arjunId, today.minusDays(54), today.minusDays(40)));
+
+        OverdueService.ScanResult scan = overdueService.runScan(today);
+        assertEquals(4, scan.loansNoticed());
+        assertEquals(2, scan.patronsNotified());
+        assertEquals(0, overdueService.runScan(today).loansNoticed());
+        assertTrue(notificationService.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(1, meeraInbox.received.size());
+        assertTrue(meeraInbox.received.get(0).contains("978-9000000001 (1 days overdue, fine 5)"));
+        assertTrue(meeraInbox.received.get(0).contains("978-9000000003 (3 days overdue, fine 15)"));
+        assertTrue(meeraInbox.received.get(0).contains("978-9000000007 (7 days overdue, fine 35)"));
+        assertEquals(4, loanRepository.findActiveByIsbn("978-9000000040").orElseThrow().remindersSent());
+        assertFalse(notificationService.notifyObservers(arjunId, "unregistered", 0));
+
+        OverdueService.FineSummary fines = overdueService.getFines(meeraId);
+        assertEquals(5 + 35 + 15 + 20, fines.total());
+        assertEquals(List.of("L-RETURNED", "L-OVERDUE-7", "L-OVERDUE-3", "L-OVERDUE-1"),
+                fines.loans().stream().map(OverdueService.LoanFine::loanId).toList());
+        assertEquals(4, loanRepository.countOverdue(today));
+
+        assertEquals(2, overdueService.runScan(today.plusDays(6)).loansNoticed());
+        assertEquals(1, overdueService.runScan(today.plusDays(7)).loansNoticed());
+        assertThrows(RuntimeException.class, () -> overdueService.getFines("unknown-patron"));
+        notificationService.detach(meeraId, meeraInbox);
+    }
+
+    @Test
+    @Order(17)
+    void testCompactKeysRoundTrip() {
+        for (String isbn : List.of("978-0143065883", "9780143065883", "0-14-306588-0", "0000000000001")) {
+            long key = KeyCodec.ISBN.encode(isbn);
+            assertTrue(key >= 0);
+            assertEquals(isbn, KeyCodec.ISBN.decode(key));
+        }
+        assertEquals("0-19-852663-X", KeyCodec.ISBN.decode(KeyCodec.ISBN.encode("0-19-852663-X")));
+        assertEquals("P0a1b2c3d", KeyCodec.PATRON_ID.decode(KeyCodec.PATRON_ID.encode("P0a1b2c3d")));
+        assertEquals("L-OVERDUE-1", KeyCodec.LOAN_ID.decode(KeyCodec.LOAN_ID.lookup("L-OVERDUE-1")));
+        assertEquals(KeyCodec.NO_KEY, KeyCodec.LOAN_ID.lookup("L-never-issued"));
+
+        Patron kavya = patronService.addPatron("Kavya Menon", "kavya.menon@gmail.com");
+        bookService.addBook("978-0-14-303103-1", "Train to Pakistan", "Khushwant Singh", 1956);
+        Loan loan = loanService.checkoutBook("978-0-14-303103-1", kavya.getPatronId());
+        assertEquals(loan, loanRepository.findById(loan.getLoanId()).orElseThrow());
+        assertEquals(loan, loanRepository.findActiveByIsbn("978-0-14-303103-1").orElseThrow());
+        assertEquals(List.of("978-0-14-303103-1"), patronService.getBorrowingHistory(kavya.getPatronId()));
+        assertTrue(patronService.getPatron(kavya.getPatronId()).getCurrentBorrowedBooks().contains("978-0-14-303103-1"));
+        assertTrue(loanRepository.findById("L-never-issued").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> loanRepository.findPage("L-never-issued", 10));
+        loanService.returnBook("978-0-14-303103-1");
+    }
+
+    @Test
+    @Order(18)
+    void testGeneratedIdsAreUniqueAndTimeOrdered() {
+        Patron sunita = patronService.addPatron("Sunita Rao", "sunita.rao@gmail.com");
+        assertTrue(sunita.getPatronId().matches("P[0-9a-f]{15}"));
+        assertTrue(KeyCodec.PATRON_ID.lookup(sunita.getPatronId()) >= 0);
+        Patron arjun = patronService.addPatron("Arjun Nair", "arjun.nair@gmail.com");
+        assertTrue(arjun.getPatronId().compareTo(sunita.getPatronId()) > 0);
+
+        long[] now = {1_000_000};
+        SnowflakeIdGenerator node1 = new SnowflakeIdGenerator(1, 0, () -> now[0]);
+        SnowflakeIdGenerator node2 = new SnowflakeIdGenerator(2, 0, () -> now[0]);
+        Set<Long> ids = new HashSet<>();
+        long previous = -1;
+        for (int i = 0; i < 5000; i++) {
+            if (i == 3000) {
+                now[0] -= 50;
+            }
+            long id = node1.nextId();
+            assertTrue(id > previous);
+            previous = id;
+            assertTrue(ids.add(id));
+            assertTrue(ids.add(node2.nextId()));
+        }
+        assertEquals(1, node1.nodeOf(previous));
+        assertTrue(node1.timestampOf(previous) > 1_000_000);
+
+        SnowflakeIdGenerator restarted = new SnowflakeIdGenerator(1, 0, () -> 1_000_000 - 10_000);
+        restarted.advancePast(previous);
+        assertTrue(restarted.nextId() > previous);
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(256, 0, () -> now[0]));
+    }
+
+    @Test
+    @Order(19)
+    void testBranchInventoryCounters() {
+        Branch chennai = branchService.createBranch("Sahitya Sadan Chennai", "Chennai");
+        Branch kolkata = branchService.createBranch("Sahitya Sadan Kolkata", "Kolkata");
+        Patron lakshmi = patronService.addPatron("Lakshmi Narayanan", "lakshmi.n@gmail.com");
+        Patron sourav = patronService.addPatron("Sourav Ghosh", "sourav.ghosh@gmail.com");
+        for (String isbn : List.of("978-0143028578", "978-0143031178", "978-0143102489")) {
+            bookService.addBook(isbn, "Chennai Shelf " + isbn, "R. K. Narayan", 1958);
+            branchService.assignBookToBranch(isbn, chennai.getBranchId());
+        }
+        assertEquals(new BranchInventory.BranchStats(chennai.getBranchId(), 3, 3, 0, 0),
+                branchService.getBranchStats(chennai.getBranchId()));
+
+        loanService.checkoutBook("978-0143028578", lakshmi.getPatronId());
+        reservationService.reserveBook("978-0143028578", sourav.getPatronId());
+        branchService.transferBook("978-0143102489", chennai.getBranchId(), kolkata.getBranchId());
+        assertEquals(new BranchInventory.BranchStats(chennai.getBranchId(), 2, 1, 1, 0),
+                branchService.getBranchStats(chennai.getBranchId()));
+        assertEquals(new BranchInventory.BranchStats(kolkata.getBranchId(), 1, 1, 0, 0),
+                branchService.getBranchStats(kolkata.getBranchId()));
+
+        loanService.returnBook("978-0143028578");
+        assertEquals(new BranchInventory.BranchStats(chennai.getBranchId(), 2, 2, 0, 0),
+                branchService.getBranchStats(chennai.getBranchId()));
+
+        BranchService.InventorySummary summary = branchService.getInventorySummary();
+        assertEquals(summary.branches().stream().mapToLong(BranchInventory.BranchStats::total).sum(), summary.total());
+        assertTrue(summary.branches().contains(branchService.getBranchStats(kolkata.getBranchId())));
+        long assigned = bookService.getAllBooks().stream().filter(book -> book.getBranchId() != null).count();
+        assertEquals(assigned, summary.total());
+        assertThrows(RuntimeException.class, () -> branchService.getBranchStats("B-unknown"));
+
+        String waitlisted = "978-0143028592";
+        bookService.addBook(waitlisted, "The English Teacher", "R. K. Narayan", 1945);
+        branchService.assignBookToBranch(waitlisted, kolkata.getBranchId());
+        loanService.checkoutBook(waitlisted, lakshmi.getPatronId());
+        int queues = reservationRepository.countActiveQueues();
+        reservationService.reserveBook(waitlisted, sourav.getPatronId());
+        assertEquals(queues + 1, reservationRepository.countActiveQueues());
+        assertEquals(1, reservationRepository.countActiveByIsbn(waitlisted));
+        assertEquals(new BranchInventory.BranchStats(kolkata.getBranchId(), 2, 1, 1, 0),
+                branchService.getBranchStats(kolkata.getBranchId()));
+        bookService.addCopies(waitlisted, kolkata.getBranchId(), 2);
+        assertEquals(new BranchInventory.BranchStats(kolkata.getBranchId(), 4, 3, 1, 1),
+                branchService.getBranchStats(kolkata.getBranchId()));
+        loanService.returnCopy(bookService.getCopies(waitlisted).stream()
+                .filter(copy -> copy.getStatus() == BookStatus.BORROWED).findFirst().orElseThrow().getBarcode());
+        assertEquals(new BranchInventory.BranchStats(kolkata.getBranchId(), 4, 4, 0, 0),
+                branchService.getBranchStats(kolkata.getBranchId()));
+        assertEquals(queues, reservationRepository.countActiveQueues());
+        assertEquals(0, reservationRepository.countActiveByIsbn(waitlisted));
+    }
+
+    @Test
+    @Order(20)
+    void testMultiCopyCheckoutPrefersRequestedBranch() {
+        Branch pune = branchService.createBranch("Sahitya Sadan Pune", "Pune");
+        Branch hyderabad = branchService.createBranch("Sahitya Sadan Hyderabad", "Hyderabad");
+        Patron meera = patronService.addPatron("Meera Iyer", "meera.iyer@gmail.com");
+        Patron arjun = patronService.addPatron("Arjun Rao", "arjun.rao@gmail.com");
+        Patron farah = patronService.addPatron("Farah Khan", "farah.khan@gmail.com");
+        Patron vivek = patronService.addPatron("Vivek Joshi", "vivek.joshi@gmail.com");
+        String isbn = "978-0143066880";
+        bookService.addBook(isbn, "The Glass Palace", "Amitav Ghosh", 2000);
+        branchService.assignBookToBranch(isbn, pune.getBranchId());
+        List<Copy> added = bookService.addCopies(isbn, hyderabad.getBranchId(), 2);
+        assertEquals(2, added.size());
+        assertTrue(added.get(0).getBarcode().startsWith("C"));
+
+        CopyRepository.Availability availability = bookService.getAvailability(isbn);
+        assertEquals(3, availability.total());
+        assertEquals(3, availability.available());
+        assertEquals(2, availability.branches().size());
+        assertTrue(hyderabad.getBookIsbns().contains(isbn));
+
+        Loan meeraLoan = loanService.checkoutBook(isbn, meera.getPatronId(), hyderabad.getBranchId());
+        assertTrue(added.stream().anyMatch(copy -> copy.getBarcode().equals(meeraLoan.getBarcode())));
+        assertThrows(BookNotAvailableException.class,
+                () -> loanService.checkoutBook(isbn, meera.getPatronId(), hyderabad.getBranchId()));
+        Loan arjunLoan = loanService.checkoutBook(isbn, arjun.getPatronId(), pune.getBranchId());
+        assertEquals(pune.getBranchId(), bookService.getCopies(isbn).stream()
+                .filter(copy -> copy.getBarcode().equals(arjunLoan.getBarcode()))
+                .findFirst().orElseThrow().getBranchId());
+        assertEquals(BookStatus.AVAILABLE, bookService.getBook(isbn).getStatus());
+        loanService.checkoutBook(isbn, farah.getPatronId());
+        assertEquals(BookStatus.BORROWED, bookService.getBook(isbn).getStatus());
+        assertThrows(BookNotAvailableException.class, () -> loanService.checkoutBook(isbn, vivek.getPatronId()));
+        assertEquals(new BranchInventory.BranchStats(hyderabad.getBranchId(), 2, 0, 2, 0),
+                branchService.getBranchStats(hyderabad.getBranchId()));
+
+        loanService.returnCopy(arjunLoan.getBarcode());
+        assertEquals(BookStatus.AVAILABLE, bookService.getBook(isbn).getStatus());
+        assertEquals(1, bookService.getAvailability(isbn).available());
+        assertTrue(loanRepository.findActiveByBarcode(arjunLoan.getBarcode()).isEmpty());
+        assertThrows(BookNotFoundException.class, () -> loanService.returnCopy(arjunLoan.getBarcode()));
+
+        assertThrows(AmbiguousReturnException.class, () -> loanService.returnBook(isbn));
+        assertNull(loanRepository.findById(meeraLoan.getLoanId()).orElseThrow().getReturnDate());
+        LoanService.BatchResult ambiguous = loanService.returnBatch(List.of(), List.of(isbn));
+        assertEquals(0, ambiguous.succeeded());
+        assertTrue(ambiguous.items().get(0).error().contains("return by barcode"));
+        loanService.returnCopy(meeraLoan.getBarcode());
+        assertNotNull(loanRepository.findById(meeraLoan.getLoanId()).orElseThrow().getReturnDate());
+        assertEquals(new BranchInventory.BranchStats(hyderabad.getBranchId(), 2, 1, 1, 0),
+                branchService.getBranchStats(hyderabad.getBranchId()));
+        assertEquals(1, loanRepository.findActiveByIsbn(isbn).stream().count());
+    }
+
+    @Test
+    @Order(21)
+    void testBatchCheckoutAndReturn() {
+        Patron nisha = patronService.addPatron("Nisha Pillai", "nisha.pillai@gmail.com");
+        Patron kabir = patronService.addPatron("Kabir Sethi", "kabir.sethi@gmail.com");
+        Patron tara = patronService.addPatron("Tara Menon", "tara.menon@gmail.com");
+        bookService.addBook("978-0143103646", "The Guide", "R. K. Narayan", 1958);
+        bookService.addBook("978-0143416173", "The Hungry Tide", "Amitav Ghosh", 2004);
+        bookService.addBook("978-0143416180", "Sea of Poppies", "Amitav Ghosh", 2008);
+        loanService.checkoutBook("978-0143416180", kabir.getPatronId());
+
+        LoanService.BatchResult checkout = loanService.checkoutBatch(nisha.getPatronId(), List.of(
+                "978-0143103646", "978-0143416173", "978-0143103646", "978-0000000001", "978-0143416180"), null);
+        assertEquals(2, checkout.succeeded());
+        assertEquals(3, checkout.failed());
+        assertEquals(List.of(true, true, false, false, false),
+                checkout.items().stream().map(LoanService.BatchItem::succeeded).toList());
+        assertEquals("Duplicate item in batch", checkout.items().get(2).error());
+        assertEquals(Set.of("978-0143103646", "978-0143416173"), nisha.getCurrentBorrowedBooks());
+        assertEquals(BookStatus.BORROWED, bookService.getBook("978-0143416173").getStatus());
+
+        Reservation waiting = reservationService.reserveBook("978-0143416173", tara.getPatronId());
+        String guideBarcode = checkout.items().get(0).barcode();
+        LoanService.BatchResult returned = loanService.returnBatch(List.of(guideBarcode),
+                List.of("978-0143416173", "978-0143416173"));
+        assertEquals(2, returned.succeeded());
+        assertEquals(checkout.items().get(0).loanId(), returned.items().get(0).loanId());
+        assertFalse(returned.items().get(2).succeeded());
+        assertTrue(nisha.getCurrentBorrowedBooks().isEmpty());
+        assertEquals(BookStatus.AVAILABLE, bookService.getBook("978-0143103646").getStatus());
+        assertEquals(ReservationStatus.FULFILLED, reservationService.getReservation(waiting.getReservationId()).getStatus());
+        assertEquals(0, loanService.getPatronLoans(nisha.getPatronId()).stream().filter(Loan::isActive).count());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> loanService.checkoutBatch(nisha.getPatronId(), List.of(), null));
+        assertThrows(RuntimeException.class,
+                () -> loanService.checkoutBatch("P-unknown", List.of("978-0143103646"), null));
+        assertThrows(IllegalArgumentException.class, () -> loanService.returnBatch(null, null));
+    }
+
+    @Test
+    @Order(22)
+    void testSegmentedBorrowingHistory() {
+        Patron meera = patronService.addPatron("Meera Iyer", "meera.iyer@gmail.com");
+        LocalDate firstDay = LocalDate.of(2023, 1, 1);
+        List<String> borrowed = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            String isbn = String.format("978-81%08d", i);
+            borrowed.add(isbn);
+            meera.addToBorrowingHistory(isbn, firstDay.plusDays(i));
+            patronRepository.save(meera);
+        }
+        HistoryLog history = meera.borrowingHistoryLog();
+        assertEquals(2, history.segmentCount());
+        assertEquals(borrowed, patronService.getBorrowingHistory(meera.getPatronId()));
+        assertEquals(List.of("978-8100000255", "978-8100000256", "978-8100000257"),
+                patronService.getBorrowingHistoryPage(meera.getPatronId(), "255", 3).items());
+
+        Page<PatronService.HistoryEntry> range = patronService.getBorrowingHistoryBetween(meera.getPatronId(),
+                firstDay.plusDays(510), firstDay.plusDays(513), null, 3);
+        assertEquals(new PatronService.HistoryEntry("978-8100000510", firstDay.plusDays(510)), range.items().get(0));
+        assertEquals("513", range.nextCursor());
+        Page<PatronService.HistoryEntry> rest = patronService.getBorrowingHistoryBetween(meera.getPatronId(),
+                firstDay.plusDays(510), firstDay.plusDays(513), range.nextCursor(), 3);
+        assertEquals(List.of(new PatronService.HistoryEntry("978-8100000513", firstDay.plusDays(513))), rest.items());
+        assertNull(rest.nextCursor());
+        assertThrows(IllegalArgumentException.class, () -> patronService.getBorrowingHistoryBetween(
+                meera.getPatronId(), firstDay.plusDays(1), firstDay, null, 3));
+
+        Patron restored = (Patron) EntityCodec.decode(EntityType.PATRON, EntityCodec.encode(EntityType.PATRON, meera));
+        assertEquals(borrowed, restored.getBorrowingHistory());
+        assertEquals(1, restored.borrowingHistoryLog().scan(0, (int) firstDay.plusDays(42).toEpochDay(),
+                (int) firstDay.plusDays(42).toEpochDay(), 10, (position, key, day) -> assertEquals(42, position)));
+
+        CountingColdStore coldStore = new CountingColdStore();
+        HistoryLog tiered = meera.borrowingHistoryLog().compact(256, 0, coldStore);
+        assertEquals(2, tiered.spilledSegmentCount());
+        assertEquals(3, tiered.scan(0, (int) firstDay.plusDays(597).toEpochDay(), Integer.MAX_VALUE, 10,
+                (position, key, day) -> { }));
+        assertEquals(0, coldStore.reads);
+        assertEquals("978-8100000007", KeyCodec.ISBN.decode(tiered.get(7)));
+        assertEquals(1, coldStore.reads);
+
+        meera.addToBorrowingHistory("978-8100000600", firstDay.plusDays(600));
+        byte[] appended = EntityCodec.encodeRecord(EntityType.PATRON, meera);
+        assertTrue(appended.length < 128);
+        Patron replayed = (Patron) EntityCodec.decodeRecord(EntityType.PATRON, appended, patronId -> restored);
+        assertEquals(601, replayed.borrowingHistoryLog().size());
+        assertEquals("978-8100000600", replayed.getBorrowingHistory().get(600));
+        assertEquals(borrowed, replayed.getBorrowingHistory().subList(0, 600));
+    }
+
+    @Test
+    @Order(23)
+    void testSearchResultCacheInvalidation() throws InterruptedException {
+        bookService.addBook("978-0261103573", "The Fellowship of the Ring", "J. R. R. Tolkien", 1954);
+        bookService.addBook("978-0261102361", "The Two Towers", "J. R. R. Tolkien", 1954);
+        Patron ira = patronService.addPatron("Ira Bhatt", "ira.bhatt@gmail.com");
+
+        List<Book> tolkien = bookService.searchBooks("author", "Tolkien", 0, 10);
+        assertEquals(2, tolkien.size());
+        assertSame(tolkien, bookService.searchBooks("author", "TOLKIEN", 0, 10));
+        assertNotSame(bookService.searchBooks("author", "tolkien"), bookService.searchBooks("author", "tolkien"));
+        bookService.addBook("978-0143440093", "Train to Pakistan", "Khushwant Singh", 1956);
+        assertSame(tolkien, bookService.searchBooks("author", "tolkien", 0, 10));
+        loanService.checkoutBook("978-0261102361", ira.getPatronId());
+        List<Book> afterCheckout = bookService.searchBooks("author", "tolkien", 0, 10);
+        assertSame(tolkien, afterCheckout);
+        assertEquals(BookStatus.BORROWED, afterCheckout.stream()
+                .filter(book -> book.getIsbn().equals("978-0261102361")).findFirst().orElseThrow().getStatus());
+
+        bookService.addBook("978-0261102378", "The Return of the King", "J. R. R. Tolkien", 1955);
+        assertEquals(3, bookService.searchBooks("author", "tolkien", 0, 10).size());
+        bookService.updateBook("978-0261103573", "The Fellowship", "John Ronald Reuel Tolkien", 1954);
+        assertTrue(bookService.searchBooks("title", "fellowship of", 0, 10).isEmpty());
+        bookService.removeBook("978-0261102378");
+        assertEquals(2, bookService.searchBooks("author", "tolkien", 0, 10).size());
+        assertTrue(bookService.searchBooks("isbn", "978-0261102378", 0, 10).isEmpty());
+
+        bookService.addBook("978-0007525546", "Quantum Leap", "Tolkien Estate", 2014);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            Thread reader = new Thread(() -> {
+                while (running.get()) {
+                    bookService.searchBooks("title", "quantum", 0, 10);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        try {
+            for (int i = 0; i < 200; i++) {
+                boolean quantum = i % 2 == 1;
+                bookService.updateBook("978-0007525546", quantum ? "Quantum Leap" : "Classical Leap", "Tolkien Estate", 2014);
+                assertEquals(quantum ? 1 : 0, bookService.searchBooks("title", "quantum", 0, 10).size());
+            }
+        } finally {
+            running.set(false);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+    }
+
+    @Test
+    @Order(24)
+    void testCompositeQueryPlanner() {
+        Branch kolkata = branchService.createBranch("Sahitya Sadan Kolkata", "College Street, Kolkata");
+        for (int i = 0; i < 40; i++) {
+            String isbn = String.format("978-81-7167-%03d", i);
+            bookService.addBook(isbn, "Kolkata Classic " + i,
+                    i % 2 == 0 ? "Rabindranath Tagore" : "Bankim Chandra Chatterjee", 1801 + i);
+            if (i < 10) {
+                branchService.assignBookToBranch(isbn, kolkata.getBranchId());
+            }
+        }
+        Patron arun = patronService.addPatron("Arun Ghosh", "arun.ghosh@gmail.com");
+        loanService.checkoutBook("978-81-7167-000", arun.getPatronId());
+
+        BookQueryService.QueryResult byIsbn = bookQueryService.query(new BookQueryService.BookQuery(
+                "classic", null, "978-81-7167-007", null, null, null, null, null, 50));
+        assertEquals("isbn", byIsbn.driver());
+        assertEquals(List.of("978-81-7167-007"), byIsbn.items().stream().map(Book::getIsbn).toList());
+
+        BookQueryService.QueryResult byYear = bookQueryService.query(new BookQueryService.BookQuery(
+                null, null, null, 1801, 1805, null, null, "isbn", 50));
+        assertEquals("year-range", byYear.driver());
+        assertEquals(5, byYear.examined());
+        assertEquals(List.of("978-81-7167-000", "978-81-7167-001", "978-81-7167-002", "978-81-7167-003",
+                "978-81-7167-004"), byYear.items().stream().map(Book::getIsbn).toList());
+
+        BookQueryService.QueryResult newest = bookQueryService.query(new BookQueryService.BookQuery(
+                null, "chatterjee", null, 1801, 1840, null, null, "-year", 3));
+        assertTrue(newest.ordered());
+        assertEquals(List.of(1840, 1838, 1836), newest.items().stream().map(Book::getPublicationYear).toList());
+        assertTrue(newest.examined() <= 6);
+
+        BookQueryService.QueryResult shelf = bookQueryService.query(new BookQueryService.BookQuery(
+                null, "tagore", null, null, null, "available", kolkata.getBranchId(), "year", 50));
+        assertEquals("branch", shelf.driver());
+        assertEquals(List.of(1803, 1805, 1807, 1809), shelf.items().stream().map(Book::getPublicationYear).toList());
+
+        BookQueryService.QueryResult borrowed = bookQueryService.query(new BookQueryService.BookQuery(
+                "kolkata", null, null, 1801, 1840, "BORROWED", null, "title", 50));
+        assertEquals("978-81-7167-000", borrowed.items().get(0).getIsbn());
+        assertEquals(1, borrowed.items().size());
+
+        BookQueryService.QueryResult lent = bookQueryService.query(new BookQueryService.BookQuery(
+                null, null, null, 1801, 1840, "borrowed", kolkata.getBranchId(), null, 50));
+        assertEquals(List.of("978-81-7167-000"), lent.items().stream().map(Book::getIsbn).toList());
+        assertEquals(1, lent.loaded());
+        assertTrue(lent.examined() >= lent.loaded());
+
+        BookQueryService.QueryResult firstPage = bookQueryService.query(new BookQueryService.BookQuery(
+                null, null, null, null, null, null, null, "isbn", 5));
+        assertEquals("catalogue", firstPage.driver());
+        assertEquals(5, firstPage.examined());
+
+        assertThrows(IllegalArgumentException.class, () -> bookQueryService.query(new BookQueryService.BookQuery(
+                null, null, null, 1900, 1800, null, null, null, 50)));
+        assertThrows(IllegalArgumentException.class, () -> bookQueryService.query(new BookQueryService.BookQuery(
+                null, null, null, null, null, "LOST", null, null, 50)));
+        assertThrows(IllegalArgumentException.class, () -> bookQueryService.query(new BookQueryService.BookQuery(
+                null, null, null, null, null, null, null, "pages", 50)));
+        assertThrows(BranchNotFoundException.class, () -> bookQueryService.query(new BookQueryService.BookQuery(
+                null, null, null, null, null, null, "missing-branch", null, 50)));
+    }
+
+    @Test
+    @Order(25)
+    void testReservationsStayActiveUntilNoticeIsAccepted() throws InterruptedException {
+        bookService.addBook("978-0143028574", "Tamas", "Bhisham Sahni", 1974);
+        Patron vikram = patronService.addPatron("Vikram Rao", "vikram.rao@gmail.com");
+        Patron leela = patronService.addPatron("Leela Menon", "leela.menon@gmail.com");
+        loanService.checkoutBook("978-0143028574", vikram.getPatronId());
+        Reservation waiting = reservationService.reserveBook("978-0143028574", leela.getPatronId());
+
+        NotificationService restarted = new NotificationService(1, 1, 64, 1, 0, 0);
+        ReservationService recovered = new ReservationService(reservationRepository, bookRepository,
+                patronRepository, entityFactory, restarted, locks, metrics, auditLog);
+        assertTrue(restarted.notifyObservers("P-filler", "filler", new RecordingObserver(0)));
+        recovered.notifyNextReservation("978-0143028574");
+        assertEquals(ReservationStatus.ACTIVE, reservationService.getReservation(waiting.getReservationId()).getStatus());
+        assertEquals(0, recovered.notifyNextReservations(Map.of("978-0143028574", 1)));
+        assertEquals(ReservationStatus.ACTIVE, reservationService.getReservation(waiting.getReservationId()).getStatus());
+        assertEquals(2, restarted.getStats().dropped());
+
+        restarted.start();
+        try {
+            assertTrue(restarted.awaitIdle(5, TimeUnit.SECONDS));
+            recovered.notifyNextReservation("978-0143028574");
+            assertEquals(ReservationStatus.FULFILLED,
+                    reservationService.getReservation(waiting.getReservationId()).getStatus());
+            assertTrue(restarted.awaitIdle(5, TimeUnit.SECONDS));
+            assertEquals(0, restarted.getStats().unaddressed());
+        } finally {
+            restarted.stop();
+        }
+        loanService.returnBook("978-0143028574");
+    }
+
+    private static final class CountingColdStore implements HistoryLog.ColdStore {
+        private final List<byte[]> spilled = new ArrayList<>();
+        private int reads;
+
+        @Override
+        public long append(byte[] data) {
+            spilled.add(data);
+            return spilled.size() - 1;
+        }
+
+        @Override
+        public byte[] read(long position, int length) {
+            reads++;
+            return spilled.get((int) position);
+        }
+    }
+
+    private static final class RecordingObserver implements Observer {
+        private final List<String> received = new CopyOnWriteArrayList<>();
+        private int failuresLeft;
+
+        RecordingObserver(int failures) {
+            this.failuresLeft = failures;
+        }
+
+        @Override
+        public void update(String message) {
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                throw new IllegalStateException("Mailbox temporarily unavailable");
+            }
+            received.add(message);
+        }
+
+        @Override
+        public String channel() {
+            return "recording";
+        }
     }
 }